@@ -1,34 +1,296 @@
 package geometries;
 
-import primitives.Point;
+import primitives.BoundingBox;
 import primitives.Ray;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
 
 /**
  * The {@code Geometries} class represents a collection of geometric objects
  * (that extend {@link Intersectable}) and provides functionality to manage and
  * find intersections between a {@link Ray} and the entire collection.
  * This implementation uses a Bounding Volume Hierarchy (BVH) for efficient intersection testing.
+ * <p>
+ * The acceleration structure is built lazily on the first ray, or explicitly by
+ * {@link #freeze()} before rendering starts. A frozen collection keeps an immutable
+ * acceleration structure; geometries added to it or removed from it are kept in
+ * a small delta BVH queried together with the main one, and once the delta grows
+ * past {@link #MERGE_THRESHOLD} changes the main BVH is rebuilt with them in the
+ * background, so editing a large scene does not cost a full rebuild per change.
+ * </p>
  */
 public class Geometries extends Intersectable {
+    /**
+     * Immutable acceleration structure of the collection: the main BVH of the bounded
+     * geometries and the unbounded geometries (without a bounding box, e.g. planes)
+     * of a base snapshot, and the delta of the changes made after it was built -
+     * the added geometries, with their own small BVH, and the removed ones.
+     */
+    private static final class Acceleration {
+        /** The main BVH of the bounded geometries, or null if there are none */
+        private final BVHBuilder          bvh;
+        /** Geometries of the snapshot without a bounding box, intersected one by one */
+        private final Intersectable[]     unbounded;
+        /** Geometries added after the main BVH was built, in order of addition */
+        private final List<Intersectable> added;
+        /** The delta BVH of the bounded added geometries, or null if there are none */
+        private final BVHBuilder          addedBvh;
+        /** Added geometries without a bounding box, intersected one by one */
+        private final Intersectable[]     addedUnbounded;
+        /** Geometries of the snapshot removed after the main BVH was built */
+        private final Set<Intersectable>  removed;
+        /** The geometries whose intersections the removed geometries consist of */
+        private final Set<Geometry>       hidden;
+
+        /**
+         * Creates the acceleration structure of a snapshot of geometries
+         *
+         * @param geometries the geometries
+         */
+        private Acceleration(List<Intersectable> geometries) {
+            List<Intersectable> unboundedGeometries = new ArrayList<>();
+            bvh            = build(geometries, unboundedGeometries);
+            unbounded      = unboundedGeometries.toArray(NONE);
+            added          = List.of();
+            addedBvh       = null;
+            addedUnbounded = NONE;
+            removed        = Set.of();
+            hidden         = Set.of();
+        }
+
+        /**
+         * Creates the acceleration structure of a snapshot with changes made after it
+         *
+         * @param base    the acceleration structure of the snapshot
+         * @param added   geometries added after the snapshot
+         * @param removed geometries of the snapshot removed after it
+         */
+        private Acceleration(Acceleration base, List<Intersectable> added, Set<Intersectable> removed) {
+            List<Intersectable> unboundedGeometries = new ArrayList<>();
+            bvh            = base.bvh;
+            unbounded      = base.unbounded;
+            this.added     = added;
+            addedBvh       = build(added, unboundedGeometries);
+            addedUnbounded = unboundedGeometries.toArray(NONE);
+            this.removed   = removed;
+            hidden         = identitySet();
+            for (Intersectable geometry : removed) {
+                collectLeaves(geometry, hidden);
+            }
+        }
+
+        /**
+         * Builds a BVH of the bounded geometries
+         *
+         * @param geometries          the geometries
+         * @param unboundedGeometries receives the geometries without a bounding box
+         * @return the BVH, or null if there are no bounded geometries
+         */
+        private static BVHBuilder build(List<Intersectable> geometries, List<Intersectable> unboundedGeometries) {
+            for (Intersectable geometry : geometries) {
+                if (geometry.getBoundingBox() == null) {
+                    unboundedGeometries.add(geometry);
+                }
+            }
+            if (unboundedGeometries.size() == geometries.size()) {
+                return null;
+            }
+            BVHBuilder bvhBuilder = new BVHBuilder();
+            bvhBuilder.build(geometries);
+            return bvhBuilder;
+        }
+
+        /**
+         * Collects the geometries a geometry or a nested collection consists of
+         *
+         * @param geometry the geometry or the nested collection
+         * @param leaves   receives the geometries
+         */
+        private static void collectLeaves(Intersectable geometry, Set<Geometry> leaves) {
+            if (geometry instanceof Geometry leaf) {
+                leaves.add(leaf);
+            } else if (geometry instanceof Geometries nested) {
+                synchronized (nested) {
+                    for (Intersectable child : nested.geometries) {
+                        collectLeaves(child, leaves);
+                    }
+                }
+            }
+        }
+
+        /**
+         * The amount of changes in the delta
+         *
+         * @return the amount of added and removed geometries
+         */
+        private int changes() {
+            return added.size() + removed.size();
+        }
+
+        /**
+         * Whether another acceleration structure has the same main BVH
+         *
+         * @param other the other acceleration structure
+         * @return true if both are built on the same snapshot
+         */
+        private boolean sameBase(Acceleration other) {
+            return bvh == other.bvh && unbounded == other.unbounded;
+        }
+
+        /**
+         * Creates the acceleration structure with additional geometries
+         *
+         * @param geometries the added geometries
+         * @return the new acceleration structure
+         */
+        private Acceleration withAdded(Intersectable[] geometries) {
+            List<Intersectable> extended = new ArrayList<>(added);
+            extended.addAll(Arrays.asList(geometries));
+            return new Acceleration(this, extended, removed);
+        }
+
+        /**
+         * Creates the acceleration structure without removed geometries
+         *
+         * @param geometries the removed geometries
+         * @return the new acceleration structure
+         */
+        private Acceleration withRemoved(List<Intersectable> geometries) {
+            List<Intersectable> remaining = new ArrayList<>(added);
+            Set<Intersectable> extended = identitySet();
+            extended.addAll(removed);
+            for (Intersectable geometry : geometries) {
+                if (!removeIdentical(remaining, geometry)) {
+                    extended.add(geometry);
+                }
+            }
+            return new Acceleration(this, remaining, extended);
+        }
+
+        /**
+         * Creates an acceleration structure built on a newer snapshot with the
+         * changes of this structure made after the snapshot was taken
+         *
+         * @param merged   the acceleration structure of the newer snapshot
+         * @param snapshot the acceleration structure at the time the snapshot was taken
+         * @return the new acceleration structure
+         */
+        private Acceleration rebase(Acceleration merged, Acceleration snapshot) {
+            Set<Intersectable> snapshotAdded = identitySet();
+            snapshotAdded.addAll(snapshot.added);
+            Set<Intersectable> currentAdded = identitySet();
+            currentAdded.addAll(added);
+
+            List<Intersectable> newAdded = new ArrayList<>();
+            for (Intersectable geometry : added) {
+                if (!snapshotAdded.contains(geometry)) {
+                    newAdded.add(geometry);
+                }
+            }
+            Set<Intersectable> newRemoved = identitySet();
+            for (Intersectable geometry : removed) {
+                if (!snapshot.removed.contains(geometry)) {
+                    newRemoved.add(geometry);
+                }
+            }
+            for (Intersectable geometry : snapshot.added) {
+                if (!currentAdded.contains(geometry)) {
+                    newRemoved.add(geometry);
+                }
+            }
+            return newAdded.isEmpty() && newRemoved.isEmpty() ? merged
+                    : new Acceleration(merged, newAdded, newRemoved);
+        }
+
+        /**
+         * Calculates the intersections of a ray with all the geometries
+         *
+         * @param ray         the ray
+         * @param maxDistance maximum distance to consider for intersections
+         * @return the intersections, or null if there are none
+         */
+        private List<Intersection> intersect(Ray ray, double maxDistance) {
+            List<Intersection> intersections = bvh == null ? null : bvh.findIntersections(ray, maxDistance);
+            intersections = intersect(unbounded, ray, maxDistance, intersections);
+            if (intersections != null && !hidden.isEmpty()) {
+                intersections.removeIf(intersection -> hidden.contains(intersection.geometry));
+                if (intersections.isEmpty()) {
+                    intersections = null;
+                }
+            }
+            if (addedBvh != null) {
+                List<Intersection> addedIntersections = addedBvh.findIntersections(ray, maxDistance);
+                if (addedIntersections != null) {
+                    if (intersections == null) {
+                        intersections = addedIntersections;
+                    } else {
+                        intersections.addAll(addedIntersections);
+                    }
+                }
+            }
+            return intersect(addedUnbounded, ray, maxDistance, intersections);
+        }
+
+        /**
+         * Adds the intersections of a ray with geometries one by one
+         *
+         * @param geometries    the geometries
+         * @param ray           the ray
+         * @param maxDistance   maximum distance to consider for intersections
+         * @param intersections the intersections found so far, or null
+         * @return the intersections, or null if there are none
+         */
+        private static List<Intersection> intersect(Intersectable[] geometries, Ray ray, double maxDistance,
+                                                    List<Intersection> intersections) {
+            for (Intersectable geometry : geometries) {
+                List<Intersection> geometryIntersections = geometry.calculateIntersections(ray, maxDistance);
+                if (geometryIntersections != null) {
+                    if (intersections == null) {
+                        intersections = new ArrayList<>();
+                    }
+                    intersections.addAll(geometryIntersections);
+                }
+            }
+            return intersections;
+        }
+    }
+
+    /** Amount of added and removed geometries after which the delta is merged into the main BVH */
+    public static final int MERGE_THRESHOLD = 32;
+
+    /** Empty geometries array */
+    private static final Intersectable[] NONE = new Intersectable[0];
+
     /**
      * A list containing all geometric objects in this collection.
      */
     private final List<Intersectable> geometries = new LinkedList<>();
 
     /**
-     * The BVH builder for efficient intersection testing.
+     * The acceleration structure of a frozen collection, or null if it is not frozen.
+     * Written with the lock held and read once per ray by the rendering threads.
+     * Volatile, so an edit or a merge made while rendering reaches the rendering
+     * threads with their next ray; the structure itself is immutable, so the rays
+     * need no lock.
      */
-    private BVHBuilder bvhBuilder;
+    private volatile Acceleration frozen;
+
+    /** Whether a background merge of the delta is running */
+    private boolean merging = false;
+
+    /**
+     * The lazily built acceleration structure of a collection that is not frozen.
+     * Written only by the thread building it, before it clears
+     * {@link #bvhNeedsUpdate}, so a thread seeing the cleared flag sees the built structure.
+     */
+    private Acceleration acceleration;
 
     /**
      * Flag to track if the BVH needs to be rebuilt.
+     * Volatile, since the BVH is built lazily by the first rendering thread that
+     * traces a ray, while the other threads wait for it (double-checked locking).
      */
-    private boolean bvhNeedsUpdate = true;
+    private volatile boolean bvhNeedsUpdate = true;
 
     /**
      * Constructs a new {@code Geometries} object initialized with the given geometries.
@@ -39,29 +301,165 @@ public class Geometries extends Intersectable {
         add(geometries);
     }
 
+    /**
+     * Creates an empty set of geometries compared by identity
+     *
+     * @param <T> the type of the geometries
+     * @return the set
+     */
+    private static <T> Set<T> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * Removes a geometry (the very same object) from a list
+     *
+     * @param list     the list
+     * @param geometry the geometry
+     * @return true if the geometry was in the list
+     */
+    private static boolean removeIdentical(List<Intersectable> list, Intersectable geometry) {
+        for (Iterator<Intersectable> iterator = list.iterator(); iterator.hasNext(); ) {
+            if (iterator.next() == geometry) {
+                iterator.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Adds one or more geometric objects to the collection.
+     * If the collection is frozen, the geometries are added to the delta BVH
+     * and the main acceleration structure is not rebuilt.
      *
      * @param geometries the geometric objects to add
      */
-    public void add(Intersectable... geometries) {
+    public synchronized void add(Intersectable... geometries) {
         this.geometries.addAll(Arrays.asList(geometries));
-        bvhNeedsUpdate = true; // Mark BVH for rebuild
+        if (frozen != null) {
+            frozen = frozen.withAdded(geometries);
+            scheduleMerge();
+        } else {
+            bvhNeedsUpdate = true; // Mark BVH for rebuild
+        }
     }
 
     /**
-     * Builds or rebuilds the BVH tree from the current geometries.
+     * Removes one or more geometric objects (the very same objects) from the collection.
+     * If the collection is frozen, the removal is recorded in the delta and the
+     * main acceleration structure is not rebuilt.
+     *
+     * @param geometries the geometric objects to remove
+     * @return true if any of the geometries was in the collection
      */
-    private void buildBVH() {
-        if (geometries.isEmpty()) {
-            bvhBuilder = null;
-            bvhNeedsUpdate = false;
+    public synchronized boolean remove(Intersectable... geometries) {
+        List<Intersectable> removed = new ArrayList<>();
+        for (Intersectable geometry : geometries) {
+            if (removeIdentical(this.geometries, geometry)) {
+                removed.add(geometry);
+            }
+        }
+        if (removed.isEmpty()) {
+            return false;
+        }
+        if (frozen != null) {
+            frozen = frozen.withRemoved(removed);
+            scheduleMerge();
+        } else {
+            bvhNeedsUpdate = true; // Mark BVH for rebuild
+        }
+        return true;
+    }
+
+    /**
+     * Builds the acceleration structure eagerly and freezes it: the rays use it
+     * without any lock, and further added or removed geometries go to the delta
+     * instead of rebuilding it. Nested collections are frozen too. Must
+     * be called before the rendering threads start. Freezing a frozen collection
+     * does nothing.
+     */
+    public synchronized void freeze() {
+        for (Intersectable geometry : geometries) {
+            if (geometry instanceof Geometries nested) {
+                nested.freeze();
+            }
+        }
+        if (frozen == null) {
+            frozen = new Acceleration(geometries);
+        }
+    }
+
+    /**
+     * Checks whether the collection is frozen.
+     *
+     * @return true if the acceleration structure is frozen
+     */
+    public boolean isFrozen() {
+        return frozen != null;
+    }
+
+    /**
+     * The amount of changes kept in the delta of a frozen collection, not merged
+     * into the main BVH yet.
+     *
+     * @return the amount of added and removed geometries in the delta, 0 if the
+     *         collection is not frozen
+     */
+    public synchronized int pendingChanges() {
+        return frozen == null ? 0 : frozen.changes();
+    }
+
+    /**
+     * Waits until the background merge of the delta, if one is running, is done.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public synchronized void awaitMerge() throws InterruptedException {
+        while (merging) {
+            wait();
+        }
+    }
+
+    /**
+     * Starts a background merge of the delta into the main BVH if the delta has
+     * grown past the threshold and no merge is running. Called with the lock held.
+     */
+    private void scheduleMerge() {
+        Acceleration snapshot = frozen;
+        if (merging || snapshot.changes() < MERGE_THRESHOLD) {
             return;
         }
+        merging = true;
+        List<Intersectable> snapshotGeometries = new ArrayList<>(geometries);
+        Thread merge = new Thread(() -> merge(snapshot, snapshotGeometries), "BVH merge");
+        merge.setDaemon(true);
+        merge.start();
+    }
 
-        bvhBuilder = new BVHBuilder();
-        bvhBuilder.build(geometries);
-        bvhNeedsUpdate = false;
+    /**
+     * Rebuilds the main BVH from a snapshot of the geometries and replaces the
+     * frozen structure with it, keeping the changes made meanwhile in the delta.
+     * Runs in the background, without the lock.
+     *
+     * @param snapshot           the frozen structure when the snapshot was taken
+     * @param snapshotGeometries the geometries of the snapshot
+     */
+    private void merge(Acceleration snapshot, List<Intersectable> snapshotGeometries) {
+        Acceleration merged = null;
+        try {
+            merged = new Acceleration(snapshotGeometries);
+        } finally {
+            synchronized (this) {
+                merging = false;
+                notifyAll();
+                // A full rebuild meanwhile supersedes the merge
+                if (merged != null && frozen != null && frozen.sameBase(snapshot)) {
+                    frozen = frozen.rebase(merged, snapshot);
+                    scheduleMerge();
+                }
+            }
+        }
     }
 
     /**
@@ -74,47 +472,39 @@ public class Geometries extends Intersectable {
      */
     @Override
     protected List<Intersection> calculateIntersectionsHelper(Ray ray, double maxDistance) {
-        // Build BVH if needed
-        if (bvhNeedsUpdate) {
-            buildBVH();
-        }
-
-        List<Intersection> intersections = null;
-        // Use BVH for intersection testing if available
-        if (bvhBuilder != null) {
-            for (Intersectable geometry : geometries) {
-                if (geometry instanceof Plane) {
-                    List<Intersection> planeIntersections = geometry.calculateIntersections(ray, maxDistance);
-                    if (planeIntersections != null){
-                        if (intersections == null) {
-                            intersections = new ArrayList<>();
-                        }
-                        intersections.addAll(planeIntersections);
+        Acceleration structure = frozen;
+        if (structure == null) {
+            // Build BVH if needed - by a single thread, the others wait for it
+            if (bvhNeedsUpdate) {
+                synchronized (this) {
+                    if (bvhNeedsUpdate) {
+                        acceleration = new Acceleration(geometries);
+                        bvhNeedsUpdate = false;
                     }
                 }
             }
-
-            List<Intersection> total = bvhBuilder.findIntersections(ray, maxDistance);
-            if (total != null && intersections != null) {
-                total.addAll(intersections);
-            }
-            else if (total == null) {
-                return intersections;
-            }
-            return total;
+            structure = acceleration;
         }
+        return structure.intersect(ray, maxDistance);
+    }
 
-        // Fallback to linear search if no BVH
-        for (Intersectable geometry : this.geometries) {
-            List<Intersection> geometryIntersections = geometry.calculateIntersectionsHelper(ray, maxDistance);
-            if (geometryIntersections != null) {
-                if (intersections == null) {
-                    intersections = new LinkedList<>();
-                }
-                intersections.addAll(geometryIntersections);
+    /**
+     * Calculates the bounding box of the bounded geometries of the collection,
+     * including those of nested collections - the unbounded geometries (e.g.
+     * planes) are left out.
+     *
+     * @return the bounding box, or null if there are no bounded geometries
+     */
+    public synchronized BoundingBox getBoundedBox() {
+        BoundingBox box = null;
+        for (Intersectable geometry : geometries) {
+            BoundingBox geometryBox = geometry instanceof Geometries nested
+                    ? nested.getBoundedBox() : geometry.getBoundingBox();
+            if (geometryBox != null) {
+                box = box == null ? geometryBox : box.merge(geometryBox);
             }
         }
-        return intersections;
+        return box;
     }
 
     /**
@@ -122,7 +512,7 @@ public class Geometries extends Intersectable {
      *
      * @return the number of geometries
      */
-    public int size() {
+    public synchronized int size() {
         return geometries.size();
     }
 
@@ -131,15 +521,20 @@ public class Geometries extends Intersectable {
      *
      * @return true if the collection contains no geometries
      */
-    public boolean isEmpty() {
+    public synchronized boolean isEmpty() {
         return geometries.isEmpty();
     }
 
     /**
      * Forces a rebuild of the BVH tree.
      * This can be useful if geometries have been modified externally.
+     * A frozen collection is rebuilt immediately, merging its delta, and stays frozen.
      */
-    public void rebuildBVH() {
-        bvhNeedsUpdate = true;
+    public synchronized void rebuildBVH() {
+        if (frozen != null) {
+            frozen = new Acceleration(geometries);
+        } else {
+            bvhNeedsUpdate = true;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,124 @@
+package lighting;
+
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+
+/**
+ * Represents an area light source in a 3D scene - a light emitted from a
+ * surface rather than from a point, casting soft shadows.
+ * The intensity reaching a point is attenuated by the distance from the center
+ * of the light, like a point light; the shadows are calculated by sampling the
+ * surface of the light on a stratified grid of {@code n x n} cells.
+ */
+public abstract class AreaLight extends PointLight {
+    /**
+     * Amount of cells of the sampling grid along each side.
+     */
+    private int sampleGrid = 4;
+
+    /**
+     * Constructs an area light with a given center and intensity.
+     *
+     * @param intensity the color intensity of the light
+     * @param center    the center of the light surface
+     */
+    protected AreaLight(Color intensity, Point center) {
+        super(intensity, center);
+    }
+
+    /**
+     * Sets the amount of cells of the sampling grid along each side.
+     *
+     * @param sampleGrid the amount of cells along each side, at least 2
+     * @return the current AreaLight object (for method chaining)
+     * @throws IllegalArgumentException if the amount is lower than 2
+     */
+    public AreaLight setSampleGrid(int sampleGrid) {
+        if (sampleGrid < 2) throw new IllegalArgumentException("Sample grid must have at least 2 cells per side");
+        this.sampleGrid = sampleGrid;
+        return this;
+    }
+
+    /**
+     * Returns the amount of cells of the sampling grid along each side.
+     *
+     * @return the amount of cells along each side
+     */
+    public int getSampleGrid() {
+        return sampleGrid;
+    }
+
+    /**
+     * Returns the cells of the sampling grid tested first for the shadow of a
+     * point: if their samples agree, the point is taken to be fully lit or fully
+     * shadowed, so they should reach the extremes of the surface. These are the
+     * four corner cells.
+     *
+     * @return the column and the row of each cell
+     */
+    public int[][] getProbeCells() {
+        int last = sampleGrid - 1;
+        return new int[][] { { 0, 0 }, { last, 0 }, { 0, last }, { last, last } };
+    }
+
+    /**
+     * Maps a point of the unit square onto the surface of the light, so that
+     * a stratified grid over the square gives stratified samples of the surface.
+     *
+     * @param s the first coordinate in [0, 1]
+     * @param t the second coordinate in [0, 1]
+     * @return the point on the light surface
+     */
+    public abstract Point getSample(double s, double t);
+
+    /**
+     * Adds scaled vectors to a point without creating intermediate vectors
+     * (a zero scale would create a zero vector).
+     *
+     * @param point the point
+     * @param u     the first vector
+     * @param a     the scale of the first vector
+     * @param v     the second vector
+     * @param b     the scale of the second vector
+     * @return the resulting point
+     */
+    static Point offset(Point point, Vector u, double a, Vector v, double b) {
+        return new Point(point.getX() + u.getX() * a + v.getX() * b,
+                point.getY() + u.getY() * a + v.getY() * b,
+                point.getZ() + u.getZ() * a + v.getZ() * b);
+    }
+
+    /**
+     * Sets the constant attenuation factor for the area light.
+     *
+     * @param kC the constant attenuation coefficient
+     * @return the current AreaLight instance (for method chaining)
+     */
+    @Override
+    public AreaLight setKc(double kC) {
+        return (AreaLight) super.setKc(kC);
+    }
+
+    /**
+     * Sets the linear attenuation factor for the area light.
+     *
+     * @param kL the linear attenuation coefficient
+     * @return the current AreaLight instance (for method chaining)
+     */
+    @Override
+    public AreaLight setKl(double kL) {
+        return (AreaLight) super.setKl(kL);
+    }
+
+    /**
+     * Sets the quadratic attenuation factor for the area light.
+     *
+     * @param kQ the quadratic attenuation coefficient
+     * @return the current AreaLight instance (for method chaining)
+     */
+    @Override
+    public AreaLight setKq(double kQ) {
+        return (AreaLight) super.setKq(kQ);
+    }
+}
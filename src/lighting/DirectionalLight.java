@@ -12,7 +12,7 @@ import primitives.Vector;
  */
 public class DirectionalLight extends Light implements LightSource {
     /**
-     * The direction vector of the light.
+     * The normalized direction vector of the light.
      */
     private final Vector direction;
 
@@ -20,11 +20,11 @@ public class DirectionalLight extends Light implements LightSource {
      * Constructs a directional light with a specified color intensity and direction.
      *
      * @param intensity the color intensity of the light
-     * @param direction the direction vector of the light
+     * @param direction the direction vector of the light, normalized once here
      */
     public DirectionalLight(Color intensity, Vector direction) {
         super(intensity);
-        this.direction = direction;
+        this.direction = direction.normalize();
     }
 
     /**
@@ -50,11 +50,23 @@ public class DirectionalLight extends Light implements LightSource {
      */
     @Override
     public Vector getL(Point p) {
-        return direction.normalize();
+        return direction;
     }
 
     @Override
     public double getDistance(Point p) {
         return Double.POSITIVE_INFINITY;
     }
+
+    /**
+     * Fills the constant direction and intensity of the light, at an infinite distance.
+     *
+     * @param p      the point
+     * @param sample the sample to fill
+     * @return the filled sample
+     */
+    @Override
+    public LightSample sample(Point p, LightSample sample) {
+        return sample.set(direction, Double.POSITIVE_INFINITY, intensity);
+    }
 }
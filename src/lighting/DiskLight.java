@@ -0,0 +1,130 @@
+package lighting;
+
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+
+/**
+ * Represents a disk-shaped area light source in a 3D scene.
+ * The disk is given by its center, its normal and its radius; the sampling grid
+ * is mapped onto the disk by the concentric mapping, which keeps the cells
+ * stratified and of equal area.
+ */
+public class DiskLight extends AreaLight {
+    /**
+     * Unit vector in the plane of the disk.
+     */
+    private final Vector u;
+
+    /**
+     * Unit vector in the plane of the disk, orthogonal to {@link #u}.
+     */
+    private final Vector v;
+
+    /**
+     * The radius of the disk.
+     */
+    private final double radius;
+
+    /**
+     * Constructs a disk light source.
+     *
+     * @param intensity the color intensity of the light
+     * @param center    the center of the disk
+     * @param normal    the normal of the disk
+     * @param radius    the radius of the disk
+     * @throws IllegalArgumentException if the radius is not positive
+     */
+    public DiskLight(Color intensity, Point center, Vector normal, double radius) {
+        super(intensity, center);
+        if (radius <= 0) throw new IllegalArgumentException("Disk radius must be positive");
+        Vector n = normal.normalize();
+        Vector axis = Math.abs(n.getX()) > 0.9 ? Vector.AXIS_Y : Vector.AXIS_X;
+        this.u = n.crossProduct(axis).normalize();
+        this.v = n.crossProduct(u);
+        this.radius = radius;
+    }
+
+    /**
+     * Maps a point of the unit square onto the disk by the concentric mapping:
+     * squares around the center of the unit square map to rings of the disk.
+     *
+     * @param s the first coordinate in [0, 1]
+     * @param t the second coordinate in [0, 1]
+     * @return the point on the disk
+     */
+    @Override
+    public Point getSample(double s, double t) {
+        double a = 2 * s - 1, b = 2 * t - 1;
+        if (a == 0 && b == 0) return position;
+        double r, phi;
+        if (Math.abs(a) > Math.abs(b)) {
+            r = a;
+            phi = Math.PI / 4 * (b / a);
+        } else {
+            r = b;
+            phi = Math.PI / 2 - Math.PI / 4 * (a / b);
+        }
+        r *= radius;
+        return offset(position, u, r * Math.cos(phi), v, r * Math.sin(phi));
+    }
+
+    /**
+     * Returns the cells of the sampling grid tested first for the shadow of a
+     * point. The concentric mapping takes the corner cells to the rim only in
+     * the diagonal directions, so the cells at the middle of the grid sides are
+     * tested too, reaching the rim every eighth of a turn.
+     *
+     * @return the column and the row of each cell
+     */
+    @Override
+    public int[][] getProbeCells() {
+        int last = getSampleGrid() - 1, middle = getSampleGrid() / 2;
+        return new int[][] { { 0, 0 }, { last, 0 }, { 0, last }, { last, last },
+                { middle, 0 }, { 0, middle }, { last, middle }, { middle, last } };
+    }
+
+    /**
+     * Sets the amount of cells of the sampling grid along each side.
+     *
+     * @param sampleGrid the amount of cells along each side, at least 2
+     * @return the current DiskLight instance (for method chaining)
+     */
+    @Override
+    public DiskLight setSampleGrid(int sampleGrid) {
+        return (DiskLight) super.setSampleGrid(sampleGrid);
+    }
+
+    /**
+     * Sets the constant attenuation factor for the disk light.
+     *
+     * @param kC the constant attenuation coefficient
+     * @return the current DiskLight instance (for method chaining)
+     */
+    @Override
+    public DiskLight setKc(double kC) {
+        return (DiskLight) super.setKc(kC);
+    }
+
+    /**
+     * Sets the linear attenuation factor for the disk light.
+     *
+     * @param kL the linear attenuation coefficient
+     * @return the current DiskLight instance (for method chaining)
+     */
+    @Override
+    public DiskLight setKl(double kL) {
+        return (DiskLight) super.setKl(kL);
+    }
+
+    /**
+     * Sets the quadratic attenuation factor for the disk light.
+     *
+     * @param kQ the quadratic attenuation coefficient
+     * @return the current DiskLight instance (for method chaining)
+     */
+    @Override
+    public DiskLight setKq(double kQ) {
+        return (DiskLight) super.setKq(kQ);
+    }
+}
@@ -0,0 +1,137 @@
+package lighting;
+
+import primitives.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Light grid is a uniform grid over the influence spheres of the light sources
+ * of a scene, for culling the lights that cannot reach a point.<br/>
+ * The influence radius of every light source is computed for an intensity
+ * cutoff, and each cell of the grid keeps the light sources whose influence
+ * sphere overlaps it, together with the light sources that do not fade (e.g.
+ * directional lights). Light sources whose intensity never reaches the cutoff
+ * are dropped. The lights of a cell keep the order of the scene lights.
+ */
+public final class LightGrid {
+    /** Maximal amount of cells along an axis */
+    private static final int MAX_CELLS = 32;
+
+    /** Light sources that do not fade - the lights of the points outside the grid */
+    private final List<LightSource>       unbounded;
+    /** The light sources of each cell, indexed by {@code (z * ny + y) * nx + x} */
+    private final List<List<LightSource>> cells;
+    /** The corner of the grid with the lowest coordinates */
+    private final double[]                min = new double[3];
+    /** Size of a cell along each axis */
+    private final double[]                size = new double[3];
+    /** Amount of cells along each axis */
+    private final int[]                   count = new int[3];
+
+    /**
+     * Builds the grid of the light sources
+     *
+     * @param lights the light sources
+     * @param cutoff the intensity cutoff below which a light source does not contribute
+     */
+    public LightGrid(List<LightSource> lights, double cutoff) {
+        LightSource[] sources = lights.toArray(new LightSource[0]);
+        double[] radii = new double[sources.length];
+        List<LightSource> infinite = new ArrayList<>();
+        double[] max = new double[3];
+        double radiusSum = 0;
+        int bounded = 0;
+        for (int i = 0; i < sources.length; i++) {
+            Point position = sources[i].getPosition();
+            radii[i] = position == null ? Double.POSITIVE_INFINITY : sources[i].getInfluenceRadius(cutoff);
+            if (radii[i] == Double.POSITIVE_INFINITY) {
+                infinite.add(sources[i]);
+            } else if (radii[i] > 0) {
+                for (int axis = 0; axis < 3; axis++) {
+                    double coordinate = position.getComponent(axis);
+                    if (bounded == 0 || coordinate - radii[i] < min[axis]) min[axis] = coordinate - radii[i];
+                    if (bounded == 0 || coordinate + radii[i] > max[axis]) max[axis] = coordinate + radii[i];
+                }
+                radiusSum += radii[i];
+                bounded++;
+            }
+        }
+        unbounded = List.copyOf(infinite);
+
+        if (bounded == 0) {
+            cells = List.of();
+            return;
+        }
+        // Cells about the size of an average influence sphere
+        double cellSize = radiusSum / bounded;
+        for (int axis = 0; axis < 3; axis++) {
+            double extent = max[axis] - min[axis];
+            count[axis] = Math.max(1, Math.min(MAX_CELLS, (int) Math.ceil(extent / cellSize)));
+            size[axis] = extent / count[axis];
+        }
+
+        int cellCount = count[0] * count[1] * count[2];
+        List<List<LightSource>> lists = new ArrayList<>(cellCount);
+        for (int i = 0; i < cellCount; i++) lists.add(new ArrayList<>());
+        for (int i = 0; i < sources.length; i++) {
+            if (radii[i] == Double.POSITIVE_INFINITY) {
+                for (List<LightSource> list : lists) list.add(sources[i]);
+            } else if (radii[i] > 0) {
+                addToCells(lists, sources[i], radii[i]);
+            }
+        }
+        List<List<LightSource>> copies = new ArrayList<>(cellCount);
+        for (List<LightSource> list : lists) copies.add(List.copyOf(list));
+        cells = List.copyOf(copies);
+    }
+
+    /**
+     * Adds a light source to the cells its influence sphere overlaps
+     *
+     * @param lists  the light sources of the cells
+     * @param light  the light source
+     * @param radius its influence radius
+     */
+    private void addToCells(List<List<LightSource>> lists, LightSource light, double radius) {
+        Point position = light.getPosition();
+        int[] from = new int[3], to = new int[3];
+        for (int axis = 0; axis < 3; axis++) {
+            from[axis] = cell(position.getComponent(axis) - radius, axis);
+            to[axis] = cell(position.getComponent(axis) + radius, axis);
+        }
+        for (int z = from[2]; z <= to[2]; z++)
+            for (int y = from[1]; y <= to[1]; y++)
+                for (int x = from[0]; x <= to[0]; x++)
+                    lists.get((z * count[1] + y) * count[0] + x).add(light);
+    }
+
+    /**
+     * Finds the cell of a coordinate along an axis, clamped to the grid
+     *
+     * @param coordinate the coordinate
+     * @param axis       the axis
+     * @return the cell number
+     */
+    private int cell(double coordinate, int axis) {
+        int cell = size[axis] == 0 ? 0 : (int) ((coordinate - min[axis]) / size[axis]);
+        return Math.max(0, Math.min(count[axis] - 1, cell));
+    }
+
+    /**
+     * Finds the light sources that may reach a point
+     *
+     * @param point the point
+     * @return the light sources, in the order of the scene lights
+     */
+    public List<LightSource> getLights(Point point) {
+        if (cells.isEmpty()) return unbounded;
+        int index = 0;
+        for (int axis = 2; axis >= 0; axis--) {
+            double offset = point.getComponent(axis) - min[axis];
+            if (offset < 0 || offset > size[axis] * count[axis]) return unbounded;
+            index = index * count[axis] + cell(point.getComponent(axis), axis);
+        }
+        return cells.get(index);
+    }
+}
@@ -0,0 +1,39 @@
+package lighting;
+
+import primitives.Color;
+import primitives.Vector;
+
+/**
+ * Light sample holds the light of a light source reaching a point - its
+ * direction, its distance and its intensity - as calculated in a single pass by
+ * {@link LightSource#sample(primitives.Point, LightSample)}.<br/>
+ * The sample is mutable so that a shading thread can reuse a single instance
+ * for all its light queries instead of allocating one per light and point.
+ */
+public final class LightSample {
+    /** Normalized direction from the light source to the point */
+    public Vector l;
+    /** Distance from the light source to the point (infinite for a light at infinity) */
+    public double distance;
+    /** Intensity of the light reaching the point */
+    public Color  intensity;
+
+    /** Creates an empty light sample to be filled by the light sources */
+    public LightSample() {
+    }
+
+    /**
+     * Fills the sample
+     *
+     * @param l         normalized direction from the light source to the point
+     * @param distance  distance from the light source to the point
+     * @param intensity intensity of the light reaching the point
+     * @return this sample
+     */
+    public LightSample set(Vector l, double distance, Color intensity) {
+        this.l         = l;
+        this.distance  = distance;
+        this.intensity = intensity;
+        return this;
+    }
+}
@@ -28,4 +28,36 @@ public interface LightSource {
 
     double getDistance(Point point);
 
+    /**
+     * Calculates the direction, the distance and the intensity of the light
+     * reaching a point in a single pass, into a reusable sample.
+     *
+     * @param p      the point
+     * @param sample the sample to fill
+     * @return the filled sample
+     */
+    default LightSample sample(Point p, LightSample sample) {
+        return sample.set(getL(p), getDistance(p), getIntensity(p));
+    }
+
+    /**
+     * Returns the position of the light source.
+     *
+     * @return the position, or null for a light source at infinity
+     */
+    default Point getPosition() {
+        return null;
+    }
+
+    /**
+     * Returns the distance from the light source beyond which its intensity is
+     * below a cutoff (in every color component).
+     *
+     * @param cutoff the intensity cutoff
+     * @return the influence radius, infinite for a light source that does not fade
+     */
+    default double getInfluenceRadius(double cutoff) {
+        return Double.POSITIVE_INFINITY;
+    }
+
 }
@@ -0,0 +1,279 @@
+package lighting;
+
+import primitives.Point;
+import primitives.Vector;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static primitives.Util.isZero;
+
+/**
+ * Light tree is a bounding volume hierarchy over the point lights and spotlights
+ * of a scene, for choosing a light stochastically in proportion to its estimated
+ * contribution to a point.<br/>
+ * Every node bounds the positions of its lights, their total power (strongest
+ * color component), their weakest attenuation and the cone of their beam
+ * directions (spotlights emit into the hemisphere around their direction, point
+ * lights in all directions). A light is chosen by descending from the root,
+ * picking a child in proportion to its importance - a conservative estimate of
+ * the light reaching the point - so the cost is logarithmic in the amount of
+ * lights. The probability of the choice is returned for weighting the sample.
+ * Light sources without a position (e.g. directional lights) are not in the
+ * tree and are kept aside.
+ */
+public final class LightTree {
+    /**
+     * A light chosen for a point
+     *
+     * @param light       the light source
+     * @param probability the probability of choosing the light
+     */
+    public record Selection(LightSource light, double probability) {
+    }
+
+    /**
+     * A node of the tree
+     */
+    private static final class Node {
+        /** The corner of the bounds with the lowest coordinates */
+        private final double[] min = new double[3];
+        /** The corner of the bounds with the highest coordinates */
+        private final double[] max = new double[3];
+        /** Total power of the lights */
+        private double         power;
+        /** Weakest constant, linear and quadratic attenuation of the lights */
+        private double         kC, kL, kQ;
+        /** Axis of the cone of the beam directions, null if the lights emit in all directions */
+        private double[]       axis;
+        /** Half angle of the cone of the beam directions */
+        private double         angle;
+        /** The light of a leaf, null for an inner node */
+        private LightSource    light;
+        /** Children of an inner node */
+        private Node           left, right;
+    }
+
+    /** Light sources kept aside - without a position */
+    private final List<LightSource> unbounded;
+    /** The root of the tree, null if there are no lights in it */
+    private final Node              root;
+
+    /**
+     * Builds the tree of the light sources
+     *
+     * @param lights the light sources
+     */
+    public LightTree(List<LightSource> lights) {
+        List<LightSource> aside = new ArrayList<>();
+        List<Node> leaves = new ArrayList<>();
+        for (LightSource light : lights) {
+            if (light instanceof PointLight pointLight) {
+                leaves.add(leaf(pointLight));
+            } else {
+                aside.add(light);
+            }
+        }
+        unbounded = List.copyOf(aside);
+        root = leaves.isEmpty() ? null : build(leaves);
+    }
+
+    /**
+     * The light sources that are not in the tree
+     *
+     * @return the light sources without a position
+     */
+    public List<LightSource> getUnbounded() {
+        return unbounded;
+    }
+
+    /**
+     * Creates the leaf of a light
+     *
+     * @param light the light
+     * @return the leaf
+     */
+    private static Node leaf(PointLight light) {
+        Node node = new Node();
+        Point position = light.getPosition();
+        for (int i = 0; i < 3; i++) node.min[i] = node.max[i] = position.getComponent(i);
+        node.power = max(light.getIntensity().getRed(), light.getIntensity().getGreen(),
+                light.getIntensity().getBlue());
+        node.kC = light.getKc();
+        node.kL = light.getKl();
+        node.kQ = light.getKq();
+        if (light instanceof SpotLight spot) {
+            Vector direction = spot.getDirection();
+            node.axis = new double[] { direction.getX(), direction.getY(), direction.getZ() };
+            node.angle = 0;
+        }
+        node.light = light;
+        return node;
+    }
+
+    /**
+     * Builds a subtree by splitting the lights at the median of the longest axis
+     *
+     * @param nodes the leaves of the lights
+     * @return the root of the subtree
+     */
+    private static Node build(List<Node> nodes) {
+        if (nodes.size() == 1) return nodes.getFirst();
+
+        double[] low = nodes.getFirst().min.clone(), high = nodes.getFirst().min.clone();
+        for (Node node : nodes)
+            for (int i = 0; i < 3; i++) {
+                low[i] = Math.min(low[i], node.min[i]);
+                high[i] = Math.max(high[i], node.min[i]);
+            }
+        int axis = 0;
+        for (int i = 1; i < 3; i++)
+            if (high[i] - low[i] > high[axis] - low[axis]) axis = i;
+        final int splitAxis = axis;
+        nodes.sort(Comparator.comparingDouble(node -> node.min[splitAxis]));
+
+        int mid = nodes.size() / 2;
+        Node node = new Node();
+        node.left = build(new ArrayList<>(nodes.subList(0, mid)));
+        node.right = build(new ArrayList<>(nodes.subList(mid, nodes.size())));
+        merge(node, node.left, node.right);
+        return node;
+    }
+
+    /**
+     * Sets the bounds of an inner node from its children
+     *
+     * @param node  the node
+     * @param left  the left child
+     * @param right the right child
+     */
+    private static void merge(Node node, Node left, Node right) {
+        for (int i = 0; i < 3; i++) {
+            node.min[i] = Math.min(left.min[i], right.min[i]);
+            node.max[i] = Math.max(left.max[i], right.max[i]);
+        }
+        node.power = left.power + right.power;
+        node.kC = Math.min(left.kC, right.kC);
+        node.kL = Math.min(left.kL, right.kL);
+        node.kQ = Math.min(left.kQ, right.kQ);
+
+        if (left.axis == null || right.axis == null) return; // emits in all directions
+        double between = Math.acos(Math.max(-1, Math.min(1, dot(left.axis, right.axis))));
+        if (left.angle >= between + right.angle) {
+            node.axis = left.axis;
+            node.angle = left.angle;
+        } else if (right.angle >= between + left.angle) {
+            node.axis = right.axis;
+            node.angle = right.angle;
+        } else {
+            double angle = (left.angle + between + right.angle) / 2;
+            double sin = Math.sin(between);
+            // Emits in all directions - or the axes are opposed, and no rotation plane is defined
+            if (angle >= Math.PI || isZero(sin)) return;
+            // Rotate the left axis towards the right one
+            double rotation = angle - left.angle;
+            double a = Math.sin(between - rotation) / sin, b = Math.sin(rotation) / sin;
+            double[] axis = new double[3];
+            for (int i = 0; i < 3; i++) axis[i] = a * left.axis[i] + b * right.axis[i];
+            double length = Math.sqrt(dot(axis, axis));
+            if (isZero(length)) return; // emits in all directions
+            for (int i = 0; i < 3; i++) axis[i] /= length;
+            node.axis = axis;
+            node.angle = angle;
+        }
+    }
+
+    /**
+     * Estimates the light of a node reaching a point: the power of the lights,
+     * attenuated by their weakest attenuation at the distance of the bounds, and
+     * zero if no beam direction of the node faces the point.
+     *
+     * @param node  the node
+     * @param point the point
+     * @return the importance of the node
+     */
+    private static double importance(Node node, double[] point) {
+        double[] center = new double[3], toPoint = new double[3];
+        double distanceSquared = 0, radiusSquared = 0;
+        for (int i = 0; i < 3; i++) {
+            double outside = Math.max(0, Math.max(node.min[i] - point[i], point[i] - node.max[i]));
+            distanceSquared += outside * outside;
+            center[i] = (node.min[i] + node.max[i]) / 2;
+            toPoint[i] = point[i] - center[i];
+            double half = (node.max[i] - node.min[i]) / 2;
+            radiusSquared += half * half;
+        }
+        double distance = Math.sqrt(distanceSquared);
+        double importance = node.power / (node.kC + node.kL * distance + node.kQ * distanceSquared);
+
+        if (node.axis != null) {
+            double centerDistance = Math.sqrt(dot(toPoint, toPoint));
+            if (centerDistance * centerDistance > radiusSquared) {
+                // The smallest angle between a beam direction and a direction from the bounds to the point
+                double toAxis = Math.acos(Math.max(-1, Math.min(1, dot(node.axis, toPoint) / centerDistance)));
+                double bounds = Math.asin(Math.sqrt(radiusSquared) / centerDistance);
+                double angle = Math.max(0, toAxis - node.angle - bounds);
+                if (angle >= Math.PI / 2) return 0;
+                importance *= Math.cos(angle);
+            }
+        }
+        return importance;
+    }
+
+    /**
+     * Chooses a light for a point in proportion to the importance of the nodes
+     *
+     * @param point  the point
+     * @param random a uniform random number in [0, 1)
+     * @return the chosen light and the probability of choosing it, or null if no
+     * light of the tree can reach the point
+     */
+    public Selection select(Point point, double random) {
+        if (root == null) return null;
+        double[] p = { point.getX(), point.getY(), point.getZ() };
+        if (root.light == null && importance(root, p) == 0) return null;
+
+        Node node = root;
+        double probability = 1;
+        while (node.light == null) {
+            double left = importance(node.left, p), right = importance(node.right, p);
+            if (left + right == 0) return null;
+            double chooseLeft = left / (left + right);
+            if (random < chooseLeft) {
+                node = node.left;
+                probability *= chooseLeft;
+                random /= chooseLeft;
+            } else {
+                node = node.right;
+                probability *= 1 - chooseLeft;
+                random = (random - chooseLeft) / (1 - chooseLeft);
+            }
+            random = Math.min(random, Math.nextDown(1d));
+        }
+        return new Selection(node.light, probability);
+    }
+
+    /**
+     * Dot product of two vectors
+     *
+     * @param a the first vector
+     * @param b the second vector
+     * @return the dot product
+     */
+    private static double dot(double[] a, double[] b) {
+        return a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+    }
+
+    /**
+     * The largest of three values
+     *
+     * @param a the first value
+     * @param b the second value
+     * @param c the third value
+     * @return the largest value
+     */
+    private static double max(double a, double b, double c) {
+        return Math.max(a, Math.max(b, c));
+    }
+}
@@ -101,4 +101,69 @@ public class PointLight extends Light implements LightSource {
     public double getDistance(Point p) {
         return position.distance(p);
     }
+
+    /**
+     * Calculates the direction, the distance and the attenuated intensity of the
+     * light reaching a point, subtracting the position and measuring the distance once.
+     *
+     * @param p      the point
+     * @param sample the sample to fill
+     * @return the filled sample
+     */
+    @Override
+    public LightSample sample(Point p, LightSample sample) {
+        Vector fromLight = p.subtract(position);
+        double d = fromLight.length();
+        return sample.set(fromLight.scale(1 / d), d, intensity.scale(1d / (kC + kL * d + kQ * d * d)));
+    }
+
+    /**
+     * Returns the constant attenuation factor.
+     *
+     * @return the constant attenuation coefficient
+     */
+    double getKc() {
+        return kC;
+    }
+
+    /**
+     * Returns the linear attenuation factor.
+     *
+     * @return the linear attenuation coefficient
+     */
+    double getKl() {
+        return kL;
+    }
+
+    /**
+     * Returns the quadratic attenuation factor.
+     *
+     * @return the quadratic attenuation coefficient
+     */
+    double getKq() {
+        return kQ;
+    }
+
+    @Override
+    public Point getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the distance beyond which the attenuated intensity is below a cutoff -
+     * the root of {@code kC + kL*d + kQ*d^2 = I/cutoff} for the strongest color
+     * component {@code I}.
+     *
+     * @param cutoff the intensity cutoff
+     * @return the influence radius, infinite without attenuation by distance
+     */
+    @Override
+    public double getInfluenceRadius(double cutoff) {
+        if (cutoff <= 0) return Double.POSITIVE_INFINITY;
+        double attenuation = Math.max(intensity.getRed(), Math.max(intensity.getGreen(), intensity.getBlue())) / cutoff;
+        if (attenuation <= kC) return 0;
+        if (kQ > 0) return (-kL + Math.sqrt(kL * kL + 4 * kQ * (attenuation - kC))) / (2 * kQ);
+        if (kL > 0) return (attenuation - kC) / kL;
+        return Double.POSITIVE_INFINITY;
+    }
 }
@@ -0,0 +1,91 @@
+package lighting;
+
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+
+/**
+ * Represents a rectangular area light source in a 3D scene.
+ * The rectangle is given by its center and its two edge vectors.
+ */
+public class RectangleLight extends AreaLight {
+    /**
+     * The vector along the first edge of the rectangle (its full length).
+     */
+    private final Vector width;
+
+    /**
+     * The vector along the second edge of the rectangle (its full length).
+     */
+    private final Vector height;
+
+    /**
+     * Constructs a rectangular light source.
+     *
+     * @param intensity the color intensity of the light
+     * @param center    the center of the rectangle
+     * @param width     the first edge of the rectangle
+     * @param height    the second edge of the rectangle
+     */
+    public RectangleLight(Color intensity, Point center, Vector width, Vector height) {
+        super(intensity, center);
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Maps a point of the unit square linearly onto the rectangle.
+     *
+     * @param s the coordinate along the first edge in [0, 1]
+     * @param t the coordinate along the second edge in [0, 1]
+     * @return the point on the rectangle
+     */
+    @Override
+    public Point getSample(double s, double t) {
+        return offset(position, width, s - 0.5, height, t - 0.5);
+    }
+
+    /**
+     * Sets the amount of cells of the sampling grid along each side.
+     *
+     * @param sampleGrid the amount of cells along each side, at least 2
+     * @return the current RectangleLight instance (for method chaining)
+     */
+    @Override
+    public RectangleLight setSampleGrid(int sampleGrid) {
+        return (RectangleLight) super.setSampleGrid(sampleGrid);
+    }
+
+    /**
+     * Sets the constant attenuation factor for the rectangular light.
+     *
+     * @param kC the constant attenuation coefficient
+     * @return the current RectangleLight instance (for method chaining)
+     */
+    @Override
+    public RectangleLight setKc(double kC) {
+        return (RectangleLight) super.setKc(kC);
+    }
+
+    /**
+     * Sets the linear attenuation factor for the rectangular light.
+     *
+     * @param kL the linear attenuation coefficient
+     * @return the current RectangleLight instance (for method chaining)
+     */
+    @Override
+    public RectangleLight setKl(double kL) {
+        return (RectangleLight) super.setKl(kL);
+    }
+
+    /**
+     * Sets the quadratic attenuation factor for the rectangular light.
+     *
+     * @param kQ the quadratic attenuation coefficient
+     * @return the current RectangleLight instance (for method chaining)
+     */
+    @Override
+    public RectangleLight setKq(double kQ) {
+        return (RectangleLight) super.setKq(kQ);
+    }
+}
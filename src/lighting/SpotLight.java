@@ -22,6 +22,12 @@ public class SpotLight extends PointLight {
      */
     private Double narrowBeam = 1d;
 
+    /**
+     * The beam narrowing factor if it is a small whole number, raised by
+     * multiplication instead of {@link Math#pow}, or 0 otherwise.
+     */
+    private int wholeBeam = 1;
+
     /**
      * Constructs a new spotlight with the specified intensity, position, and direction.
      *
@@ -43,9 +49,20 @@ public class SpotLight extends PointLight {
      */
     public SpotLight setNarrowBeam(double narrowBeam) {
         this.narrowBeam = narrowBeam;
+        this.wholeBeam = narrowBeam == Math.rint(narrowBeam) && narrowBeam >= 1 && narrowBeam <= 1024
+                ? (int) narrowBeam : 0;
         return this;
     }
 
+    /**
+     * Returns the direction of the spotlight beam.
+     *
+     * @return the normalized beam direction
+     */
+    public Vector getDirection() {
+        return direction;
+    }
+
     /**
      * Sets the constant attenuation factor for the spotlight.
      *
@@ -89,8 +106,39 @@ public class SpotLight extends PointLight {
     @Override
     public Color getIntensity(Point point) {
         Color oldColor = super.getIntensity(point);
-        if (narrowBeam != 1d)
-            return oldColor.scale(Math.pow(Math.max(0d, direction.dotProduct(getL(point))), narrowBeam));
-        return oldColor.scale(Math.max(0d, direction.dotProduct(getL(point))));
+        return oldColor.scale(beamFactor(Math.max(0d, direction.dotProduct(getL(point)))));
+    }
+
+    /**
+     * Calculates the direction, the distance and the intensity of the spotlight
+     * reaching a point in a single pass, reusing the direction for the beam factor.
+     *
+     * @param p      the point
+     * @param sample the sample to fill
+     * @return the filled sample
+     */
+    @Override
+    public LightSample sample(Point p, LightSample sample) {
+        super.sample(p, sample);
+        double beam = Math.max(0d, direction.dotProduct(sample.l));
+        sample.intensity = sample.intensity.scale(beamFactor(beam));
+        return sample;
+    }
+
+    /**
+     * Raises the cosine of the angle from the beam direction to the narrow beam factor
+     *
+     * @param cos the cosine, not negative
+     * @return the beam factor
+     */
+    private double beamFactor(double cos) {
+        if (wholeBeam == 0) return Math.pow(cos, narrowBeam);
+        // Exponentiation by squaring
+        double factor = 1;
+        for (int exponent = wholeBeam; exponent > 0; exponent >>= 1) {
+            if ((exponent & 1) != 0) factor *= cos;
+            cos *= cos;
+        }
+        return factor;
     }
 }
@@ -78,6 +78,48 @@ public class Color {
                 ib > 255 ? 255 : ib);
     }
 
+    /**
+     * Returns the red component of this color.
+     *
+     * @return the red component (not clamped)
+     */
+    public double getRed() {
+        return rgb.d1();
+    }
+
+    /**
+     * Returns the green component of this color.
+     *
+     * @return the green component (not clamped)
+     */
+    public double getGreen() {
+        return rgb.d2();
+    }
+
+    /**
+     * Returns the blue component of this color.
+     *
+     * @return the blue component (not clamped)
+     */
+    public double getBlue() {
+        return rgb.d3();
+    }
+
+    /**
+     * Converts this color to a packed 24-bit RGB value (0xRRGGBB), the same
+     * value as {@code getColor().getRGB()} without the alpha bits and without
+     * creating a {@link java.awt.Color} object.
+     * Any component value above 255 is clamped to 255.
+     *
+     * @return the packed RGB value
+     */
+    public int getRGB() {
+        int ir = (int) rgb.d1();
+        int ig = (int) rgb.d2();
+        int ib = (int) rgb.d3();
+        return (ir > 255 ? 255 : ir) << 16 | (ig > 255 ? 255 : ig) << 8 | (ib > 255 ? 255 : ib);
+    }
+
     /**
      * Adds one or more colors to this color component-wise.
      *
@@ -0,0 +1,174 @@
+package renderer;
+
+import primitives.Color;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Accumulation buffer class holds the running sums of the samples traced
+ * through each pixel of the image, for rendering modes that trace the samples
+ * of a pixel in several steps (progressive and time budgeted rendering).<br/>
+ * Each pixel is updated by a single thread at a time (the thread rendering the
+ * tile containing it), so the buffer itself is not synchronized.
+ */
+final class AccumulationBuffer {
+    /** Horizontal resolution of the image - number of pixels in row */
+    private final int      nX;
+    /** Vertical resolution of the image - number of pixels in column */
+    private final int      nY;
+    /** Sums of the sample colors, three components (red, green, blue) per pixel */
+    private final double[] sums;
+    /** Sums of the squared luminance of the samples, for estimating their variance */
+    private final double[] lumSquares;
+    /** Amounts of samples per pixel */
+    private final int[]    counts;
+
+    /** Luminance weights of the red, green and blue components (Rec. 709) */
+    private static final double LUM_R = 0.2126, LUM_G = 0.7152, LUM_B = 0.0722;
+
+    /**
+     * Creates an empty accumulation buffer
+     * @param nX amount of pixels by width
+     * @param nY amount of pixels by height
+     */
+    AccumulationBuffer(int nX, int nY) {
+        this.nX = nX;
+        this.nY = nY;
+        sums       = new double[3 * nX * nY];
+        lumSquares = new double[nX * nY];
+        counts     = new int[nX * nY];
+    }
+
+    /**
+     * View Plane Y axis resolution
+     * @return the amount of vertical pixels
+     */
+    int nY() { return nY; }
+
+    /**
+     * View Plane X axis resolution
+     * @return the amount of horizontal pixels
+     */
+    int nX() { return nX; }
+
+    /**
+     * Adds a sample to a pixel
+     * @param xIndex X axis index of the pixel
+     * @param yIndex Y axis index of the pixel
+     * @param color  the sample color
+     */
+    void addSample(int xIndex, int yIndex, Color color) {
+        int p = yIndex * nX + xIndex;
+        int c = 3 * p;
+        sums[c]     += color.getRed();
+        sums[c + 1] += color.getGreen();
+        sums[c + 2] += color.getBlue();
+        double lum = LUM_R * color.getRed() + LUM_G * color.getGreen() + LUM_B * color.getBlue();
+        lumSquares[p] += lum * lum;
+        ++counts[p];
+    }
+
+    /**
+     * Amount of samples accumulated in a pixel
+     * @param xIndex X axis index of the pixel
+     * @param yIndex Y axis index of the pixel
+     * @return the amount of samples
+     */
+    int count(int xIndex, int yIndex) {
+        return counts[yIndex * nX + xIndex];
+    }
+
+    /**
+     * The average color of the samples of a pixel
+     * @param xIndex X axis index of the pixel
+     * @param yIndex Y axis index of the pixel
+     * @return the average color, black if there are no samples
+     */
+    Color mean(int xIndex, int yIndex) {
+        int p = yIndex * nX + xIndex;
+        int n = counts[p];
+        if (n == 0) return Color.BLACK;
+        int c = 3 * p;
+        return new Color(sums[c] / n, sums[c + 1] / n, sums[c + 2] / n);
+    }
+
+    /**
+     * Estimated standard error of the average luminance of a pixel - the sample
+     * standard deviation of the luminance divided by the square root of the amount
+     * of samples. It estimates how far the pixel is from its converged value
+     * @param xIndex X axis index of the pixel
+     * @param yIndex Y axis index of the pixel
+     * @return the standard error, infinity if there are less than two samples
+     */
+    double standardError(int xIndex, int yIndex) {
+        int p = yIndex * nX + xIndex;
+        int n = counts[p];
+        if (n < 2) return Double.POSITIVE_INFINITY;
+        int c = 3 * p;
+        double lumSum   = LUM_R * sums[c] + LUM_G * sums[c + 1] + LUM_B * sums[c + 2];
+        double variance = Math.max(0d, (lumSquares[p] - lumSum * lumSum / n) / (n - 1));
+        return Math.sqrt(variance / n);
+    }
+
+    /**
+     * Copies the samples of the pixels of a tile into a separate buffer
+     * @param tile the tile
+     * @return a buffer of the size of the tile holding its samples
+     */
+    AccumulationBuffer copy(PixelManager.Tile tile) {
+        AccumulationBuffer part = new AccumulationBuffer(tile.width(), tile.height());
+        for (int y = 0; y < tile.height(); y++) {
+            int p = (tile.row() + y) * nX + tile.col();
+            System.arraycopy(sums, 3 * p, part.sums, 3 * y * tile.width(), 3 * tile.width());
+            System.arraycopy(lumSquares, p, part.lumSquares, y * tile.width(), tile.width());
+            System.arraycopy(counts, p, part.counts, y * tile.width(), tile.width());
+        }
+        return part;
+    }
+
+    /**
+     * Replaces the samples of the pixels of a tile by the samples of a separate buffer
+     * @param tile the tile
+     * @param part a buffer of the size of the tile, as returned by {@link #copy(PixelManager.Tile)}
+     */
+    void paste(PixelManager.Tile tile, AccumulationBuffer part) {
+        for (int y = 0; y < tile.height(); y++) {
+            int p = (tile.row() + y) * nX + tile.col();
+            System.arraycopy(part.sums, 3 * y * tile.width(), sums, 3 * p, 3 * tile.width());
+            System.arraycopy(part.lumSquares, y * tile.width(), lumSquares, p, tile.width());
+            System.arraycopy(part.counts, y * tile.width(), counts, p, tile.width());
+        }
+    }
+
+    /** Size in bytes of a row of pixels in {@link #putRow(int, ByteBuffer)} */
+    int rowBytes() {
+        return nX * (4 * Double.BYTES + Integer.BYTES);
+    }
+
+    /**
+     * Puts the samples of a row of pixels into a byte buffer
+     * @param yIndex Y axis index of the row
+     * @param dst    the byte buffer, with at least {@link #rowBytes()} remaining bytes
+     */
+    void putRow(int yIndex, ByteBuffer dst) {
+        for (int p = yIndex * nX, end = p + nX; p < end; ++p)
+            dst.putDouble(sums[3 * p]).putDouble(sums[3 * p + 1]).putDouble(sums[3 * p + 2])
+                    .putDouble(lumSquares[p]).putInt(counts[p]);
+    }
+
+    /**
+     * Gets the samples of a row of pixels from a byte buffer written by
+     * {@link #putRow(int, ByteBuffer)}
+     * @param yIndex Y axis index of the row
+     * @param src    the byte buffer, with at least {@link #rowBytes()} remaining bytes
+     */
+    void getRow(int yIndex, ByteBuffer src) {
+        for (int p = yIndex * nX, end = p + nX; p < end; ++p) {
+            sums[3 * p]     = src.getDouble();
+            sums[3 * p + 1] = src.getDouble();
+            sums[3 * p + 2] = src.getDouble();
+            lumSquares[p]   = src.getDouble();
+            counts[p]       = src.getInt();
+        }
+    }
+}
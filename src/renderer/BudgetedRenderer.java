@@ -0,0 +1,171 @@
+package renderer;
+
+import primitives.Color;
+
+import java.util.Arrays;
+
+/**
+ * BudgetedRenderer is a helper class rendering the image of a camera within a
+ * wall-clock time budget, distributing the samples to the pixels according to
+ * their estimated convergence.<br/>
+ * Every pixel first gets a small initial batch of samples. Then, in rounds
+ * until the deadline, the standard error of every pixel (from the running
+ * mean and variance of its samples) is estimated and a round of samples is
+ * distributed to the pixels in proportion to it, so noisy pixels (glossy
+ * surfaces, edges, soft shadows) get most of the samples and converged pixels
+ * (flat background) get none. Rendering stops at the deadline with the best
+ * image so far, or earlier when all the pixels are converged or have traced
+ * their whole beam.
+ */
+final class BudgetedRenderer {
+    /** Reason of the rendering to stop */
+    enum Stop {
+        /** The time budget is over */
+        DEADLINE,
+        /** All the pixels are converged or have traced their whole beam */
+        CONVERGED
+    }
+
+    /** Amount of samples per pixel in the initial batch */
+    static final int          INITIAL_SAMPLES = 4;
+    /** Average amount of samples per pixel in each round */
+    private static final int  ROUND_SAMPLES   = 4;
+
+    /** The camera tracing the rays */
+    private final Camera      camera;
+    /** The image of the camera */
+    private final ImageWriter imageWriter;
+    /** Maximum amount of samples per pixel - the whole beam of a pixel */
+    private final int         beamSize;
+    /** Amount of rendering threads, 0 for rendering in the current thread */
+    private final int         threads;
+    /** Progress printing interval of each round */
+    private final double      printInterval;
+    /** Time budget in seconds */
+    private final double      timeBudget;
+    /** Standard error (0-255 scale) below which a pixel is converged */
+    private final double      tolerance;
+
+    /** Accumulated samples of all the rounds */
+    private AccumulationBuffer buffer;
+    /** Amount of samples allocated to each pixel in the current round */
+    private int[]             allocation;
+    /** Time (nanoseconds) when the time budget is over */
+    private long              deadline;
+    /** Reason of the rendering to stop, null before the rendering is over */
+    private Stop              stop;
+    /** Amount of rounds rendered, including the initial batch */
+    private int               rounds;
+
+    /**
+     * Initializes the time budgeted rendering of a camera
+     * @param camera        the camera tracing the rays
+     * @param imageWriter   the image of the camera
+     * @param beamSize      maximum amount of samples per pixel
+     * @param threads       amount of rendering threads, 0 for the current thread
+     * @param printInterval progress printing interval of each round
+     * @param timeBudget    time budget in seconds
+     * @param tolerance     standard error (0-255 scale) below which a pixel is converged
+     */
+    BudgetedRenderer(Camera camera, ImageWriter imageWriter, int beamSize, int threads, double printInterval,
+                     double timeBudget, double tolerance) {
+        this.camera        = camera;
+        this.imageWriter   = imageWriter;
+        this.beamSize      = beamSize;
+        this.threads       = threads;
+        this.printInterval = printInterval;
+        this.timeBudget    = timeBudget;
+        this.tolerance     = tolerance;
+    }
+
+    /** Renders the rounds until the deadline or until the image is converged */
+    void render() {
+        int nX = imageWriter.nX();
+        int nY = imageWriter.nY();
+        buffer     = new AccumulationBuffer(nX, nY);
+        allocation = new int[nX * nY];
+        deadline   = System.nanoTime() + (long) (timeBudget * 1e9);
+
+        Arrays.fill(allocation, Math.min(INITIAL_SAMPLES, beamSize));
+        // the initial batch is always complete, so there is an image to publish
+        renderRound(0, false);
+        rounds = 1;
+        while (stop == null) {
+            if (System.nanoTime() >= deadline) stop = Stop.DEADLINE;
+            else if (!allocate(nX, nY)) stop = Stop.CONVERGED;
+            else renderRound(rounds++, true);
+        }
+    }
+
+    /**
+     * The reason of the rendering to stop
+     * @return the reason, null before the rendering is over
+     */
+    Stop stop() { return stop; }
+
+    /**
+     * Amount of rounds rendered - the initial batch and the rounds that were
+     * started before the rendering stopped (the last one may be cut by the deadline)
+     * @return the amount of rounds
+     */
+    int rounds() { return rounds; }
+
+    /**
+     * Amount of samples traced for a pixel
+     * @param x column
+     * @param y row
+     * @return the amount of samples
+     */
+    int samples(int x, int y) { return buffer.count(x, y); }
+
+    /**
+     * Distributes the samples of the next round to the pixels in proportion to
+     * their standard error
+     * @param nX amount of pixels by width
+     * @param nY amount of pixels by height
+     * @return false if all the pixels are converged or complete
+     */
+    private boolean allocate(int nX, int nY) {
+        double[] priority = new double[nX * nY];
+        double   total    = 0;
+        for (int i = 0, p = 0; i < nY; i++)
+            for (int j = 0; j < nX; j++, p++) {
+                double error = buffer.standardError(j, i);
+                if (buffer.count(j, i) < beamSize && error > tolerance) {
+                    priority[p] = error;
+                    total += error;
+                }
+            }
+        if (total == 0) return false;
+
+        double samplesPerPriority = (double) ROUND_SAMPLES * nX * nY / total;
+        for (int i = 0, p = 0; i < nY; i++)
+            for (int j = 0; j < nX; j++, p++)
+                allocation[p] = (int) Math.min(Math.round(priority[p] * samplesPerPriority),
+                        beamSize - buffer.count(j, i));
+        return true;
+    }
+
+    /**
+     * Traces the allocated samples of all the pixels and publishes the averages
+     * @param round     round number
+     * @param checkTime whether to stop tracing at the deadline
+     */
+    private void renderRound(int round, boolean checkTime) {
+        PixelManager manager = new PixelManager(imageWriter.nY(), imageWriter.nX(), Camera.TILE_SIZE, printInterval);
+        camera.renderTiles(manager, threads, tile -> {
+            Color[] colors = new Color[tile.width() * tile.height()];
+            for (int y = 0, p = 0; y < tile.height(); y++)
+                for (int x = 0; x < tile.width(); x++, p++) {
+                    int j = tile.col() + x;
+                    int i = tile.row() + y;
+                    int samples = allocation[i * imageWriter.nX() + j];
+                    if (samples > 0 && (!checkTime || System.nanoTime() < deadline))
+                        camera.traceSamples(j, i, buffer.count(j, i), samples, round + 1, buffer);
+                    colors[p] = buffer.mean(j, i);
+                }
+            imageWriter.writeTile(tile.col(), tile.row(), tile.width(), tile.height(), colors);
+            manager.tileDone(tile);
+        });
+    }
+}
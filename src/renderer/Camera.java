@@ -1,14 +1,21 @@
 package renderer;
 
+import geometries.Geometry;
+import geometries.Intersectable;
+import geometries.Intersectable.Intersection;
 import primitives.Color;
 import primitives.Point;
 import primitives.Ray;
 import primitives.Vector;
 import scene.Scene;
 
+import java.util.BitSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.MissingResourceException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
 import java.util.stream.IntStream;
 
 import static primitives.Util.alignZero;
@@ -60,6 +67,23 @@ public class Camera implements Cloneable {
      */
     private ImageWriter imageWriter;
 
+    /**
+     * Whether the image keeps the full range colors for tone mapping and the
+     * floating point image formats.
+     */
+    private boolean highDynamicRange = false;
+
+    /**
+     * Name of the png file the image is streamed into while rendering, or null
+     * when the image is kept in memory.
+     */
+    private String streamingImageName = null;
+
+    /**
+     * Writer of the image being streamed during rendering.
+     */
+    private StreamingImageWriter streamingWriter = null;
+
     /**
      * The ray tracer used to determine pixel color.
      */
@@ -78,11 +102,115 @@ public class Camera implements Cloneable {
     private final int numOfRays = 289;
     private final RayGrid rayGrid = new RayGrid(numOfRays);
 
+    /**
+     * Primary ray generator with the view plane data precomputed when the camera is built.
+     */
+    private RayGenerator rayGenerator;
+
     private int threadsCount = 0; // -2 auto, -1 range/stream, 0 no threads, 1+ number of threadsprivate
     static final int SPARE_THREADS = 2; // Spare threads if trying to use all the coresprivate
     double printInterval = 0; // printing progress percentage interval (0 – no printing)
     private PixelManager pixelManager; // pixel manager object
 
+    /**
+     * Width and height (in pixels) of the tiles allocated to the rendering threads.
+     */
+    static final int TILE_SIZE = 16;
+
+    /**
+     * Whether the image is rendered progressively, in passes of increasing sample count.
+     */
+    private boolean progressive = false;
+
+    /**
+     * Time budget of progressive rendering in seconds (0 - unlimited).
+     */
+    private double progressiveTime = 0;
+
+    /**
+     * Convergence threshold of progressive rendering - the average change of a color
+     * component between passes below which rendering stops (0 - never).
+     */
+    private double progressiveThreshold = 0;
+
+    /**
+     * Listener notified after each progressive rendering pass, or null.
+     */
+    private ObjIntConsumer<Camera> progressiveListener = null;
+
+    /**
+     * Name of the png file a snapshot is written into after each progressive
+     * rendering pass, or null.
+     */
+    private String progressiveSnapshot = null;
+
+    /**
+     * Time budget of time budgeted rendering in seconds (0 - not time budgeted).
+     */
+    private double timeBudget = 0;
+
+    /**
+     * Convergence tolerance of time budgeted rendering - the standard error of a pixel
+     * luminance (0-255 scale) below which the pixel gets no more samples.
+     */
+    private double timeBudgetTolerance = 0;
+
+    /**
+     * The renderer of the last time budgeted render, or null.
+     */
+    private BudgetedRenderer budgetedRenderer = null;
+
+    /**
+     * Name of the checkpoint file the render state is saved into periodically, for
+     * resuming a killed render, or null.
+     */
+    private String checkpointName = null;
+
+    /**
+     * Interval between checkpoint writes in seconds.
+     */
+    private double checkpointInterval = 0;
+
+    /**
+     * Writer of the checkpoint file during a checkpointed tiled render, or null.
+     */
+    private CheckpointWriter checkpointWriter = null;
+
+    /**
+     * The rectangular region of the image that is rendered (the rest of the image is
+     * kept), or null for the whole image.
+     */
+    private PixelManager.Tile renderRegion = null;
+
+    /**
+     * Name of a png file of a previous render the region is composited over, or null.
+     */
+    private String renderBackground = null;
+
+    /**
+     * Geometry selecting the rendered pixels - only the pixels seeing it (and their
+     * neighbours, for the antialiased edges) are rendered, or null for all the pixels.
+     */
+    private Intersectable maskGeometry = null;
+
+    /**
+     * The pixels selected by the mask geometry during a masked render, or null.
+     */
+    private BitSet renderMask = null;
+
+    /**
+     * Whether the beam of a pixel is traced coherently - the other rays of a
+     * pixel whose coarse rays hit the same geometry are intersected with that
+     * geometry alone.
+     */
+    private boolean beamCoherence = false;
+
+    /**
+     * Least cosine of the angle between the normals at the hits of the coarse
+     * rays of a pixel beam traced coherently.
+     */
+    static final double BEAM_NORMAL_COS = 0.98;
+
     /**
      * Private constructor to enforce use of Builder.
      */
@@ -92,7 +220,22 @@ public class Camera implements Cloneable {
      * Builder class for constructing a {@link Camera} instance in a flexible and readable way.
      */
     public static class Builder {
-        final Camera camera = new Camera();
+        final Camera camera;
+
+        /**
+         * Creates a builder of a camera with the default settings.
+         */
+        public Builder() {
+            this(new Camera());
+        }
+
+        /**
+         * Creates a builder of a camera with the settings of another camera.
+         * @param camera the camera holding the settings - owned by the builder
+         */
+        private Builder(Camera camera) {
+            this.camera = camera;
+        }
 
         /**
          * Point that the camera is currently targeting/looking at.
@@ -153,12 +296,28 @@ public class Camera implements Cloneable {
             return targetPoint;
         }
 
+        /**
+         * Creates a builder with the settings of this builder, so the settings of
+         * either builder can be changed without changing the other one. Both
+         * builders share the ray tracer.
+         * @return the new builder
+         */
+        Builder copy() {
+            try {
+                Builder copy = new Builder((Camera) camera.clone());
+                copy.targetPoint = targetPoint;
+                return copy;
+            } catch (CloneNotSupportedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
         /**
          * rotates the camera
          * @param degrees the angle of rotation
          * @return the object for method stacking
          */
-        public Builder rotateCamera(int degrees) {
+        public Builder rotateCamera(double degrees) {
             if (camera.to == null) {
                 throw new IllegalStateException("Camera 'to' vector must be set before rotating");
             }
@@ -185,8 +344,13 @@ public class Camera implements Cloneable {
             // new_up = up*cos(θ) - right*sin(θ)
             // new_right = up*sin(θ) + right*cos(θ)
 
-            Vector newUp = currentUp.scale(cosTheta).add(currentRight.scale(-sinTheta));
-            Vector newRight = currentUp.scale(sinTheta).add(currentRight.scale(cosTheta));
+            // at multiples of 90 degrees one of the terms vanishes (a zero vector is not allowed)
+            Vector newUp = isZero(cosTheta) ? currentRight.scale(-sinTheta)
+                    : isZero(sinTheta) ? currentUp.scale(cosTheta)
+                    : currentUp.scale(cosTheta).add(currentRight.scale(-sinTheta));
+            Vector newRight = isZero(cosTheta) ? currentUp.scale(sinTheta)
+                    : isZero(sinTheta) ? currentRight.scale(cosTheta)
+                    : currentUp.scale(sinTheta).add(currentRight.scale(cosTheta));
 
             // Normalize to ensure unit vectors (should already be unit, but ensure precision)
             camera.up = newUp.normalize();
@@ -312,6 +476,16 @@ public class Camera implements Cloneable {
             return this;
         }
 
+        /**
+         * Sets a configured ray tracer to be used for rendering.
+         * @param rayTracer The ray tracer.
+         * @return this Builder instance.
+         */
+        public Builder setRayTracer(RayTracerBase rayTracer) {
+            camera.rayTracer = rayTracer;
+            return this;
+        }
+
         public Builder setMultithreading(int threads) {
             if (threads < -2) throw new IllegalArgumentException("Multithreading must be -2 or higher");
             if (threads >= -1) camera.threadsCount = threads;
@@ -321,6 +495,169 @@ public class Camera implements Cloneable {
             }
             return this;
         }
+        /**
+         * Streams the rendered image into a png file band by band while it is
+         * rendered, instead of keeping the whole image in memory. The image is
+         * then written by {@link Camera#renderImage()} and cannot be written
+         * by the other image writing methods.
+         * @param imageName the name of the png file, or null to keep the image in memory
+         * @return this Builder instance.
+         */
+        public Builder setStreamingOutput(String imageName) {
+            camera.streamingImageName = imageName;
+            return this;
+        }
+
+        /**
+         * Keeps the full range colors of the rendered image next to its 8-bit
+         * colors, so it can be tone mapped by {@link Camera#writeToImage(String, ToneMapping)}
+         * and written by {@link Camera#writeToPfm(String)} and {@link Camera#writeToExr(String)}.
+         * Off by default, since it takes three times the memory of the 8-bit image.
+         * @param hdr whether the full range colors are kept
+         * @return this Builder instance.
+         */
+        public Builder setHighDynamicRange(boolean hdr) {
+            camera.highDynamicRange = hdr;
+            return this;
+        }
+
+        /**
+         * Enables progressive rendering: the image is rendered in passes of increasing
+         * sample count (1, 2, 4, ... samples per pixel) into an accumulation buffer, until
+         * the whole beam of each pixel is traced, the time budget is over or the image
+         * converges. The image holds the best result so far after each pass.
+         * @param timeBudget maximum rendering time in seconds, 0 for unlimited
+         * @param threshold  convergence threshold - rendering stops when the average change
+         *                   of a color component (0-255 scale) in a pass is below it,
+         *                   0 for rendering all the passes
+         * @return this Builder instance.
+         */
+        public Builder setProgressive(double timeBudget, double threshold) {
+            if (timeBudget < 0) throw new IllegalArgumentException("Time budget must be non-negative");
+            if (threshold < 0) throw new IllegalArgumentException("Convergence threshold must be non-negative");
+            camera.progressive = true;
+            camera.progressiveTime = timeBudget;
+            camera.progressiveThreshold = threshold;
+            return this;
+        }
+
+        /**
+         * Sets a listener notified after each progressive rendering pass, with the camera
+         * (holding the image so far) and the amount of samples per pixel traced so far.
+         * @param listener the listener, or null
+         * @return this Builder instance.
+         */
+        public Builder setProgressiveListener(ObjIntConsumer<Camera> listener) {
+            camera.progressiveListener = listener;
+            return this;
+        }
+
+        /**
+         * Sets a png file that a snapshot of the image is written into after each
+         * progressive rendering pass.
+         * @param imageName the name of the png file, or null
+         * @return this Builder instance.
+         */
+        public Builder setProgressiveSnapshot(String imageName) {
+            camera.progressiveSnapshot = imageName;
+            return this;
+        }
+
+        /**
+         * Enables time budgeted rendering: every pixel gets a few samples, and then the
+         * remaining time is spent in rounds distributing samples to the pixels in
+         * proportion to their estimated noise (the standard error of their samples),
+         * until the time budget is over or all the pixels are converged. The image holds
+         * the best result so far after each round.
+         * @param seconds   the time budget in seconds
+         * @param tolerance standard error of a pixel luminance (0-255 scale) below which
+         *                  the pixel is converged, 0 for never
+         * @return this Builder instance.
+         */
+        public Builder setTimeBudget(double seconds, double tolerance) {
+            if (seconds <= 0) throw new IllegalArgumentException("Time budget must be positive");
+            if (tolerance < 0) throw new IllegalArgumentException("Convergence tolerance must be non-negative");
+            camera.timeBudget = seconds;
+            camera.timeBudgetTolerance = tolerance;
+            return this;
+        }
+
+        /**
+         * Enables checkpointing of the render: the state of the render (the rendered tiles,
+         * and for progressive rendering the accumulated samples) is saved periodically by a
+         * background thread into a checkpoint file in the images folder. If the checkpoint
+         * file exists when the rendering starts, the render resumes from it, skipping the
+         * finished work. The checkpoint file is removed when the render completes.
+         * @param fileName the name of the checkpoint file (without extension)
+         * @param interval interval between checkpoint writes in seconds
+         * @return this Builder instance.
+         */
+        public Builder setCheckpoint(String fileName, double interval) {
+            if (fileName == null) throw new IllegalArgumentException("Checkpoint file name must not be null");
+            if (interval <= 0) throw new IllegalArgumentException("Checkpoint interval must be positive");
+            camera.checkpointName = fileName;
+            camera.checkpointInterval = interval;
+            return this;
+        }
+
+        /**
+         * Restricts the rendering to a rectangular region of the image. The pixels outside
+         * the region keep their color - black, or the color of the background image.
+         * @param col    column of the upper left pixel of the region
+         * @param row    row of the upper left pixel of the region
+         * @param width  amount of pixel columns in the region
+         * @param height amount of pixel rows in the region
+         * @return this Builder instance.
+         */
+        public Builder setRenderRegion(int col, int row, int width, int height) {
+            if (col < 0 || row < 0) throw new IllegalArgumentException("Region must start inside the image");
+            if (width <= 0 || height <= 0) throw new IllegalArgumentException("Region size must be positive");
+            camera.renderRegion = new PixelManager.Tile(col, row, width, height);
+            return this;
+        }
+
+        /**
+         * Restricts the rendering to the pixels that see a geometry (the closest
+         * intersection of the ray through the pixel center is on the geometry, or on one
+         * of its parts for a composite geometry), and the pixels around them. The other
+         * pixels keep their color - black, or the color of the background image.
+         * @param geometry the geometry, or null for rendering all the pixels
+         * @return this Builder instance.
+         */
+        public Builder setRenderMask(Intersectable geometry) {
+            camera.maskGeometry = geometry;
+            return this;
+        }
+
+        /**
+         * Sets a previous render of the image that a render region or mask is
+         * composited over.
+         * @param imageName the name of the png file in the images folder, or null
+         * @return this Builder instance.
+         */
+        public Builder setRenderBackground(String imageName) {
+            camera.renderBackground = imageName;
+            return this;
+        }
+
+        /**
+         * Enables coherent tracing of the pixel beams: the coarse rays of a beam
+         * (through the corners and the center of the pixel) are traced first, and
+         * if they all hit the same geometry with similar normals, the other rays of
+         * the beam are intersected with that geometry alone instead of traversing
+         * the whole scene - falling back to the whole scene for a ray that misses it.
+         * A geometry in front of it that all the coarse rays miss (thinner than the
+         * distance between them) may be missed by the other rays as well.
+         * Affects the full pixel beams, not the partial beams of progressive and
+         * time budgeted rendering.
+         * @param coherence whether the beams are traced coherently
+         * @return this Builder instance.
+         */
+        public Builder setBeamCoherence(boolean coherence) {
+            camera.beamCoherence = coherence;
+            return this;
+        }
+
         public Builder setDebugPrint(double interval) {
             if (interval < 0) throw new IllegalArgumentException("Interval value must be non-negative");
             camera.printInterval = interval;
@@ -367,14 +704,38 @@ public class Camera implements Cloneable {
             if (camera.distance <= 0)
                 throw new IllegalArgumentException("distance from camera to view must be positive");
 
+            if (camera.progressive && camera.streamingImageName != null)
+                throw new IllegalArgumentException("progressive rendering cannot stream the image");
+
+            if (camera.timeBudget > 0 && (camera.progressive || camera.streamingImageName != null))
+                throw new IllegalArgumentException("time budgeted rendering cannot be progressive or streamed");
+
+            if (camera.checkpointName != null && (camera.timeBudget > 0 || camera.streamingImageName != null))
+                throw new IllegalArgumentException("only tiled and progressive rendering can be checkpointed");
+
+            if (camera.highDynamicRange && camera.streamingImageName != null)
+                throw new IllegalArgumentException("a streamed image cannot keep the full range colors");
+
+            if ((camera.renderRegion != null || camera.maskGeometry != null)
+                    && (camera.progressive || camera.timeBudget > 0 || camera.streamingImageName != null
+                    || camera.checkpointName != null))
+                throw new IllegalArgumentException("only tiled rendering can render a region or a mask");
+
+            if (camera.renderRegion != null && (camera.renderRegion.col() + camera.renderRegion.width() > camera.nX
+                    || camera.renderRegion.row() + camera.renderRegion.height() > camera.nY))
+                throw new IllegalArgumentException("render region must be inside the image");
+
             if(camera.nX <= 0 || camera.nY <= 0)
                 throw new IllegalArgumentException("nX and nY must be positive");
             else
-                camera.imageWriter = new ImageWriter(camera.nX, camera.nY);
+                camera.imageWriter = camera.streamingImageName == null ? new ImageWriter(camera.nX, camera.nY, camera.highDynamicRange) : null;
 
             if (camera.rayTracer == null)
                 camera.rayTracer = new SimpleRayTracer(null);
 
+            camera.rayGenerator = new RayGenerator(camera.location, camera.to, camera.up, camera.right,
+                    camera.distance, camera.width, camera.height, camera.nX, camera.nY);
+
             try {
                 return (Camera) camera.clone();
             } catch (CloneNotSupportedException e) {
@@ -433,8 +794,8 @@ public class Camera implements Cloneable {
      * @return this Camera instance
      */
     public Camera renderImageNoThreads() {
-        for (int i=0; i<this.nX; i++) {
-            for (int j=0; j<this.nY; j++) {
+        for (int i=0; i<this.nY; i++) {
+            for (int j=0; j<this.nX; j++) {
                 castRay(j, i);
             }
         }
@@ -450,7 +811,13 @@ public class Camera implements Cloneable {
     /** ...
      */
     public Camera renderImage() {
-        pixelManager = new PixelManager(nY, nX, printInterval);
+        prepare();
+        pixelManager = new PixelManager(nY, nX, TILE_SIZE, printInterval);
+        if (streamingImageName != null) return renderImageStreaming();
+        if (checkpointName != null) return renderImageCheckpointed();
+        if (progressive) return renderImageProgressive();
+        if (timeBudget > 0) return renderImageBudgeted();
+        if (renderRegion != null || maskGeometry != null) return renderImageSelection();
         return switch (threadsCount) {
             case 0 -> renderImageNoThreads();
             case -1 -> renderImageStream();
@@ -458,22 +825,211 @@ public class Camera implements Cloneable {
         };
     }
 
+    /**
+     * The rendering mode of the camera other than plain tiled rendering of the
+     * whole image, for the renderers that trace the tiles themselves
+     * @return the name of the mode, or null for plain tiled rendering
+     */
+    String specialMode() {
+        if (streamingImageName != null) return "streamed";
+        if (progressive) return "progressive";
+        if (timeBudget > 0) return "time budgeted";
+        if (checkpointName != null) return "checkpointed";
+        if (renderRegion != null || maskGeometry != null) return "region or mask";
+        return null;
+    }
+
+    /**
+     * Prepares the scene of the ray tracer before the rendering threads start.
+     */
+    void prepare() {
+        rayTracer.prepare();
+    }
+
     /**
      * Render image using multi-threading by creating and running raw threads* @return the camera object itself
      */
     private Camera renderImageRawThreads() {
+        renderTiles(pixelManager, threadsCount, this::castTile);
+        return this;
+    }
+
+    /**
+     * Render image progressively, in passes of increasing sample count
+     * @return the camera object itself
+     */
+    private Camera renderImageProgressive() {
+        new ProgressiveRenderer(this, imageWriter, rayGrid.size(), tileThreads(), printInterval,
+                progressiveTime, progressiveThreshold, progressiveListener, progressiveSnapshot).render();
+        return this;
+    }
+
+    /**
+     * Render image (tiled or progressively) with periodic checkpoints, resuming from
+     * the checkpoint file if it exists
+     * @return the camera object itself
+     */
+    private Camera renderImageCheckpointed() {
+        int beamSize = rayGrid.size();
+        CheckpointWriter.State state = CheckpointWriter.read(checkpointName, nX, nY, TILE_SIZE, beamSize, progressive,
+                imageWriter);
+        try (CheckpointWriter writer = new CheckpointWriter(checkpointName, nX, nY, TILE_SIZE, beamSize, progressive,
+                checkpointInterval, state)) {
+            if (progressive)
+                new ProgressiveRenderer(this, imageWriter, beamSize, tileThreads(), printInterval, progressiveTime,
+                        progressiveThreshold, progressiveListener, progressiveSnapshot)
+                        .setCheckpoint(writer, state == null ? null : state.buffer()).render();
+            else {
+                // the colors of the saved tiles are already restored into the image
+                if (state != null) pixelManager.skipTiles(state.tiles());
+                checkpointWriter = writer;
+                renderTiles(pixelManager, tileThreads(), this::castTile);
+            }
+            writer.complete();
+        } finally {
+            checkpointWriter = null;
+        }
+        return this;
+    }
+
+    /**
+     * Render only the pixels of the render region and mask, over the background image
+     * @return the camera object itself
+     */
+    private Camera renderImageSelection() {
+        if (renderBackground != null) imageWriter.readFromImage(renderBackground);
+        PixelManager.Tile region = renderRegion != null ? renderRegion : new PixelManager.Tile(0, 0, nX, nY);
+        pixelManager.setRegion(region);
+        if (maskGeometry != null) {
+            renderMask = createMask(region);
+            // the tiles without selected pixels are not dispatched at all
+            BitSet empty = new BitSet();
+            for (int t = 0; t < pixelManager.tileCount(); t++) {
+                PixelManager.Tile tile = pixelManager.tile(t);
+                boolean selected = false;
+                for (int y = 0; y < tile.height() && !selected; y++) {
+                    int p = (tile.row() + y) * nX + tile.col();
+                    int next = renderMask.nextSetBit(p);
+                    selected = next >= 0 && next < p + tile.width();
+                }
+                if (!selected) empty.set(t);
+            }
+            pixelManager.skipTiles(empty);
+        }
+        try {
+            renderTiles(pixelManager, tileThreads(), this::castTile);
+        } finally {
+            renderMask = null;
+        }
+        return this;
+    }
+
+    /**
+     * Selects the pixels of a region that see the mask geometry, and the pixels
+     * around them (so the antialiased edges of the geometry are rendered too)
+     * @param region the render region
+     * @return the selected pixels (row by row over the whole image)
+     */
+    private BitSet createMask(PixelManager.Tile region) {
+        Intersectable geometries = rayTracer.scene.geometries;
+        BitSet hits = new BitSet(nX * nY);
+        double[] dirs = new double[3 * region.width()];
+        for (int i = region.row(); i < region.row() + region.height(); i++) {
+            rayGenerator.fillTile(region.col(), i, region.width(), 1, dirs);
+            for (int x = 0; x < region.width(); x++) {
+                Ray ray = rayGenerator.ray(dirs, x);
+                Intersectable.Intersection hit = ray.findClosestIntersection(geometries.calculateIntersections(ray));
+                if (hit == null) continue;
+                Intersectable.Intersection own = ray.findClosestIntersection(maskGeometry.calculateIntersections(ray));
+                if (own != null && own.geometry == hit.geometry) hits.set(i * nX + region.col() + x);
+            }
+        }
+
+        BitSet mask = new BitSet(nX * nY);
+        for (int p = hits.nextSetBit(0); p >= 0; p = hits.nextSetBit(p + 1)) {
+            int j = p % nX;
+            int i = p / nX;
+            for (int y = Math.max(i - 1, region.row()); y <= Math.min(i + 1, region.row() + region.height() - 1); y++)
+                mask.set(y * nX + Math.max(j - 1, region.col()),
+                        y * nX + Math.min(j + 1, region.col() + region.width() - 1) + 1);
+        }
+        return mask;
+    }
+
+    /**
+     * Render image within the time budget, spending the samples on the noisiest pixels
+     * @return the camera object itself
+     */
+    private Camera renderImageBudgeted() {
+        budgetedRenderer = new BudgetedRenderer(this, imageWriter, rayGrid.size(), tileThreads(), printInterval,
+                timeBudget, timeBudgetTolerance);
+        budgetedRenderer.render();
+        return this;
+    }
+
+    /**
+     * Provides the renderer of the last time budgeted render, reporting why it
+     * stopped and how many samples it traced.
+     * @return the renderer, or null if no time budgeted render was done
+     */
+    BudgetedRenderer getBudgetedRenderer() {
+        return budgetedRenderer;
+    }
+
+    /**
+     * Render image into a png file, band by band
+     * @return the camera object itself
+     */
+    private Camera renderImageStreaming() {
+        try (StreamingImageWriter writer = new StreamingImageWriter(streamingImageName, nX, nY, TILE_SIZE)) {
+            streamingWriter = writer;
+            renderTiles(pixelManager, tileThreads(), this::castTile);
+        } finally {
+            streamingWriter = null;
+        }
+        return this;
+    }
+
+    /**
+     * Amount of raw threads for tile rendering according to the multithreading setting
+     * @return amount of threads, 0 for rendering in the current thread
+     */
+    int tileThreads() {
+        return threadsCount == -1 ? Runtime.getRuntime().availableProcessors() : threadsCount;
+    }
+
+    /**
+     * Render all the tiles allocated by a pixel manager by raw threads
+     * @param manager the pixel manager allocating the tiles
+     * @param count amount of threads, 0 for rendering in the current thread
+     * @param job the rendering of a single tile
+     * @throws RuntimeException the first failure of a rendering thread (after all
+     *                          the threads end), with the failures of the other threads suppressed
+     */
+    void renderTiles(PixelManager manager, int count, Consumer<PixelManager.Tile> job) {
+        if (count == 0) {
+            PixelManager.Tile tile;
+            while ((tile = manager.nextTile()) != null)
+                job.accept(tile);
+            return;
+        }
         var threads = new LinkedList<Thread>();
-        while (threadsCount-- > 0)
+        var failure = new AtomicReference<RuntimeException>();
+        for (int t = 0; t < count; t++)
             threads.add(new Thread(() -> {
-                PixelManager.Pixel pixel;
-                while ((pixel = pixelManager.nextPixel()) != null)
-                    castRay(pixel.col(), pixel.row());
+                try {
+                    PixelManager.Tile tile;
+                    while ((tile = manager.nextTile()) != null)
+                        job.accept(tile);
+                } catch (RuntimeException e) {
+                    if (!failure.compareAndSet(null, e)) failure.get().addSuppressed(e);
+                }
             }));
         for (var thread : threads) thread.start();
         try {
             for (var thread : threads) thread.join();
         } catch (InterruptedException ignore) {}
-        return this;
+        if (failure.get() != null) throw failure.get();
     }
     /**
      * Render image using multi-threading by creating and running raw threads* @return the camera object itself
@@ -492,10 +1048,12 @@ public class Camera implements Cloneable {
      * @return this Camera instance
      */
     public Camera printGrid(int interval , Color color){
+        int rgb = color.getRGB();
+        ImageWriter imageWriter = getImageWriter();
         for (int i = 0; i < imageWriter.nY(); i++) {
             for (int j = 0; j < imageWriter.nX(); j++) {
                 if (i % interval == 0 || j % interval == 0) {
-                    imageWriter.writePixel(j, i, color);
+                    imageWriter.writePixel(j, i, rgb);
                 }
             }
         }
@@ -507,7 +1065,40 @@ public class Camera implements Cloneable {
      * @param fileName the name of the output file
      */
     public void writeToImage(String fileName) {
-        imageWriter.writeToImage(fileName);
+        getImageWriter().writeToImage(fileName);
+    }
+
+    /**
+     * Writes the rendered image to a png file, converting the full range colors
+     * with a tone mapping operator.
+     * @param fileName the name of the output file
+     * @param toneMapping the tone mapping operator
+     * @throws IllegalStateException if the full range colors are not kept for an
+     *                               operator other than CLAMP (see
+     *                               {@link Builder#setHighDynamicRange(boolean)})
+     */
+    public void writeToImage(String fileName, ToneMapping toneMapping) {
+        getImageWriter().writeToImage(fileName, toneMapping);
+    }
+
+    /**
+     * Writes the full range rendered image to a Portable Float Map (pfm) file.
+     * @param fileName the name of the output file
+     * @throws IllegalStateException if the full range colors are not kept (see
+     *                               {@link Builder#setHighDynamicRange(boolean)})
+     */
+    public void writeToPfm(String fileName) {
+        getImageWriter().writeToPfm(fileName);
+    }
+
+    /**
+     * Writes the full range rendered image to an uncompressed OpenEXR file.
+     * @param fileName the name of the output file
+     * @throws IllegalStateException if the full range colors are not kept (see
+     *                               {@link Builder#setHighDynamicRange(boolean)})
+     */
+    public void writeToExr(String fileName) {
+        getImageWriter().writeToExr(fileName);
     }
 
     /**
@@ -516,19 +1107,145 @@ public class Camera implements Cloneable {
      * @param i row index
      */
     public void castRay(int j, int i) {
-        List<Ray> rays = rayGrid.createPixelBeam(this, nX, nY, j, i);
+        getImageWriter().writePixel(j, i, tracePixel(j, i));
+    }
+
+    /**
+     * Provides the image writer holding the rendered image.
+     * @return the image writer
+     * @throws IllegalStateException if the image is streamed into a file
+     */
+    ImageWriter getImageWriter() {
+        if (imageWriter == null)
+            throw new IllegalStateException("The image is streamed into a file and is not kept in memory");
+        return imageWriter;
+    }
+
+    /**
+     * Casts the beams of all the pixels of a tile and writes the tile colors at once.
+     * @param tile the tile to render
+     */
+    private void castTile(PixelManager.Tile tile) {
+        Color[] colors = traceTile(tile);
+        if (streamingWriter != null)
+            streamingWriter.writeTile(tile.col(), tile.row(), tile.width(), tile.height(), colors);
+        else
+            imageWriter.writeTile(tile.col(), tile.row(), tile.width(), tile.height(), colors);
+        if (checkpointWriter != null) checkpointWriter.tileDone(tile, colors);
+        pixelManager.tileDone(tile);
+    }
+
+    /**
+     * Traces the beams of all the pixels of a tile (the pixels outside the render mask
+     * keep the color of the image).
+     * @param tile the tile to render
+     * @return the colors of the tile pixels, row by row
+     */
+    Color[] traceTile(PixelManager.Tile tile) {
+        Color[] colors = new Color[tile.width() * tile.height()];
+        for (int y = 0, p = 0; y < tile.height(); y++)
+            for (int x = 0; x < tile.width(); x++, p++) {
+                int j = tile.col() + x;
+                int i = tile.row() + y;
+                colors[p] = renderMask == null || renderMask.get(i * nX + j) ? tracePixel(j, i)
+                        : imageWriter.readPixel(j, i);
+            }
+        return colors;
+    }
+
+    /**
+     * Traces the beam of rays through a specific pixel.
+     * @param j column index
+     * @param i row index
+     * @return the average color of the beam
+     */
+    private Color tracePixel(int j, int i) {
+        PixelRandom.reseed(j, i, 0);
+        int count = rayGrid.size();
+        double[] dirs = new double[3 * count];
+        rayGrid.fillPixelBeam(rayGenerator, j, i, dirs);
+
+        if (beamCoherence) return traceCoherentBeam(dirs, count);
 
         Color totalColor = Color.BLACK;
 
         // Trace each ray and accumulate colors
-        for (Ray ray : rays) {
-            Color rayColor = rayTracer.traceRay(ray);
+        for (int k = 0; k < count; k++) {
+            Color rayColor = rayTracer.traceRay(rayGenerator.ray(dirs, k));
             totalColor = totalColor.add(rayColor);
         }
 
         // Average the colors
-        Color finalColor = totalColor.reduce(rays.size());
-        imageWriter.writePixel(j, i, finalColor);
+        return totalColor.reduce(count);
+    }
+
+    /**
+     * Traces the beam of rays through a pixel coherently: the closest intersections
+     * of the coarse rays are found first, and if they all lie on the same geometry
+     * with similar normals, the other rays are intersected with that geometry alone
+     * (and with the whole scene only if they miss it).
+     * @param dirs  the directions of the rays of the beam
+     * @param count the amount of rays
+     * @return the average color of the beam
+     */
+    private Color traceCoherentBeam(double[] dirs, int count) {
+        int[] coarse = rayGrid.coarsePoints();
+        Ray[] coarseRays = new Ray[coarse.length];
+        Intersection[] coarseHits = new Intersection[coarse.length];
+        Geometry geometry = null;
+        Vector normal = null;
+        boolean coherent = true;
+        for (int c = 0; c < coarse.length; c++) {
+            coarseRays[c] = rayGenerator.ray(dirs, coarse[c]);
+            coarseHits[c] = rayTracer.findClosestIntersection(coarseRays[c]);
+            if (!coherent) continue;
+            if (coarseHits[c] == null) {
+                coherent = false;
+            } else if (geometry == null) {
+                geometry = coarseHits[c].geometry;
+                normal = geometry.getNormal(coarseHits[c].point);
+            } else {
+                coherent = coarseHits[c].geometry == geometry
+                        && normal.dotProduct(geometry.getNormal(coarseHits[c].point)) >= BEAM_NORMAL_COS;
+            }
+        }
+
+        // Trace the rays in the beam order, so the pixel is sampled as without coherence
+        Color totalColor = Color.BLACK;
+        for (int k = 0, c = 0; k < count; k++) {
+            if (c < coarse.length && coarse[c] == k) {
+                totalColor = totalColor.add(rayTracer.traceRay(coarseRays[c], coarseHits[c]));
+                c++;
+                continue;
+            }
+            Ray ray = rayGenerator.ray(dirs, k);
+            Intersection hit = null;
+            if (coherent) {
+                List<Intersection> hits = geometry.calculateIntersections(ray);
+                if (hits != null) hit = ray.findClosestIntersection(hits);
+            }
+            if (hit == null) hit = rayTracer.findClosestIntersection(ray);
+            totalColor = totalColor.add(rayTracer.traceRay(ray, hit));
+        }
+        return totalColor.reduce(count);
+    }
+
+    /**
+     * Traces a part of the beam of rays through a specific pixel (in the order used
+     * for tracing the beam in several steps) and adds the samples into an accumulation buffer.
+     * @param j column index
+     * @param i row index
+     * @param first index of the first ray of the step
+     * @param count amount of rays in the step
+     * @param step step number (used for reseeding the sampling of the pixel)
+     * @param buffer the accumulation buffer
+     */
+    void traceSamples(int j, int i, int first, int count, int step, AccumulationBuffer buffer) {
+        PixelRandom.reseed(j, i, step);
+        double[] dirs = new double[3 * count];
+        rayGrid.fillPixelSamples(rayGenerator, j, i, first, count, dirs);
+        for (int k = 0; k < count; k++)
+            buffer.addSample(j, i, rayTracer.traceRay(rayGenerator.ray(dirs, k)));
     }
 
     // Modified Camera class methods (add these to your Camera class)
@@ -0,0 +1,391 @@
+package renderer;
+
+import primitives.Color;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CheckpointWriter is a helper class saving the state of a long render
+ * periodically into a checkpoint file, so that a killed render can be resumed
+ * without repeating the finished work.<br/>
+ * The checkpoint file holds a header of the render settings, a mark byte for
+ * each tile and a fixed size slot for each tile at a computed offset: the final
+ * colors (float RGB) of its pixels in tiled rendering, or their accumulated
+ * samples in progressive rendering. The rendering threads only encode each
+ * finished tile and hand it over into a lock free queue; a background thread
+ * periodically writes the handed over tiles into their slots through a file
+ * channel and then marks them, so the file is written incrementally and a render
+ * killed during a write loses at most the tiles of that write. A tile of
+ * progressive rendering, which is written again after each pass, is unmarked
+ * while its slot is rewritten.
+ */
+final class CheckpointWriter implements AutoCloseable {
+    /** File format identification: the bytes "RCKP" */
+    private static final int  MAGIC       = 0x52434B50;
+    /** File format version */
+    private static final int  VERSION     = 2;
+    /** Bytes of the final color of a pixel of tiled rendering */
+    private static final int  COLOR_BYTES = 3 * Float.BYTES;
+    /** Mark of a tile whose slot holds its saved pixels */
+    private static final byte SAVED       = 1;
+    /** Mark of a tile whose slot holds nothing valid */
+    private static final byte EMPTY       = 0;
+
+    /**
+     * Immutable class for the state of a render restored from a checkpoint file
+     * @param buffer the accumulated samples of the pixels of progressive rendering,
+     *               null for tiled rendering (whose colors are restored into the image)
+     * @param tiles  the numbers of the tiles (row by row) whose pixels are saved
+     */
+    record State(AccumulationBuffer buffer, BitSet tiles) {
+    }
+
+    /**
+     * Immutable class for a tile handed over by a rendering thread
+     * @param index the tile number
+     * @param data  the encoded pixels of the tile, ready for writing
+     */
+    private record TileData(int index, ByteBuffer data) {
+    }
+
+    /** The checkpoint file */
+    private final Path                     path;
+    /** The file channel of the checkpoint file, accessed only by the background thread */
+    private final FileChannel              channel;
+    /** Layout of the checkpoint file */
+    private final Layout                   layout;
+    /** Tiles handed over by the rendering threads and not written yet */
+    private final Queue<TileData>          pending   = new ConcurrentLinkedQueue<>();
+    /** The background thread writing the checkpoints */
+    private final ScheduledExecutorService scheduler;
+
+    /** Whether the render is complete and the checkpoint file is removed */
+    private boolean                        completed = false;
+    /** First failure of writing the checkpoint file, or null */
+    private volatile IOException           failure   = null;
+
+    /**
+     * Layout of a checkpoint file: the header, the tile marks and the tile slots
+     */
+    private static final class Layout {
+        /** Header of the checkpoint file */
+        final int[]   header;
+        /** Amount of pixels by width */
+        final int     nX;
+        /** Amount of pixels by height */
+        final int     nY;
+        /** Width and height of a (full) tile in pixels */
+        final int     tileSize;
+        /** Amount of tile columns */
+        final int     tileCols;
+        /** Amount of tiles */
+        final int     tileCount;
+        /** Whether the slots hold accumulated samples (progressive) or final colors (tiled) */
+        final boolean progressive;
+        /** Bytes of a pixel in a slot */
+        final int     pixelBytes;
+
+        /**
+         * Computes the layout of a checkpoint file
+         * @param nX          amount of pixels by width
+         * @param nY          amount of pixels by height
+         * @param tileSize    width and height of a (full) tile in pixels
+         * @param beamSize    amount of rays in the beam of a pixel
+         * @param progressive whether the render is progressive
+         */
+        Layout(int nX, int nY, int tileSize, int beamSize, boolean progressive) {
+            this.header      = new int[] { MAGIC, VERSION, nX, nY, tileSize, beamSize, progressive ? 1 : 0 };
+            this.nX          = nX;
+            this.nY          = nY;
+            this.tileSize    = tileSize;
+            this.tileCols    = (nX + tileSize - 1) / tileSize;
+            this.tileCount   = tileCols * ((nY + tileSize - 1) / tileSize);
+            this.progressive = progressive;
+            this.pixelBytes  = progressive ? new AccumulationBuffer(1, 1).rowBytes() : COLOR_BYTES;
+        }
+
+        /**
+         * Offset of the mark of a tile in the file
+         * @param index the tile number
+         * @return the offset
+         */
+        long markOffset(int index) {
+            return (long) Integer.BYTES * header.length + index;
+        }
+
+        /**
+         * Offset of the slot of a tile in the file
+         * @param index the tile number
+         * @return the offset
+         */
+        long slotOffset(int index) {
+            return markOffset(tileCount) + (long) index * tileSize * tileSize * pixelBytes;
+        }
+
+        /**
+         * The tile of a given number (tiles are numbered row by row)
+         * @param index the tile number
+         * @return the tile
+         */
+        PixelManager.Tile tile(int index) {
+            int col = index % tileCols * tileSize;
+            int row = index / tileCols * tileSize;
+            return new PixelManager.Tile(col, row, Math.min(tileSize, nX - col), Math.min(tileSize, nY - row));
+        }
+
+        /**
+         * The number of a tile
+         * @param tile the tile
+         * @return the tile number
+         */
+        int index(PixelManager.Tile tile) {
+            return tile.row() / tileSize * tileCols + tile.col() / tileSize;
+        }
+    }
+
+    /**
+     * Starts writing a checkpoint file periodically in a background thread
+     * @param fileName    the name of the checkpoint file in the images folder (without extension)
+     * @param nX          amount of pixels by width
+     * @param nY          amount of pixels by height
+     * @param tileSize    width and height of a (full) tile in pixels
+     * @param beamSize    amount of rays in the beam of a pixel
+     * @param progressive whether the render is progressive
+     * @param interval    interval between the writes in seconds
+     * @param restored    the state restored from the checkpoint file, or null for a new file
+     * @throws IllegalStateException on an I/O error creating the file
+     */
+    CheckpointWriter(String fileName, int nX, int nY, int tileSize, int beamSize, boolean progressive,
+                     double interval, State restored) {
+        path   = checkpointPath(fileName);
+        layout = new Layout(nX, nY, tileSize, beamSize, progressive);
+        try {
+            if (restored == null) {
+                channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+                ByteBuffer head = ByteBuffer.allocate((int) layout.markOffset(layout.tileCount));
+                for (int value : layout.header) head.putInt(value);
+                writeFully(channel, head.position(head.capacity()).flip(), 0);
+            } else {
+                // the saved tiles stay in place, the render continues the file
+                channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("I/O error creating checkpoint " + path, e);
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "checkpoint " + fileName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = Math.max(1, (long) (interval * 1000));
+        scheduler.scheduleWithFixedDelay(this::write, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reads the state of a render from a checkpoint file. The colors of the saved
+     * tiles of tiled rendering are written into the image, and the accumulated
+     * samples of progressive rendering are returned in the state.
+     * @param fileName    the name of the checkpoint file in the images folder (without extension)
+     * @param nX          amount of pixels by width
+     * @param nY          amount of pixels by height
+     * @param tileSize    width and height of a (full) tile in pixels
+     * @param beamSize    amount of rays in the beam of a pixel
+     * @param progressive whether the render is progressive
+     * @param image       the image the saved colors of tiled rendering are restored into
+     * @return the restored state, or null if there is no checkpoint file
+     * @throws IllegalStateException if the checkpoint was written by a render with
+     *                               other settings, or on an I/O error
+     */
+    static State read(String fileName, int nX, int nY, int tileSize, int beamSize, boolean progressive,
+                      ImageWriter image) {
+        Layout layout = new Layout(nX, nY, tileSize, beamSize, progressive);
+        try (FileChannel channel = FileChannel.open(checkpointPath(fileName), StandardOpenOption.READ)) {
+            ByteBuffer head = readFully(channel, (int) layout.markOffset(layout.tileCount), 0);
+            for (int value : layout.header)
+                if (head.getInt() != value)
+                    throw new IllegalStateException("Checkpoint " + fileName + " does not match the camera settings");
+
+            BitSet tiles = new BitSet(layout.tileCount);
+            AccumulationBuffer buffer = progressive ? new AccumulationBuffer(nX, nY) : null;
+            for (int t = 0; t < layout.tileCount; t++) {
+                if (head.get() != SAVED) continue;
+                tiles.set(t);
+                PixelManager.Tile tile = layout.tile(t);
+                ByteBuffer slot = readFully(channel, tile.width() * tile.height() * layout.pixelBytes,
+                        layout.slotOffset(t));
+                if (progressive) {
+                    AccumulationBuffer samples = new AccumulationBuffer(tile.width(), tile.height());
+                    for (int y = 0; y < tile.height(); y++) samples.getRow(y, slot);
+                    buffer.paste(tile, samples);
+                } else {
+                    for (int y = 0; y < tile.height(); y++)
+                        for (int x = 0; x < tile.width(); x++)
+                            image.writePixel(tile.col() + x, tile.row() + y,
+                                    new Color(slot.getFloat(), slot.getFloat(), slot.getFloat()));
+                }
+            }
+            return new State(buffer, tiles);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new IllegalStateException("I/O error reading checkpoint " + fileName, e);
+        }
+    }
+
+    /**
+     * Hands over a finished tile of tiled rendering
+     * @param tile   the tile
+     * @param colors the colors of the pixels of the tile, row by row
+     */
+    void tileDone(PixelManager.Tile tile, Color[] colors) {
+        ByteBuffer data = ByteBuffer.allocate(colors.length * COLOR_BYTES);
+        for (Color color : colors)
+            data.putFloat((float) color.getRed()).putFloat((float) color.getGreen()).putFloat((float) color.getBlue());
+        pending.add(new TileData(layout.index(tile), data.flip()));
+    }
+
+    /**
+     * Hands over the current samples of a tile of progressive rendering
+     * @param tile   the tile
+     * @param buffer the accumulation buffer of the render
+     */
+    void tileDone(PixelManager.Tile tile, AccumulationBuffer buffer) {
+        AccumulationBuffer samples = buffer.copy(tile);
+        ByteBuffer data = ByteBuffer.allocate(tile.height() * samples.rowBytes());
+        for (int y = 0; y < tile.height(); y++) samples.putRow(y, data);
+        pending.add(new TileData(layout.index(tile), data.flip()));
+    }
+
+    /**
+     * Marks the render as complete: stops writing and removes the checkpoint file
+     * @throws IllegalStateException on an I/O error
+     */
+    void complete() {
+        stop();
+        completed = true;
+        try {
+            channel.close();
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new IllegalStateException("I/O error removing checkpoint " + path, e);
+        }
+    }
+
+    /**
+     * Stops writing - if the render is not complete, the remaining tiles are written a last time
+     * @throws IllegalStateException if a checkpoint could not be written
+     */
+    @Override
+    public void close() {
+        if (completed) return;
+        stop();
+        write();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            if (failure == null) failure = e;
+        }
+        if (failure != null) throw new IllegalStateException("I/O error writing checkpoint " + path, failure);
+    }
+
+    /** Stops the background thread, waiting for a write in progress */
+    private void stop() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ignore) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes the handed over tiles into their slots and marks them. In progressive
+     * rendering the marks of the rewritten tiles are cleared first, so a torn slot
+     * is never marked.
+     */
+    private void write() {
+        Map<Integer, ByteBuffer> tiles = new LinkedHashMap<>();
+        TileData tile;
+        // a tile handed over several times is written once, with its latest samples
+        while ((tile = pending.poll()) != null) tiles.put(tile.index(), tile.data());
+        if (tiles.isEmpty()) return;
+
+        try {
+            if (layout.progressive) {
+                mark(tiles.keySet(), EMPTY);
+                channel.force(false);
+            }
+            for (var entry : tiles.entrySet())
+                writeFully(channel, entry.getValue(), layout.slotOffset(entry.getKey()));
+            channel.force(false);
+            mark(tiles.keySet(), SAVED);
+            channel.force(false);
+        } catch (IOException e) {
+            if (failure == null) failure = e;
+        }
+    }
+
+    /**
+     * Writes the marks of tiles
+     * @param tiles the tile numbers
+     * @param mark  the mark
+     * @throws IOException on an I/O error
+     */
+    private void mark(Iterable<Integer> tiles, byte mark) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        for (int index : tiles) writeFully(channel, buffer.clear().put(mark).flip(), layout.markOffset(index));
+    }
+
+    /**
+     * The checkpoint file path
+     * @param fileName the name of the checkpoint file in the images folder (without extension)
+     * @return the path
+     */
+    private static Path checkpointPath(String fileName) {
+        return Path.of(ImageWriter.FOLDER_PATH, fileName + ".ckpt");
+    }
+
+    /**
+     * Reads a given amount of bytes from a file channel at a given position
+     * @param channel  the file channel
+     * @param size     the amount of bytes
+     * @param position the file position
+     * @return the bytes, ready for getting
+     * @throws IOException if the file ends before
+     */
+    private static ByteBuffer readFully(FileChannel channel, int size, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new IOException("Truncated checkpoint file");
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Writes all the remaining bytes of a byte buffer into a file channel at a given position
+     * @param channel  the file channel
+     * @param buffer   the byte buffer
+     * @param position the file position
+     * @throws IOException on an I/O error
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        for (long offset = position; buffer.hasRemaining(); ) offset += channel.write(buffer, offset);
+    }
+}
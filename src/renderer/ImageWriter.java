@@ -1,7 +1,14 @@
 package renderer;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 import javax.imageio.ImageIO;
 
@@ -24,22 +31,58 @@ final class ImageWriter {
      * Directory path for the image file generation - relative to the user
      * directory
      */
-    private static final String FOLDER_PATH = System.getProperty("user.dir") + "/images";
+    static final String         FOLDER_PATH = System.getProperty("user.dir") + "/images";
 
     /** Image generation buffer (the matrix of the pixels) */
     private final BufferedImage image;
+    /**
+     * The pixel array backing the image buffer, row by row, one packed RGB value
+     * per pixel. Pixel writes are plain array stores, so different threads may
+     * write disjoint pixels or tiles concurrently
+     */
+    private final int[]         pixels;
+    /**
+     * Full range (HDR) pixel color matrix, row by row, three components (red,
+     * green, blue) per pixel. It keeps the colors as computed by the ray tracer,
+     * before they are clamped to 8 bits, so the image can be tone mapped or saved
+     * in a floating point format without rendering it again. Null unless the
+     * writer was created for HDR output - it takes three times the memory of the
+     * 8-bit pixel array
+     */
+    private final float[]       hdr;
+
+    /** Scale of the floating point file formats - 1.0 stands for color component 255 */
+    private static final float  HDR_SCALE   = 1f / 255;
+    /** OpenEXR magic number */
+    private static final int    EXR_MAGIC   = 20000630;
+    /** OpenEXR FLOAT pixel type */
+    private static final int    EXR_FLOAT   = 2;
 
     // ***************** Constructors ********************** //
     /**
      * Image Writer constructor accepting image name and View Plane parameters,
+     * keeping 8-bit colors only
      * @param nX amount of pixels by Width
      * @param nY amount of pixels by height
      */
     ImageWriter(int nX, int nY) {
+        this(nX, nY, false);
+    }
+
+    /**
+     * Image Writer constructor accepting image name and View Plane parameters,
+     * @param nX  amount of pixels by Width
+     * @param nY  amount of pixels by height
+     * @param hdr whether the full range colors are kept for tone mapping and
+     *            the floating point formats
+     */
+    ImageWriter(int nX, int nY, boolean hdr) {
         this.nX = nX;
         this.nY = nY;
 
-        image   = new BufferedImage(nX, nY, BufferedImage.TYPE_INT_RGB);
+        image    = new BufferedImage(nX, nY, BufferedImage.TYPE_INT_RGB);
+        pixels   = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        this.hdr = hdr ? new float[3 * nX * nY] : null;
     }
 
     // ***************** Getters ********************** //
@@ -63,14 +106,195 @@ final class ImageWriter {
      * @param imageName the name of png file
      */
     void writeToImage(String imageName) {
+        writeToImage(imageName, image);
+    }
+
+    /**
+     * Function writeToImage produces unoptimized png file of the image according
+     * to the full range pixel color matrix, converted to 8-bit colors by a tone
+     * mapping operator
+     * @param imageName   the name of png file
+     * @param toneMapping the tone mapping operator
+     * @throws IllegalStateException if the full range colors are not kept for an
+     *                               operator other than CLAMP
+     */
+    void writeToImage(String imageName, ToneMapping toneMapping) {
+        if (toneMapping == ToneMapping.CLAMP) {
+            writeToImage(imageName, image);
+            return;
+        }
+        checkHdr();
+        BufferedImage mapped = new BufferedImage(nX, nY, BufferedImage.TYPE_INT_RGB);
+        int[] mappedPixels = ((DataBufferInt) mapped.getRaster().getDataBuffer()).getData();
+        for (int p = 0, c = 0; p < mappedPixels.length; ++p, c += 3)
+            mappedPixels[p] = toneMapping.toRGB(hdr[c], hdr[c + 1], hdr[c + 2]);
+        writeToImage(imageName, mapped);
+    }
+
+    /**
+     * Reads a png file of the image size from the directory of the project into
+     * the image, as a background for rendering a part of the image over it
+     * @param imageName the name of png file
+     * @throws IllegalArgumentException if the size of the png image differs
+     * @throws IllegalStateException    on an I/O error
+     */
+    void readFromImage(String imageName) {
+        BufferedImage source;
+        try {
+            source = ImageIO.read(new File(FOLDER_PATH + '/' + imageName + ".png"));
+        } catch (IOException e) {
+            throw new IllegalStateException("I/O error - may be missing file " + imageName + ".png", e);
+        }
+        if (source == null) throw new IllegalStateException("Unsupported image file " + imageName + ".png");
+        if (source.getWidth() != nX || source.getHeight() != nY)
+            throw new IllegalArgumentException("Image " + imageName + " is not " + nX + "x" + nY);
+        for (int y = 0; y < nY; y++)
+            for (int x = 0; x < nX; x++)
+                writePixel(x, y, source.getRGB(x, y) & 0xFFFFFF);
+    }
+
+    /**
+     * Writes an image buffer into a png file in the directory of the project
+     * @param imageName the name of png file
+     * @param buffer    the image buffer
+     */
+    private void writeToImage(String imageName, BufferedImage buffer) {
         try {
             File file = new File(FOLDER_PATH + '/' + imageName + ".png");
-            ImageIO.write(image, "png", file);
+            ImageIO.write(buffer, "png", file);
+        } catch (IOException e) {
+            throw new IllegalStateException("I/O error - may be missing directory " + FOLDER_PATH, e);
+        }
+    }
+
+    /**
+     * Function writeToPfm produces an uncompressed Portable Float Map (pfm) file
+     * of the full range pixel color matrix in the directory of the project.
+     * Color component 255 is stored as 1.0
+     * @param imageName the name of pfm file
+     * @throws IllegalStateException if the full range colors are not kept
+     */
+    void writeToPfm(String imageName) {
+        checkHdr();
+        try (FileChannel channel = openChannel(imageName + ".pfm")) {
+            channel.write(ByteBuffer.wrap(("PF\n" + nX + " " + nY + "\n-1.0\n").getBytes(StandardCharsets.US_ASCII)));
+            ByteBuffer row = ByteBuffer.allocate(12 * nX).order(ByteOrder.LITTLE_ENDIAN);
+            // PFM rows are stored from the bottom of the image to the top
+            for (int y = nY - 1; y >= 0; --y) {
+                row.clear();
+                for (int c = 3 * y * nX, end = c + 3 * nX; c < end; ++c)
+                    row.putFloat(hdr[c] * HDR_SCALE);
+                row.flip();
+                while (row.hasRemaining()) channel.write(row);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("I/O error - may be missing directory " + FOLDER_PATH, e);
+        }
+    }
+
+    /**
+     * Function writeToExr produces an uncompressed single part scanline OpenEXR
+     * file of the full range pixel color matrix (32-bit float R, G, B channels)
+     * in the directory of the project. Color component 255 is stored as 1.0
+     * @param imageName the name of exr file
+     * @throws IllegalStateException if the full range colors are not kept
+     */
+    void writeToExr(String imageName) {
+        checkHdr();
+        ByteBuffer header = ByteBuffer.allocate(512).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(EXR_MAGIC).putInt(2);
+        // channels must be sorted by name
+        exrAttribute(header, "channels", "chlist", 3 * 18 + 1);
+        for (String channel : new String[] { "B", "G", "R" }) {
+            putString(header, channel);
+            header.putInt(EXR_FLOAT).put((byte) 0).put((byte) 0).put((byte) 0).put((byte) 0).putInt(1).putInt(1);
+        }
+        header.put((byte) 0);
+        exrAttribute(header, "compression", "compression", 1);
+        header.put((byte) 0);
+        exrAttribute(header, "dataWindow", "box2i", 16);
+        header.putInt(0).putInt(0).putInt(nX - 1).putInt(nY - 1);
+        exrAttribute(header, "displayWindow", "box2i", 16);
+        header.putInt(0).putInt(0).putInt(nX - 1).putInt(nY - 1);
+        exrAttribute(header, "lineOrder", "lineOrder", 1);
+        header.put((byte) 0);
+        exrAttribute(header, "pixelAspectRatio", "float", 4);
+        header.putFloat(1f);
+        exrAttribute(header, "screenWindowCenter", "v2f", 8);
+        header.putFloat(0f).putFloat(0f);
+        exrAttribute(header, "screenWindowWidth", "float", 4);
+        header.putFloat(1f);
+        header.put((byte) 0);
+        header.flip();
+
+        int  rowSize = 12 * nX;
+        long offset  = header.remaining() + 8L * nY;
+        ByteBuffer offsets = ByteBuffer.allocate(8 * nY).order(ByteOrder.LITTLE_ENDIAN);
+        for (int y = 0; y < nY; ++y, offset += 8 + rowSize)
+            offsets.putLong(offset);
+        offsets.flip();
+
+        try (FileChannel channel = openChannel(imageName + ".exr")) {
+            while (header.hasRemaining()) channel.write(header);
+            while (offsets.hasRemaining()) channel.write(offsets);
+            ByteBuffer row = ByteBuffer.allocate(8 + rowSize).order(ByteOrder.LITTLE_ENDIAN);
+            for (int y = 0; y < nY; ++y) {
+                row.clear();
+                row.putInt(y).putInt(rowSize);
+                // channels in the same (alphabetical) order as in the header
+                for (int component = 2; component >= 0; --component)
+                    for (int c = 3 * y * nX + component, end = 3 * (y + 1) * nX; c < end; c += 3)
+                        row.putFloat(hdr[c] * HDR_SCALE);
+                row.flip();
+                while (row.hasRemaining()) channel.write(row);
+            }
         } catch (IOException e) {
             throw new IllegalStateException("I/O error - may be missing directory " + FOLDER_PATH, e);
         }
     }
 
+    /**
+     * Checks that the full range colors are kept for an HDR export
+     * @throws IllegalStateException if they are not
+     */
+    private void checkHdr() {
+        if (hdr == null)
+            throw new IllegalStateException("The full range colors are not kept - the image writer has no HDR buffer");
+    }
+
+    /**
+     * Writes the name, the type and the size of an OpenEXR header attribute
+     * @param header the header buffer
+     * @param name   attribute name
+     * @param type   attribute type name
+     * @param size   attribute value size in bytes
+     */
+    private static void exrAttribute(ByteBuffer header, String name, String type, int size) {
+        putString(header, name);
+        putString(header, type);
+        header.putInt(size);
+    }
+
+    /**
+     * Writes a null terminated string into a buffer
+     * @param buffer the buffer
+     * @param string the string
+     */
+    private static void putString(ByteBuffer buffer, String string) {
+        buffer.put(string.getBytes(StandardCharsets.US_ASCII)).put((byte) 0);
+    }
+
+    /**
+     * Opens (creates or truncates) a file in the images directory for writing
+     * @param fileName the file name
+     * @return the file channel
+     * @throws IOException if the file cannot be opened
+     */
+    private static FileChannel openChannel(String fileName) throws IOException {
+        return FileChannel.open(Path.of(FOLDER_PATH, fileName), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+    }
+
     /**
      * The function writePixel writes a color of a specific pixel into pixel color
      * matrix
@@ -78,6 +302,71 @@ final class ImageWriter {
      * @param yIndex Y axis index of the pixel
      * @param color  final color of the pixel
      */
-    void writePixel(int xIndex, int yIndex, Color color) { image.setRGB(xIndex, yIndex, color.getColor().getRGB()); }
+    void writePixel(int xIndex, int yIndex, Color color) {
+        int p = yIndex * nX + xIndex;
+        pixels[p] = color.getRGB();
+        storeHdr(3 * p, color);
+    }
+
+    /**
+     * The function writePixel writes a packed RGB value of a specific pixel into
+     * pixel color matrix
+     * @param xIndex X axis index of the pixel
+     * @param yIndex Y axis index of the pixel
+     * @param rgb    packed RGB value of the pixel (see {@link Color#getRGB()})
+     */
+    void writePixel(int xIndex, int yIndex, int rgb) {
+        int p = yIndex * nX + xIndex;
+        pixels[p] = rgb;
+        if (hdr == null) return;
+        hdr[3 * p]     = rgb >> 16 & 0xFF;
+        hdr[3 * p + 1] = rgb >> 8 & 0xFF;
+        hdr[3 * p + 2] = rgb & 0xFF;
+    }
+
+    /**
+     * The function writeTile writes the colors of a rectangular tile of pixels
+     * into pixel color matrix
+     * @param xIndex X axis index of the upper left pixel of the tile
+     * @param yIndex Y axis index of the upper left pixel of the tile
+     * @param width  amount of pixel columns in the tile
+     * @param height amount of pixel rows in the tile
+     * @param colors final colors of the tile pixels, row by row
+     */
+    void writeTile(int xIndex, int yIndex, int width, int height, Color[] colors) {
+        for (int row = 0, t = 0; row < height; ++row)
+            for (int p = (yIndex + row) * nX + xIndex, end = p + width; p < end; ++p, ++t) {
+                pixels[p] = colors[t].getRGB();
+                storeHdr(3 * p, colors[t]);
+            }
+    }
+
+    /**
+     * The function readPixel reads the color of a specific pixel from pixel
+     * color matrix - the full range color if it is kept, the 8-bit color otherwise
+     * @param xIndex X axis index of the pixel
+     * @param yIndex Y axis index of the pixel
+     * @return the color of the pixel
+     */
+    Color readPixel(int xIndex, int yIndex) {
+        int p = yIndex * nX + xIndex;
+        if (hdr == null) {
+            int rgb = pixels[p];
+            return new Color(rgb >> 16 & 0xFF, rgb >> 8 & 0xFF, rgb & 0xFF);
+        }
+        return new Color(hdr[3 * p], hdr[3 * p + 1], hdr[3 * p + 2]);
+    }
+
+    /**
+     * Stores a color into the full range pixel color matrix
+     * @param index index of the red component of the pixel
+     * @param color the color
+     */
+    private void storeHdr(int index, Color color) {
+        if (hdr == null) return;
+        hdr[index]     = (float) color.getRed();
+        hdr[index + 1] = (float) color.getGreen();
+        hdr[index + 2] = (float) color.getBlue();
+    }
 
 }
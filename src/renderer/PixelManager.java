@@ -1,5 +1,7 @@
 package renderer;
 
+import java.util.BitSet;
+
 /**
  * PixelManager is a helper class. It is used for multi-threading in the
  * renderer and
@@ -18,17 +20,41 @@ class PixelManager {
     record Pixel(int col, int row) {
     }
 
+    /**
+     * Immutable class for object containing allocated rectangular tile of pixels
+     * @param col    column number of the upper left pixel of the tile
+     * @param row    row number of the upper left pixel of the tile
+     * @param width  amount of pixel columns in the tile
+     * @param height amount of pixel rows in the tile
+     */
+    record Tile(int col, int row, int width, int height) {
+    }
+
     /** Maximum rows of pixels */
     private int                 maxRows       = 0;
     /** Maximum columns of pixels */
     private int                 maxCols       = 0;
     /** Total amount of pixels in the generated image */
     private long                totalPixels   = 0l;
+    /** Width and height of a (full) tile in pixels */
+    private int                 tileSize      = 1;
+    /** Amount of tile columns */
+    private int                 tileCols      = 0;
+    /** Total amount of tiles */
+    private int                 totalTiles    = 0;
+    /** Column of the upper left pixel of the rendered region */
+    private int                 regionCol     = 0;
+    /** Row of the upper left pixel of the rendered region */
+    private int                 regionRow     = 0;
 
     /** Currently processed row of pixels */
     private volatile int        cRow          = 0;
     /** Currently processed column of pixels */
     private volatile int        cCol          = -1;
+    /** Next tile to be allocated */
+    private volatile int        cTile         = 0;
+    /** Tiles not to be allocated by {@link #nextTile()}, or null */
+    private BitSet              skipped       = null;
     /** Amount of pixels that have been processed */
     private volatile long       pixels        = 0l;
     /** Last printed progress update percentage */
@@ -55,19 +81,42 @@ class PixelManager {
      * Initialize pixel manager data for multi-threading
      * @param maxRows  the amount of pixel rows
      * @param maxCols  the amount of pixel columns
+     * @param tileSize the width and height of tiles allocated by
+     *                 {@link #nextTile()}
      * @param interval print time interval in seconds, 0 if printing is not
      *                 required
      */
-    PixelManager(int maxRows, int maxCols, double... interval) {
+    PixelManager(int maxRows, int maxCols, int tileSize, double... interval) {
         if (interval.length > 1) throw new IllegalArgumentException("only up to one interval argument is allowed");
+        if (tileSize < 1) throw new IllegalArgumentException("tile size must be positive");
         this.maxRows  = maxRows;
         this.maxCols  = maxCols;
+        this.tileSize = tileSize;
+        tileCols      = (maxCols + tileSize - 1) / tileSize;
+        totalTiles    = tileCols * ((maxRows + tileSize - 1) / tileSize);
         totalPixels   = (long) maxRows * maxCols;
         printInterval = interval.length == 0 ? printInterval : (long) (interval[0] * 10);
         print         = printInterval != 0;
         if (print) System.out.printf(PRINT_FORMAT, 0d);
     }
 
+    /**
+     * Restricts the allocation to a rectangular region of the image - the pixels
+     * and tiles are allocated only inside the region (the tiles are aligned to
+     * the upper left corner of the region), and the progress is relative to it.
+     * Must be called before the allocation starts
+     * @param region the region (a tile of any size inside the image)
+     */
+    void setRegion(Tile region) {
+        regionCol   = region.col();
+        regionRow   = region.row();
+        maxCols     = region.width();
+        maxRows     = region.height();
+        tileCols    = (maxCols + tileSize - 1) / tileSize;
+        totalTiles  = tileCols * ((maxRows + tileSize - 1) / tileSize);
+        totalPixels = (long) maxRows * maxCols;
+    }
+
     /**
      * Function for thread-safe manipulating of main follow up Pixel object - this
      * function is critical section for all the threads, and the pixel manager data
@@ -81,22 +130,90 @@ class PixelManager {
 
             ++cCol;
             if (cCol < maxCols)
-                return new Pixel(cRow, cCol);
+                return new Pixel(regionCol + cCol, regionRow + cRow);
 
             cCol = 0;
             ++cRow;
             if (cRow < maxRows)
-                return new Pixel(cRow, cCol);
+                return new Pixel(regionCol + cCol, regionRow + cRow);
         }
         return null;
     }
 
+    /**
+     * Function for thread-safe allocation of the next tile of pixels. Tiles are
+     * allocated row by row, the tiles on the right and bottom edges of the image
+     * may be smaller than the tile size.
+     * @return the next tile, or null if there are no more tiles
+     */
+    Tile nextTile() {
+        int tile;
+        synchronized (mutexNext) {
+            if (skipped != null)
+                while (cTile < totalTiles && skipped.get(cTile)) ++cTile;
+            if (cTile == totalTiles) return null;
+            tile = cTile++;
+        }
+        return tile(tile);
+    }
+
+    /**
+     * The tile of a given number (tiles are numbered row by row)
+     * @param index the tile number
+     * @return the tile
+     */
+    Tile tile(int index) {
+        int col = index % tileCols * tileSize;
+        int row = index / tileCols * tileSize;
+        return new Tile(regionCol + col, regionRow + row,
+                Math.min(tileSize, maxCols - col), Math.min(tileSize, maxRows - row));
+    }
+
+    /**
+     * The amount of tiles allocated by {@link #nextTile()}
+     * @return the amount of tiles
+     */
+    int tileCount() {
+        return totalTiles;
+    }
+
+    /**
+     * Excludes tiles that are already rendered from the tile allocation, counting
+     * them as processed. Must be called before the allocation starts
+     * @param tiles the numbers of the rendered tiles
+     */
+    void skipTiles(BitSet tiles) {
+        skipped = tiles;
+        long amount = 0;
+        for (int t = tiles.nextSetBit(0); t >= 0 && t < totalTiles; t = tiles.nextSetBit(t + 1)) {
+            Tile tile = tile(t);
+            amount += (long) tile.width() * tile.height();
+        }
+        pixelsDone(amount);
+    }
+
     /** Finish pixel processing by updating and printing of progress percentage */
     void pixelDone() {
+        pixelsDone(1);
+    }
+
+    /**
+     * Finish tile processing by updating and printing of progress percentage
+     * @param tile the processed tile
+     */
+    void tileDone(Tile tile) {
+        pixelsDone((long) tile.width() * tile.height());
+    }
+
+    /**
+     * Update and print progress percentage
+     * @param amount amount of processed pixels
+     */
+    private void pixelsDone(long amount) {
         boolean flag       = false;
         int     percentage = 0;
         synchronized (mutexPixels) {
-            ++pixels;
+            pixels += amount;
             if (print) {
                 percentage = (int) (1000l * pixels / totalPixels);
                 if (percentage - lastPrinted >= printInterval) {
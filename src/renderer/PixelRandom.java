@@ -0,0 +1,45 @@
+package renderer;
+
+import java.util.SplittableRandom;
+
+/**
+ * PixelRandom is a helper class providing the random numbers used for sampling
+ * in the renderer (beam jitter, glossy and blurry directions).<br/>
+ * Every thread owns its own generator, so sampling never contends on a shared
+ * seed. The camera reseeds the generator of the current thread from the pixel
+ * coordinates before tracing a pixel, so the sequence consumed by a pixel does
+ * not depend on which thread traces it, and renders are reproducible regardless
+ * of the amount of threads.
+ */
+final class PixelRandom {
+    /** Base seed of all the pixel generators */
+    private static final long                            SEED   = 0x2545F4914F6CDD1DL;
+    /** Odd multiplier (golden ratio) spreading the pixel keys over the seed space */
+    private static final long                            GOLDEN = 0x9E3779B97F4A7C15L;
+    /** The generator of the current thread */
+    private static final ThreadLocal<SplittableRandom> RANDOM =
+            ThreadLocal.withInitial(() -> new SplittableRandom(SEED));
+
+    /** Don't let anyone instantiate this class. */
+    private PixelRandom() {}
+
+    /**
+     * Reseeds the generator of the current thread for tracing a pixel
+     * @param col  pixel column number
+     * @param row  pixel row number
+     * @param pass sampling pass number, different passes over the same pixel
+     *             get independent sequences
+     */
+    static void reseed(int col, int row, int pass) {
+        long key = ((long) row << 40) ^ ((long) col << 16) ^ pass;
+        RANDOM.set(new SplittableRandom(SEED ^ (key * GOLDEN)));
+    }
+
+    /**
+     * Provides the generator of the current thread
+     * @return the generator
+     */
+    static SplittableRandom get() {
+        return RANDOM.get();
+    }
+}
@@ -0,0 +1,154 @@
+package renderer;
+
+import primitives.Color;
+
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * ProgressiveRenderer is a helper class rendering the image of a camera in
+ * passes of increasing sample count.<br/>
+ * Pass number p traces the next 2<sup>p</sup> rays of the beam of every pixel
+ * (in the shuffled order of {@link RayGrid}) into an accumulation buffer and
+ * publishes the averages into the image, so a usable preview is available
+ * after the first passes and refines until the whole beam is traced. Rendering
+ * stops earlier when the time budget is over (the pixels not reached in the
+ * last pass keep their previous value) or when a pass changes the image less
+ * than the convergence threshold.<br/>
+ * With a checkpoint writer, the samples of every rendered tile are handed over
+ * for checkpointing, and a render resumed from a checkpoint skips the samples
+ * that the restored pixels already have.
+ */
+final class ProgressiveRenderer {
+    /** The camera tracing the rays */
+    private final Camera                 camera;
+    /** The image of the camera */
+    private final ImageWriter            imageWriter;
+    /** Amount of rays in the whole beam of a pixel */
+    private final int                    beamSize;
+    /** Amount of rendering threads, 0 for rendering in the current thread */
+    private final int                    threads;
+    /** Progress printing interval of each pass */
+    private final double                 printInterval;
+    /** Time budget in seconds, 0 for unlimited */
+    private final double                 timeBudget;
+    /** Convergence threshold, 0 for rendering all the passes */
+    private final double                 threshold;
+    /** Listener notified after each pass, or null */
+    private final ObjIntConsumer<Camera> listener;
+    /** Snapshot png file name, or null */
+    private final String                 snapshotName;
+
+    /** Checkpoint writer, or null */
+    private CheckpointWriter             checkpoint = null;
+    /** Accumulated samples restored from a checkpoint, or null */
+    private AccumulationBuffer           restored   = null;
+
+    /** Accumulated samples of all the passes */
+    private AccumulationBuffer           buffer;
+    /** Time (nanoseconds) when the time budget is over */
+    private long                         deadline;
+
+    /**
+     * Initializes the progressive rendering of a camera
+     * @param camera        the camera tracing the rays
+     * @param imageWriter   the image of the camera
+     * @param beamSize      amount of rays in the whole beam of a pixel
+     * @param threads       amount of rendering threads, 0 for the current thread
+     * @param printInterval progress printing interval of each pass
+     * @param timeBudget    time budget in seconds, 0 for unlimited
+     * @param threshold     convergence threshold, 0 for rendering all the passes
+     * @param listener      listener notified after each pass, or null
+     * @param snapshotName  snapshot png file name, or null
+     */
+    ProgressiveRenderer(Camera camera, ImageWriter imageWriter, int beamSize, int threads, double printInterval,
+                        double timeBudget, double threshold, ObjIntConsumer<Camera> listener,
+                        String snapshotName) {
+        this.camera        = camera;
+        this.imageWriter   = imageWriter;
+        this.beamSize      = beamSize;
+        this.threads       = threads;
+        this.printInterval = printInterval;
+        this.timeBudget    = timeBudget;
+        this.threshold     = threshold;
+        this.listener      = listener;
+        this.snapshotName  = snapshotName;
+    }
+
+    /**
+     * Sets the checkpointing of the render
+     * @param writer   the checkpoint writer the rendered tiles are handed over to
+     * @param restored accumulated samples restored from a checkpoint, or null
+     * @return this renderer
+     */
+    ProgressiveRenderer setCheckpoint(CheckpointWriter writer, AccumulationBuffer restored) {
+        this.checkpoint = writer;
+        this.restored   = restored;
+        return this;
+    }
+
+    /** Renders the passes until the image is complete, converged or out of time */
+    void render() {
+        int nX = imageWriter.nX();
+        int nY = imageWriter.nY();
+        buffer   = restored == null ? new AccumulationBuffer(nX, nY) : restored;
+        deadline = timeBudget > 0 ? System.nanoTime() + (long) (timeBudget * 1e9) : Long.MAX_VALUE;
+
+        int first = 0;
+        for (int pass = 0; first < beamSize; ++pass) {
+            int count = Math.min(1 << pass, beamSize - first);
+            DoubleAdder change = new DoubleAdder();
+            LongAdder traced = new LongAdder();
+            renderPass(pass, first, count, change, traced);
+            first += count;
+
+            if (snapshotName != null) imageWriter.writeToImage(snapshotName);
+            if (listener != null) listener.accept(camera, first);
+
+            if (System.nanoTime() >= deadline) break;
+            if (pass > 0 && traced.sum() > 0 && change.sum() / (3d * traced.sum()) < threshold) break;
+        }
+    }
+
+    /**
+     * Renders a single pass over all the pixels
+     * @param pass   pass number
+     * @param first  index of the first ray of the pass in the beam
+     * @param count  amount of rays per pixel in the pass
+     * @param change accumulator of the color changes of the pass
+     * @param traced counter of the pixels traced in the pass
+     */
+    private void renderPass(int pass, int first, int count, DoubleAdder change, LongAdder traced) {
+        PixelManager manager = new PixelManager(imageWriter.nY(), imageWriter.nX(), Camera.TILE_SIZE, printInterval);
+        camera.renderTiles(manager, threads, tile -> {
+            // the first pass is always complete, so there is an image to publish
+            if (pass == 0 || System.nanoTime() < deadline) {
+                Color[] colors = new Color[tile.width() * tile.height()];
+                double tileChange = 0;
+                int    tileTraced = 0;
+                for (int y = 0, p = 0; y < tile.height(); y++)
+                    for (int x = 0; x < tile.width(); x++, p++) {
+                        int j = tile.col() + x;
+                        int i = tile.row() + y;
+                        Color before = buffer.mean(j, i);
+                        // a pixel restored from a checkpoint may already have the samples of the pass
+                        int done = buffer.count(j, i) - first;
+                        if (done < count) {
+                            camera.traceSamples(j, i, first + done, count - done, pass + 1, buffer);
+                            ++tileTraced;
+                        }
+                        colors[p] = buffer.mean(j, i);
+                        tileChange += Math.abs(colors[p].getRed() - before.getRed())
+                                + Math.abs(colors[p].getGreen() - before.getGreen())
+                                + Math.abs(colors[p].getBlue() - before.getBlue());
+                    }
+                imageWriter.writeTile(tile.col(), tile.row(), tile.width(), tile.height(), colors);
+                change.add(tileChange);
+                traced.add(tileTraced);
+                if (checkpoint != null && tileTraced > 0) checkpoint.tileDone(tile, buffer);
+            }
+            manager.tileDone(tile);
+        });
+    }
+}
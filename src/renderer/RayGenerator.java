@@ -0,0 +1,110 @@
+package renderer;
+
+import primitives.Point;
+import primitives.Ray;
+import primitives.Vector;
+
+/**
+ * RayGenerator is a helper class generating the primary rays of a camera.<br/>
+ * Everything that does not depend on the pixel (the view plane center, the
+ * pixel size and the pixel step vectors) is calculated once when the camera is
+ * built, and the rays of a whole pixel or tile are produced as plain arrays of
+ * direction components, so generating a ray costs a few multiplications and
+ * the creation of the ray itself.
+ */
+final class RayGenerator {
+    /** Camera location - the head of all the rays */
+    private final Point  location;
+    /** Direction (from the camera location) to the center of the pixel (0,0) */
+    private final double baseX, baseY, baseZ;
+    /** Step vector between the centers of two adjacent pixels in a row */
+    private final double rightX, rightY, rightZ;
+    /** Step vector between the centers of two adjacent pixels in a column */
+    private final double upX, upY, upZ;
+
+    /**
+     * Precomputes the view plane data of a camera
+     * @param location camera location
+     * @param to       camera forward direction (normalized)
+     * @param up       camera up direction (normalized)
+     * @param right    camera right direction (normalized)
+     * @param distance distance from the camera to the view plane
+     * @param width    view plane width
+     * @param height   view plane height
+     * @param nX       amount of pixel columns
+     * @param nY       amount of pixel rows
+     */
+    RayGenerator(Point location, Vector to, Vector up, Vector right,
+                 double distance, double width, double height, int nX, int nY) {
+        this.location = location;
+        double pixelWidth  = width / nX;
+        double pixelHeight = height / nY;
+        double x0 = -(nX - 1) / 2.0 * pixelWidth;
+        double y0 = (nY - 1) / 2.0 * pixelHeight;
+
+        rightX = right.getX() * pixelWidth;
+        rightY = right.getY() * pixelWidth;
+        rightZ = right.getZ() * pixelWidth;
+        upX    = up.getX() * pixelHeight;
+        upY    = up.getY() * pixelHeight;
+        upZ    = up.getZ() * pixelHeight;
+        baseX  = to.getX() * distance + right.getX() * x0 + up.getX() * y0;
+        baseY  = to.getY() * distance + right.getY() * x0 + up.getY() * y0;
+        baseZ  = to.getZ() * distance + right.getZ() * x0 + up.getZ() * y0;
+    }
+
+    /**
+     * Fills the (not normalized) directions of the rays through sub-pixel
+     * positions of a pixel
+     * @param j       pixel column index
+     * @param i       pixel row index
+     * @param offsetX sub-pixel offsets in X direction (-0.5 to 0.5), one per ray
+     * @param offsetY sub-pixel offsets in Y direction (-0.5 to 0.5), one per ray
+     * @param count   amount of rays to generate
+     * @param dirs    output array, direction components of ray k are stored at
+     *                indices 3k, 3k+1 and 3k+2
+     */
+    void fillPixel(int j, int i, double[] offsetX, double[] offsetY, int count, double[] dirs) {
+        double px = baseX + rightX * j - upX * i;
+        double py = baseY + rightY * j - upY * i;
+        double pz = baseZ + rightZ * j - upZ * i;
+        for (int k = 0, d = 0; k < count; ++k, d += 3) {
+            double ox = offsetX[k];
+            double oy = offsetY[k];
+            dirs[d]     = px + rightX * ox + upX * oy;
+            dirs[d + 1] = py + rightY * ox + upY * oy;
+            dirs[d + 2] = pz + rightZ * ox + upZ * oy;
+        }
+    }
+
+    /**
+     * Fills the (not normalized) directions of the rays through the centers of
+     * the pixels of a tile, row by row
+     * @param col    first column of the tile
+     * @param row    first row of the tile
+     * @param width  amount of columns in the tile
+     * @param height amount of rows in the tile
+     * @param dirs   output array, direction components of the ray through
+     *               pixel (col + x, row + y) are stored from index 3(y*width + x)
+     */
+    void fillTile(int col, int row, int width, int height, double[] dirs) {
+        int d = 0;
+        for (int i = row; i < row + height; ++i)
+            for (int j = col; j < col + width; ++j, d += 3) {
+                dirs[d]     = baseX + rightX * j - upX * i;
+                dirs[d + 1] = baseY + rightY * j - upY * i;
+                dirs[d + 2] = baseZ + rightZ * j - upZ * i;
+            }
+    }
+
+    /**
+     * Creates a ray from the camera location with a previously filled direction
+     * @param dirs direction components array
+     * @param k    index of the ray in the array
+     * @return the ray
+     */
+    Ray ray(double[] dirs, int k) {
+        int d = 3 * k;
+        return new Ray(location, new Vector(dirs[d], dirs[d + 1], dirs[d + 2]));
+    }
+}
@@ -1,25 +1,23 @@
 package renderer;
 
-import primitives.Ray;
-import renderer.Camera;
-
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
 
 public class RayGrid {
-    private static class GridPoint {
-        public double x;
-        public double y;
-
-        public GridPoint(double x, double y) {
-            this.x = x;
-            this.y = y;
-        }
-    }
-
-    private final List<GridPoint> points = new ArrayList<>();
-    private final Random random = new Random();
+    /** Sub-pixel X offsets of the grid points */
+    private final double[] pointsX;
+    /** Sub-pixel Y offsets of the grid points */
+    private final double[] pointsY;
+    /**
+     * Order of the grid points for tracing a beam in several steps - a fixed
+     * shuffle, so that the first points of the order are spread over the whole pixel
+     */
+    private final int[] progressiveOrder;
+    /**
+     * Indices of the coarse points of the grid - its corners and its center -
+     * spanning the whole pixel
+     */
+    private final int[] coarsePoints;
 
     public RayGrid(int numOfPoints) {
         // Find the closest perfect square to numOfPoints
@@ -42,47 +40,96 @@ public class RayGrid {
             }
         }
 
-        int count = 0;
-        // Create grid points
-        for (int row = 0; row < sideLength; row++) {
-            for (int col = 0; col < sideLength; col++) {
-                if (count < numOfPoints) {
-                    points.add(new GridPoint(coords[col], coords[row]));
-                    count++;
-                } else {
-                    break;
-                }
-            }
-            if (count >= numOfPoints) {
-                break;
-            }
+        pointsX = new double[numOfPoints];
+        pointsY = new double[numOfPoints];
+        // Create grid points row by row
+        for (int count = 0; count < numOfPoints; count++) {
+            pointsX[count] = coords[count % sideLength];
+            pointsY[count] = coords[count / sideLength];
         }
+
+        progressiveOrder = new int[numOfPoints];
+        for (int k = 0; k < numOfPoints; k++) progressiveOrder[k] = k;
+        SplittableRandom shuffle = new SplittableRandom(numOfPoints);
+        for (int k = numOfPoints - 1; k > 0; k--) {
+            int other = shuffle.nextInt(k + 1);
+            int point = progressiveOrder[k];
+            progressiveOrder[k] = progressiveOrder[other];
+            progressiveOrder[other] = point;
+        }
+
+        int lastRow = (numOfPoints - 1) / sideLength * sideLength;
+        coarsePoints = IntStream
+                .of(0, Math.min(sideLength, numOfPoints) - 1, lastRow, numOfPoints - 1, numOfPoints / 2)
+                .distinct().sorted().toArray();
+    }
+
+    /**
+     * Returns the amount of rays in a pixel beam
+     * @return the amount of grid points
+     */
+    public int size() {
+        return pointsX.length;
     }
 
     /**
-     * Creates a beam of rays through sub-pixel positions for anti-aliasing
-     * @param camera Camera instance for ray construction
-     * @param nX Total pixels in X direction
-     * @param nY Total pixels in Y direction
+     * Returns the indices of the coarse rays of a beam - the rays through the
+     * corners and the center of the grid, which span the whole pixel
+     * @return the indices of the coarse rays in the beam, in ascending order (not to be modified)
+     */
+    int[] coarsePoints() {
+        return coarsePoints;
+    }
+
+    /**
+     * Fills the directions of a beam of rays through sub-pixel positions for anti-aliasing
+     * @param generator primary ray generator of the camera
      * @param j Pixel column index
      * @param i Pixel row index
-     * @return List of rays through sub-pixel positions
+     * @param dirs output array of 3 * {@link #size()} direction components
      */
-    public List<Ray> createPixelBeam(Camera camera, int nX, int nY, int j, int i) {
-        List<Ray> rays = new ArrayList<>();
+    void fillPixelBeam(RayGenerator generator, int j, int i, double[] dirs) {
+        fillPixelRays(generator, j, i, null, 0, pointsX.length, dirs);
+    }
 
-        for (GridPoint point : points) {
-            // Add small random jitter to avoid aliasing patterns
-            double jitterX = (random.nextDouble() - 0.5) * 0.1;
-            double jitterY = (random.nextDouble() - 0.5) * 0.1;
+    /**
+     * Fills the directions of a part of the beam of rays through sub-pixel positions,
+     * for tracing the beam in several steps. The grid points are taken in a fixed
+     * shuffled order, so the steps together cover the whole beam exactly once
+     * @param generator primary ray generator of the camera
+     * @param j Pixel column index
+     * @param i Pixel row index
+     * @param first index of the first ray of the step in the shuffled order
+     * @param count amount of rays in the step
+     * @param dirs output array of 3 * count direction components
+     */
+    void fillPixelSamples(RayGenerator generator, int j, int i, int first, int count, double[] dirs) {
+        fillPixelRays(generator, j, i, progressiveOrder, first, count, dirs);
+    }
+
+    /**
+     * Fills the directions of jittered rays through grid points
+     * @param generator primary ray generator of the camera
+     * @param j Pixel column index
+     * @param i Pixel row index
+     * @param order order of the grid points, null for the natural order
+     * @param first index of the first grid point in the order
+     * @param count amount of rays
+     * @param dirs output array of 3 * count direction components
+     */
+    private void fillPixelRays(RayGenerator generator, int j, int i, int[] order, int first, int count,
+                               double[] dirs) {
+        double[] offsetX = new double[count];
+        double[] offsetY = new double[count];
+        SplittableRandom random = PixelRandom.get();
 
-            // Create ray with sub-pixel offset
-            Ray ray = camera.constructRay(nX, nY, j, i,
-                    point.x + jitterX,
-                    point.y + jitterY);
-            rays.add(ray);
+        for (int k = 0; k < count; k++) {
+            int point = order == null ? first + k : order[first + k];
+            // Add small random jitter to avoid aliasing patterns
+            offsetX[k] = pointsX[point] + (random.nextDouble() - 0.5) * 0.1;
+            offsetY[k] = pointsY[point] + (random.nextDouble() - 0.5) * 0.1;
         }
 
-        return rays;
+        generator.fillPixel(j, i, offsetX, offsetY, count, dirs);
     }
-}
\ No newline at end of file
+}
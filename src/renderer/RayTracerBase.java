@@ -1,9 +1,12 @@
 package renderer;
 
+import geometries.Intersectable.Intersection;
 import primitives.Color;
 import primitives.Ray;
 import scene.Scene;
 
+import java.util.List;
+
 /**
  * An abstract base class for ray tracing implementations.
  * Provides the basic framework for tracing rays in a scene.
@@ -24,6 +27,15 @@ public abstract class RayTracerBase {
         this.scene = scene;
     }
 
+    /**
+     * Prepares the scene for tracing before the rendering threads start: the
+     * acceleration structure of the scene geometries is built and frozen, so the
+     * rays use it without synchronization.
+     */
+    public void prepare() {
+        if (scene != null) scene.geometries.freeze();
+    }
+
     /**
      * Traces a single ray and returns the resulting color.
      * This method must be implemented by subclasses.
@@ -32,4 +44,26 @@ public abstract class RayTracerBase {
      * @return the color calculated for the ray
      */
     public abstract Color traceRay(Ray ray);
+
+    /**
+     * Traces a single ray whose closest intersection is already found, and returns
+     * the resulting color.
+     * This method must be implemented by subclasses.
+     *
+     * @param ray          the ray to be traced
+     * @param intersection the closest intersection of the ray, or null if it hits nothing
+     * @return the color calculated for the ray
+     */
+    public abstract Color traceRay(Ray ray, Intersection intersection);
+
+    /**
+     * Finds the closest intersection of a ray with the scene geometries.
+     *
+     * @param ray the ray
+     * @return the closest intersection, or null if the ray hits nothing
+     */
+    protected Intersection findClosestIntersection(Ray ray) {
+        List<Intersection> intersections = scene.geometries.calculateIntersections(ray);
+        return intersections == null ? null : ray.findClosestIntersection(intersections);
+    }
 }
@@ -0,0 +1,200 @@
+package renderer;
+
+import primitives.Color;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Render coordinator distributes the rendering of an image among worker
+ * processes ({@link RenderWorker}) connected over sockets.<br/>
+ * The coordinator splits the image of its camera into tiles and hands them
+ * out one at a time to every worker connection; the workers trace the tiles
+ * with their own copy of the same scene and camera and send back the full
+ * range colors, which are assembled into the image of the coordinator camera.
+ * A tile whose worker connection fails (or does not answer within the tile
+ * timeout) is handed out again to another connection, and workers may connect
+ * (or reconnect) at any time until the image is complete.
+ * <p>
+ * Protocol (all values are big endian): a worker connection starts with
+ * {@link #MAGIC} and the resolution of the worker camera (nX, nY). Then the
+ * coordinator repeatedly sends a tile (column, row, width, height) and the
+ * worker answers with the same tile followed by three floats (red, green,
+ * blue) per pixel, row by row. A column of -1 tells the worker that the image
+ * is complete.
+ * </p>
+ */
+public final class RenderCoordinator {
+    /** Protocol identification sent by the workers: the bytes "RNDR" */
+    static final int          MAGIC     = 0x524E4452;
+    /** Column value telling a worker that the image is complete */
+    static final int          DONE      = -1;
+
+    /** The camera whose image is rendered */
+    private final Camera       camera;
+    /** The image the tiles are assembled into */
+    private final ImageWriter  imageWriter;
+    /** The socket the workers connect to */
+    private final ServerSocket server;
+    /** Maximal time for tracing a tile by a worker in milliseconds, 0 for unlimited */
+    private final int          tileTimeout;
+    /** Allocation of the tiles and progress printing */
+    private final PixelManager manager;
+    /** Tiles of failed worker connections, handed out again before the new tiles */
+    private final Deque<PixelManager.Tile> retry = new ArrayDeque<>();
+    /** Amount of tiles not assembled yet */
+    private int                remaining;
+
+    /**
+     * Opens the coordinator socket on the loopback interface
+     * @param camera      the camera whose image is rendered - the workers must use
+     *                    the same scene and camera settings
+     * @param port        the port the workers connect to, 0 for any free port
+     * @param tileTimeout maximal time for tracing a tile by a worker in seconds,
+     *                    0 for unlimited
+     * @throws IllegalStateException if the socket cannot be opened
+     */
+    public RenderCoordinator(Camera camera, int port, double tileTimeout) {
+        if (tileTimeout < 0) throw new IllegalArgumentException("Tile timeout must be non-negative");
+        this.camera      = camera;
+        this.imageWriter = camera.getImageWriter();
+        this.tileTimeout = (int) (tileTimeout * 1000);
+        manager   = new PixelManager(imageWriter.nY(), imageWriter.nX(), Camera.TILE_SIZE, camera.printInterval);
+        remaining = manager.tileCount();
+        try {
+            server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open coordinator port " + port, e);
+        }
+    }
+
+    /**
+     * The port the workers connect to
+     * @return the port number
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Accepts worker connections and hands out the tiles until the image is complete
+     * @return the camera, holding the complete image
+     */
+    public Camera render() {
+        Thread acceptor = new Thread(this::accept, "coordinator " + getPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+        try {
+            synchronized (this) {
+                while (remaining > 0) wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                server.close();
+            } catch (IOException ignore) {}
+        }
+        return camera;
+    }
+
+    /** Accepts worker connections until the socket is closed, serving each in a thread */
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                Thread connection = new Thread(() -> serve(socket), "coordinator connection");
+                connection.setDaemon(true);
+                connection.start();
+            } catch (IOException ignore) {
+                // the socket is closed when the image is complete
+            }
+        }
+    }
+
+    /**
+     * Hands out tiles to a worker connection and assembles its results, until the
+     * image is complete or the connection fails
+     * @param socket the worker connection
+     */
+    private void serve(Socket socket) {
+        PixelManager.Tile tile = null;
+        try (socket) {
+            socket.setSoTimeout(tileTimeout);
+            DataInputStream  in  = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            if (in.readInt() != MAGIC || in.readInt() != imageWriter.nX() || in.readInt() != imageWriter.nY())
+                return;
+
+            while ((tile = takeTile()) != null) {
+                out.writeInt(tile.col());
+                out.writeInt(tile.row());
+                out.writeInt(tile.width());
+                out.writeInt(tile.height());
+                out.flush();
+
+                if (in.readInt() != tile.col() || in.readInt() != tile.row()
+                        || in.readInt() != tile.width() || in.readInt() != tile.height())
+                    throw new IOException("Worker answered another tile");
+                Color[] colors = new Color[tile.width() * tile.height()];
+                for (int p = 0; p < colors.length; p++)
+                    colors[p] = new Color(in.readFloat(), in.readFloat(), in.readFloat());
+                imageWriter.writeTile(tile.col(), tile.row(), tile.width(), tile.height(), colors);
+                tileDone(tile);
+                tile = null;
+            }
+            out.writeInt(DONE);
+            out.flush();
+        } catch (IOException e) {
+            // the worker failed or timed out - its tile goes to another worker
+            if (tile != null) retry(tile);
+        } catch (InterruptedException e) {
+            if (tile != null) retry(tile);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Takes the next tile to hand out - a tile of a failed connection, or a new one.
+     * If all the tiles are handed out, waits until either the image is complete or
+     * a tile is returned by a failed connection
+     * @return the tile, or null if the image is complete
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    private synchronized PixelManager.Tile takeTile() throws InterruptedException {
+        while (true) {
+            if (!retry.isEmpty()) return retry.poll();
+            PixelManager.Tile tile = manager.nextTile();
+            if (tile != null) return tile;
+            if (remaining == 0) return null;
+            wait();
+        }
+    }
+
+    /**
+     * Returns the tile of a failed connection for handing it out again
+     * @param tile the tile
+     */
+    private synchronized void retry(PixelManager.Tile tile) {
+        retry.add(tile);
+        notifyAll();
+    }
+
+    /**
+     * Counts an assembled tile
+     * @param tile the tile
+     */
+    private synchronized void tileDone(PixelManager.Tile tile) {
+        manager.tileDone(tile);
+        --remaining;
+        notifyAll();
+    }
+}
@@ -0,0 +1,275 @@
+package renderer;
+
+import primitives.Color;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Render queue renders many camera jobs with a global budget of rendering
+ * threads.<br/>
+ * The jobs are rendered tile by tile, with the full beam of every pixel of the
+ * image - cameras built for streamed, progressive, time budgeted, checkpointed,
+ * region or mask rendering are rejected; every free thread takes the next tile of the job with the highest
+ * priority (the earliest submitted among equal priorities), so urgent jobs are
+ * rendered first while the other jobs use the remaining threads. Cameras built
+ * for the same {@link scene.Scene} share its geometries and their bounding
+ * volume hierarchy, which is built and frozen once, when the first job is
+ * submitted. Each job reports its rendering throughput.
+ */
+public class RenderQueue implements AutoCloseable {
+    /**
+     * A camera rendering job of the queue
+     */
+    public static final class Job {
+        /** The camera rendering the image */
+        private final Camera       camera;
+        /** Name of the png file the image is written into when complete, or null */
+        private final String       imageName;
+        /** Priority of the job - higher priority jobs are rendered first */
+        private final int          priority;
+        /** Submission number, for ordering jobs of equal priority */
+        private final long         sequence;
+        /** Allocation of the tiles of the job */
+        private final PixelManager manager;
+        /** Amount of tiles not rendered yet */
+        private int                remaining;
+        /** Amount of rendered pixels */
+        private long               pixels    = 0;
+        /** Time of taking the first tile (nanoseconds), 0 before */
+        private long               startTime = 0;
+        /** Time of completion (nanoseconds), 0 before */
+        private long               endTime   = 0;
+        /** Failure of the job, or null */
+        private RuntimeException   failure   = null;
+
+        /**
+         * Creates a job
+         * @param camera    the camera rendering the image
+         * @param imageName name of the png file the image is written into, or null
+         * @param priority  priority of the job
+         * @param sequence  submission number
+         */
+        private Job(Camera camera, String imageName, int priority, long sequence) {
+            ImageWriter image = camera.getImageWriter();
+            this.camera    = camera;
+            this.imageName = imageName;
+            this.priority  = priority;
+            this.sequence  = sequence;
+            manager        = new PixelManager(image.nY(), image.nX(), Camera.TILE_SIZE, 0d);
+            remaining      = manager.tileCount();
+        }
+
+        /**
+         * The camera of the job, holding the image when the job is complete
+         * @return the camera
+         */
+        public Camera getCamera() { return camera; }
+
+        /**
+         * The priority of the job
+         * @return the priority
+         */
+        public int getPriority() { return priority; }
+
+        /**
+         * Whether the job is complete (or failed)
+         * @return true if the job is complete
+         */
+        public synchronized boolean isDone() { return remaining == 0 || failure != null; }
+
+        /**
+         * Waits until the job is complete
+         * @return the camera of the job, holding the image
+         * @throws IllegalStateException if the job failed or the waiting is interrupted
+         */
+        public synchronized Camera await() {
+            try {
+                while (!isDone()) wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the job", e);
+            }
+            if (failure != null) throw new IllegalStateException("Render job failed", failure);
+            return camera;
+        }
+
+        /**
+         * Rendering time of the job - from taking its first tile until its completion
+         * (or until now, if the job is in progress)
+         * @return the time in seconds
+         */
+        public synchronized double getElapsedSeconds() {
+            if (startTime == 0) return 0;
+            return ((endTime == 0 ? System.nanoTime() : endTime) - startTime) / 1e9;
+        }
+
+        /**
+         * Rendering throughput of the job
+         * @return the amount of rendered pixels per second
+         */
+        public synchronized double getPixelsPerSecond() {
+            double seconds = getElapsedSeconds();
+            return seconds == 0 ? 0 : pixels / seconds;
+        }
+
+        /**
+         * Takes the next tile of the job
+         * @return the tile, or null if all the tiles are taken
+         */
+        private synchronized PixelManager.Tile nextTile() {
+            if (failure != null) return null;
+            if (startTime == 0) startTime = System.nanoTime();
+            return manager.nextTile();
+        }
+
+        /**
+         * Counts a rendered tile, writing the image when the job is complete
+         * @param tile the tile
+         */
+        private void tileDone(PixelManager.Tile tile) {
+            boolean complete;
+            synchronized (this) {
+                pixels += (long) tile.width() * tile.height();
+                complete = --remaining == 0;
+            }
+            if (complete) {
+                try {
+                    if (imageName != null) camera.writeToImage(imageName);
+                } catch (RuntimeException e) {
+                    fail(e);
+                }
+                finish();
+            }
+        }
+
+        /**
+         * Marks the job as failed
+         * @param e the failure
+         */
+        private synchronized void fail(RuntimeException e) {
+            if (failure == null) failure = e;
+            finish();
+        }
+
+        /** Records the completion time and wakes up the waiting threads */
+        private synchronized void finish() {
+            if (endTime == 0) endTime = System.nanoTime();
+            notifyAll();
+        }
+    }
+
+    /** Order of the jobs: higher priority first, then earlier submission */
+    private static final Comparator<Job> ORDER =
+            Comparator.comparingInt((Job job) -> -job.priority).thenComparingLong(job -> job.sequence);
+
+    /** Jobs with tiles not taken yet, in rendering order */
+    private final List<Job>          pending  = new ArrayList<>();
+    /** The rendering threads */
+    private final LinkedList<Thread> threads  = new LinkedList<>();
+    /** Amount of submitted jobs */
+    private long                     sequence = 0;
+    /** Whether the queue accepts no more jobs */
+    private boolean                  shutdown = false;
+
+    /**
+     * Creates a render queue and starts its rendering threads
+     * @param threads the global budget of rendering threads
+     */
+    public RenderQueue(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("Amount of threads must be positive");
+        for (int t = 0; t < threads; t++) {
+            Thread thread = new Thread(this::work, "render queue " + t);
+            this.threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Submits a rendering job. The scene of the camera is prepared in the calling
+     * thread before the job is queued, so the rendering threads keep rendering
+     * the jobs already queued meanwhile
+     * @param camera    the camera rendering the image
+     * @param priority  priority of the job - higher priority jobs are rendered first
+     * @param imageName name of the png file the image is written into when complete,
+     *                  or null
+     * @return the job
+     * @throws IllegalArgumentException if the camera is built for a rendering mode
+     *                                  other than plain tiled rendering
+     * @throws IllegalStateException    if the queue is shut down
+     */
+    public Job submit(Camera camera, int priority, String imageName) {
+        String mode = camera.specialMode();
+        if (mode != null)
+            throw new IllegalArgumentException("Render queue renders only plain tiled images, not " + mode + " ones");
+        checkOpen();
+        camera.prepare();
+        synchronized (this) {
+            checkOpen();
+            Job job = new Job(camera, imageName, priority, sequence++);
+            pending.add(job);
+            pending.sort(ORDER);
+            notifyAll();
+            return job;
+        }
+    }
+
+    /**
+     * Checks that the queue accepts jobs
+     * @throws IllegalStateException if the queue is shut down
+     */
+    private synchronized void checkOpen() {
+        if (shutdown) throw new IllegalStateException("Render queue is shut down");
+    }
+
+    /**
+     * Stops accepting jobs and waits until all the submitted jobs are rendered
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            shutdown = true;
+            notifyAll();
+        }
+        try {
+            for (Thread thread : threads) thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Renders tiles of the pending jobs until the queue is shut down and empty */
+    private void work() {
+        while (true) {
+            Job job;
+            PixelManager.Tile tile;
+            synchronized (this) {
+                while (true) {
+                    if (!pending.isEmpty()) {
+                        job  = pending.getFirst();
+                        tile = job.nextTile();
+                        if (tile != null) break;
+                        pending.removeFirst();
+                    } else if (shutdown) {
+                        return;
+                    } else {
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+            }
+            try {
+                Color[] colors = job.camera.traceTile(tile);
+                job.camera.getImageWriter().writeTile(tile.col(), tile.row(), tile.width(), tile.height(), colors);
+                job.tileDone(tile);
+            } catch (RuntimeException e) {
+                job.fail(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package renderer;
+
+import primitives.Color;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.LinkedList;
+import java.util.function.Supplier;
+
+/**
+ * Render worker traces the tiles handed out by a {@link RenderCoordinator}.<br/>
+ * The worker uses its own camera, which must be built from the same scene and
+ * camera settings as the camera of the coordinator. It opens a connection per
+ * rendering thread, and each connection traces one tile at a time. A lost
+ * connection is reopened (the coordinator hands its tile to another
+ * connection), until the coordinator reports the image complete, or cannot be
+ * reached or refuses the worker for a while.
+ */
+public final class RenderWorker {
+    /** Outcome of a connection to the coordinator */
+    private enum Outcome {
+        /** The coordinator reported the image complete */
+        COMPLETE,
+        /** The coordinator handed out tiles, and then the connection was lost */
+        LOST,
+        /** The connection failed or was closed before the coordinator handed out a tile */
+        REFUSED
+    }
+
+    /**
+     * Amount of consecutive connection attempts refused or failed before a
+     * connection gives up
+     */
+    private static final int  MAX_RETRIES = 20;
+    /** Delay between connection attempts in milliseconds */
+    private static final long RETRY_DELAY = 250;
+
+    /** The camera tracing the tiles */
+    private final Camera      camera;
+    /** Host of the coordinator */
+    private final String      host;
+    /** Port of the coordinator */
+    private final int         port;
+    /** Amount of connections (rendering threads) */
+    private final int         threads;
+
+    /**
+     * Creates a worker of a coordinator
+     * @param camera  the camera tracing the tiles - built from the same scene and
+     *                camera settings as the camera of the coordinator
+     * @param host    host of the coordinator
+     * @param port    port of the coordinator
+     * @param threads amount of connections (rendering threads)
+     */
+    public RenderWorker(Camera camera, String host, int port, int threads) {
+        if (threads < 1) throw new IllegalArgumentException("Amount of threads must be positive");
+        this.camera  = camera;
+        this.host    = host;
+        this.port    = port;
+        this.threads = threads;
+    }
+
+    /**
+     * Starts a worker process: the arguments are the coordinator host and port, the
+     * name of a class with a public default constructor implementing
+     * {@code Supplier<Camera>} that builds the scene and the camera, and optionally
+     * the amount of rendering threads (the amount of processors by default)
+     * @param args the arguments
+     * @throws ReflectiveOperationException if the camera supplier cannot be created
+     */
+    @SuppressWarnings("unchecked")
+    public static void main(String[] args) throws ReflectiveOperationException {
+        if (args.length < 3)
+            throw new IllegalArgumentException("Usage: RenderWorker host port camera-supplier-class [threads]");
+        Supplier<Camera> supplier = (Supplier<Camera>) Class.forName(args[2]).getDeclaredConstructor().newInstance();
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        new RenderWorker(supplier.get(), args[0], Integer.parseInt(args[1]), threads).run();
+    }
+
+    /** Traces tiles in all the connections until the image is complete */
+    public void run() {
+        camera.prepare();
+        var connections = new LinkedList<Thread>();
+        for (int t = 0; t < threads; t++)
+            connections.add(new Thread(this::connect, "worker connection " + t));
+        for (var connection : connections) connection.start();
+        try {
+            for (var connection : connections) connection.join();
+        } catch (InterruptedException ignore) {}
+    }
+
+    /**
+     * Connects to the coordinator and traces its tiles, reconnecting on failures.
+     * Only a connection the coordinator handed out tiles to restarts the count
+     * of the failed attempts, so a coordinator that keeps refusing the worker
+     * makes it give up
+     */
+    private void connect() {
+        for (int failures = 0; failures < MAX_RETRIES; ) {
+            Outcome outcome;
+            try (Socket socket = new Socket(host, port)) {
+                outcome = serve(socket);
+            } catch (IOException e) {
+                outcome = Outcome.REFUSED;
+            }
+            if (outcome == Outcome.COMPLETE) return;
+            failures = outcome == Outcome.LOST ? 0 : failures + 1;
+            try {
+                Thread.sleep(RETRY_DELAY);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Traces the tiles handed out over a connection
+     * @param socket the connection to the coordinator
+     * @return the outcome of the connection
+     */
+    private Outcome serve(Socket socket) {
+        boolean accepted = false;
+        try {
+            DataInputStream  in  = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            ImageWriter image = camera.getImageWriter();
+            out.writeInt(RenderCoordinator.MAGIC);
+            out.writeInt(image.nX());
+            out.writeInt(image.nY());
+            out.flush();
+
+            int col;
+            while ((col = in.readInt()) != RenderCoordinator.DONE) {
+                accepted = true;
+                PixelManager.Tile tile = new PixelManager.Tile(col, in.readInt(), in.readInt(), in.readInt());
+                Color[] colors = camera.traceTile(tile);
+                out.writeInt(tile.col());
+                out.writeInt(tile.row());
+                out.writeInt(tile.width());
+                out.writeInt(tile.height());
+                for (Color color : colors) {
+                    out.writeFloat((float) color.getRed());
+                    out.writeFloat((float) color.getGreen());
+                    out.writeFloat((float) color.getBlue());
+                }
+                out.flush();
+            }
+            return Outcome.COMPLETE;
+        } catch (IOException e) {
+            return accepted ? Outcome.LOST : Outcome.REFUSED;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package renderer;
+
+/**
+ * Sampling strategies of the glossy reflection and blurry refraction rays
+ */
+public enum SecondarySampling {
+    /** A fixed amount of rays at every glossy or blurry bounce */
+    FIXED,
+    /**
+     * An amount of rays scaled by the path throughput and the recursion level,
+     * traced in small batches until their variance is low enough
+     */
+    ADAPTIVE,
+    /**
+     * A single stochastically chosen reflection or refraction ray per bounce -
+     * the supersampling of the camera rays averages them
+     */
+    STOCHASTIC
+}
@@ -0,0 +1,133 @@
+package renderer;
+
+import primitives.Point;
+import primitives.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Sequence renderer renders the frames of a camera fly-through.<br/>
+ * The camera path is given by keyframes of the camera location, the point it
+ * looks at and its roll angle; the frames are spread evenly over the time of
+ * the keyframes and the camera of each frame is interpolated linearly between
+ * the surrounding keyframes. All the frames are built by copies of the same
+ * camera builder, so they share its ray tracer - the scene and its bounding volume
+ * hierarchy are built (and frozen) once and stay warm for all the frames - while
+ * the builder itself is left unchanged. The png encoding
+ * of each frame runs in a separate thread while the next frame is traced.
+ */
+public class SequenceRenderer {
+    /**
+     * Immutable class for a keyframe of the camera path
+     * @param time     time of the keyframe
+     * @param location camera location
+     * @param target   the point the camera looks at
+     * @param roll     rotation of the camera around its direction in degrees
+     */
+    record Keyframe(double time, Point location, Point target, double roll) {
+    }
+
+    /** The camera builder with the scene and the view plane settings of the frames */
+    private final Camera.Builder builder;
+    /** The up direction of the camera before rolling */
+    private final Vector         up;
+    /** Keyframes in time order */
+    private final List<Keyframe> keyframes = new ArrayList<>();
+
+    /**
+     * Creates a sequence renderer
+     * @param builder the camera builder with the scene and the view plane (size,
+     *                distance, resolution) and rendering settings of the frames
+     * @param up      the up direction of the camera before rolling
+     */
+    public SequenceRenderer(Camera.Builder builder, Vector up) {
+        this.builder = builder;
+        this.up      = up;
+    }
+
+    /**
+     * Adds a keyframe of the camera path
+     * @param time     time of the keyframe, later than the previous keyframe
+     * @param location camera location
+     * @param target   the point the camera looks at
+     * @param roll     rotation of the camera around its direction in degrees
+     * @return this sequence renderer
+     */
+    public SequenceRenderer addKeyframe(double time, Point location, Point target, double roll) {
+        if (!keyframes.isEmpty() && time <= keyframes.getLast().time())
+            throw new IllegalArgumentException("Keyframes must be added in time order");
+        keyframes.add(new Keyframe(time, location, target, roll));
+        return this;
+    }
+
+    /**
+     * Renders the frames into png files named by the prefix and the frame number
+     * (e.g. flight0007)
+     * @param imagePrefix the prefix of the png file names
+     * @param frames      amount of frames
+     * @throws IllegalStateException if a frame cannot be written
+     */
+    public void render(String imagePrefix, int frames) {
+        if (keyframes.isEmpty()) throw new IllegalStateException("Camera path has no keyframes");
+        if (frames < 1) throw new IllegalArgumentException("Amount of frames must be positive");
+
+        ExecutorService encoder = Executors.newSingleThreadExecutor();
+        Future<?> encoding = null;
+        try {
+            for (int frame = 0; frame < frames; frame++) {
+                Camera camera = frameCamera(frames == 1 ? 0 : (double) frame / (frames - 1));
+                camera.renderImage();
+                // at most one frame waits for encoding while the next one is traced
+                if (encoding != null) encoding.get();
+                String imageName = String.format("%s%04d", imagePrefix, frame);
+                encoding = encoder.submit(() -> camera.writeToImage(imageName));
+            }
+            if (encoding != null) encoding.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Frame encoding failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            encoder.shutdown();
+        }
+    }
+
+    /**
+     * Builds the camera of a point of the path
+     * @param fraction the point of the path - 0 for the first keyframe, 1 for the last
+     * @return the camera
+     */
+    Camera frameCamera(double fraction) {
+        Keyframe first = keyframes.getFirst();
+        double   time  = first.time() + fraction * (keyframes.getLast().time() - first.time());
+        int      k     = 0;
+        while (k < keyframes.size() - 2 && keyframes.get(k + 1).time() < time) ++k;
+
+        Keyframe from = keyframes.get(k);
+        Keyframe to   = keyframes.get(Math.min(k + 1, keyframes.size() - 1));
+        double   t    = to == from ? 0 : (time - from.time()) / (to.time() - from.time());
+        Point location = interpolate(from.location(), to.location(), t);
+        Point target   = interpolate(from.target(), to.target(), t);
+        double roll    = from.roll() + t * (to.roll() - from.roll());
+
+        Camera.Builder frame = builder.copy().setLocation(location).setDirection(target, up).setTargetPoint(target);
+        if (roll != 0) frame.rotateCamera(roll);
+        return frame.build();
+    }
+
+    /**
+     * Linear interpolation between two points
+     * @param a the point of t = 0
+     * @param b the point of t = 1
+     * @param t the interpolation parameter
+     * @return the interpolated point
+     */
+    private static Point interpolate(Point a, Point b, double t) {
+        return a.equals(b) || t == 0 ? a : a.add(b.subtract(a).scale(t));
+    }
+}
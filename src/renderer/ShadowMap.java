@@ -0,0 +1,263 @@
+package renderer;
+
+import geometries.Geometries;
+import geometries.Intersectable.Intersection;
+import primitives.*;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * ShadowMap is a helper class answering shadow queries of a directional light
+ * or a spotlight by a depth map, instead of tracing a shadow ray.<br/>
+ * The map is built once per render by casting a ray from the light through the
+ * center of every texel - an orthographic projection over the bounded scene
+ * geometries for a directional light, and a perspective projection around the
+ * beam for a spotlight. Every texel keeps the depth of the nearest opaque
+ * occluder and of the nearest transparent one. A query looks up the 3x3
+ * texels around the point (percentage-closer filtering); it is answered by the
+ * map only where the result is reliable, and is left to a shadow ray (null
+ * result) near depth discontinuities, behind transparent geometries and
+ * outside the map.
+ */
+final class ShadowMap {
+    /** Half angle of the perspective projection of a spotlight */
+    private static final double SPOT_HALF_ANGLE = Math.toRadians(60);
+    /** Depth difference (in texel sizes) of the filtered texels considered a discontinuity */
+    private static final double DISCONTINUITY   = 4;
+    /** Amount of filtered texels */
+    private static final int    KERNEL          = 9;
+    /** Transparency coefficient below which an occluder is opaque */
+    private static final double OPAQUE_K        = 0.001;
+
+    /** Whether the projection is perspective (spotlight) or orthographic (directional light) */
+    private final boolean  perspective;
+    /** Position of the spotlight, or the origin of the orthographic projection */
+    private final Point    origin;
+    /** Direction of the light (beam direction of a spotlight) */
+    private final Vector   forward;
+    /** Horizontal axis of the map */
+    private final Vector   right;
+    /** Vertical axis of the map */
+    private final Vector   up;
+    /** Lowest horizontal and vertical map coordinates */
+    private final double   minU, minV;
+    /** Size of a texel in map coordinates */
+    private final double   texel;
+    /** Depth of the orthographic projection plane along the light direction */
+    private final double   near;
+    /** Amount of texels along each side */
+    private final int      resolution;
+    /** Depth of the nearest opaque occluder of each texel, infinite if none */
+    private final double[] opaque;
+    /** Depth of the nearest transparent occluder of each texel, infinite if none */
+    private final double[] clear;
+
+    /**
+     * Creates and builds a shadow map
+     * @param geometries  the scene geometries
+     * @param perspective whether the projection is perspective
+     * @param origin      position of the spotlight, or a point of the projection plane
+     * @param forward     normalized light direction
+     * @param minU        lowest horizontal map coordinate
+     * @param minV        lowest vertical map coordinate
+     * @param texel       size of a texel in map coordinates
+     * @param near        depth of the orthographic projection plane
+     * @param resolution  amount of texels along each side
+     */
+    private ShadowMap(Geometries geometries, boolean perspective, Point origin, Vector forward,
+                      double minU, double minV, double texel, double near, int resolution) {
+        this.perspective = perspective;
+        this.origin      = origin;
+        this.forward     = forward;
+        Vector axis      = Math.abs(forward.getX()) > 0.9 ? Vector.AXIS_Y : Vector.AXIS_X;
+        this.right       = forward.crossProduct(axis).normalize();
+        this.up          = forward.crossProduct(right);
+        this.minU        = minU;
+        this.minV        = minV;
+        this.texel       = texel;
+        this.near        = near;
+        this.resolution  = resolution;
+        opaque           = new double[resolution * resolution];
+        clear            = new double[resolution * resolution];
+        IntStream.range(0, resolution).parallel().forEach(j -> {
+            for (int i = 0; i < resolution; i++) castTexel(geometries, i, j);
+        });
+    }
+
+    /**
+     * Builds the shadow map of a directional light over the bounded scene geometries
+     * @param geometries the scene geometries
+     * @param direction  normalized light direction
+     * @param resolution amount of texels along each side
+     * @return the shadow map, or null if the scene has no bounded geometries
+     */
+    static ShadowMap directional(Geometries geometries, Vector direction, int resolution) {
+        BoundingBox box = geometries.getBoundedBox();
+        if (box == null) return null;
+        Vector axis  = Math.abs(direction.getX()) > 0.9 ? Vector.AXIS_Y : Vector.AXIS_X;
+        Vector right = direction.crossProduct(axis).normalize();
+        Vector up    = direction.crossProduct(right);
+
+        double[] low  = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+        double[] high = { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+        Point min = box.getMin(), max = box.getMax();
+        for (int corner = 0; corner < 8; corner++) {
+            double x = (corner & 1) == 0 ? min.getX() : max.getX();
+            double y = (corner & 2) == 0 ? min.getY() : max.getY();
+            double z = (corner & 4) == 0 ? min.getZ() : max.getZ();
+            double[] projected = { dot(right, x, y, z), dot(up, x, y, z), dot(direction, x, y, z) };
+            for (int k = 0; k < 3; k++) {
+                low[k]  = Math.min(low[k], projected[k]);
+                high[k] = Math.max(high[k], projected[k]);
+            }
+        }
+        double size  = Math.max(high[0] - low[0], high[1] - low[1]);
+        double texel = Math.max(size, 1e-9) / resolution;
+        // Start the texel rays in front of the geometries
+        double near  = low[2] - Math.max(1, high[2] - low[2]);
+        return new ShadowMap(geometries, false, Point.ZERO, direction, low[0], low[1], texel, near, resolution);
+    }
+
+    /**
+     * Builds the shadow map of a spotlight around its beam direction
+     * @param geometries the scene geometries
+     * @param position   position of the spotlight
+     * @param direction  normalized beam direction
+     * @param resolution amount of texels along each side
+     * @return the shadow map
+     */
+    static ShadowMap spot(Geometries geometries, Point position, Vector direction, int resolution) {
+        double extent = Math.tan(SPOT_HALF_ANGLE);
+        return new ShadowMap(geometries, true, position, direction, -extent, -extent,
+                2 * extent / resolution, 0, resolution);
+    }
+
+    /**
+     * Casts the ray of a texel and stores the depths of its nearest occluders
+     * @param geometries the scene geometries
+     * @param i          texel column
+     * @param j          texel row
+     */
+    private void castTexel(Geometries geometries, int i, int j) {
+        double u = minU + (i + 0.5) * texel, v = minV + (j + 0.5) * texel;
+        Point head;
+        Vector direction;
+        if (perspective) {
+            head      = origin;
+            direction = combine(forward, 1, right, u, up, v);
+        } else {
+            head      = new Point(right.getX() * u + up.getX() * v + forward.getX() * near,
+                    right.getY() * u + up.getY() * v + forward.getY() * near,
+                    right.getZ() * u + up.getZ() * v + forward.getZ() * near);
+            direction = forward;
+        }
+        Ray ray = new Ray(head, direction);
+        double start = perspective ? 0 : near;
+
+        double nearestOpaque = Double.POSITIVE_INFINITY, nearestClear = Double.POSITIVE_INFINITY;
+        List<Intersection> intersections = geometries.calculateIntersections(ray);
+        if (intersections != null) {
+            for (Intersection intersection : intersections) {
+                double depth = start + intersection.point.distance(ray.getHead());
+                if (intersection.material.kT.lowerThan(OPAQUE_K))
+                    nearestOpaque = Math.min(nearestOpaque, depth);
+                else
+                    nearestClear = Math.min(nearestClear, depth);
+            }
+        }
+        opaque[j * resolution + i] = nearestOpaque;
+        clear[j * resolution + i]  = nearestClear;
+    }
+
+    /**
+     * Answers a shadow query by the map
+     * @param point  the shaded point
+     * @param normal the normal at the point
+     * @return the transparency coefficient (fraction of the light reaching the
+     * point), or null if the map cannot answer reliably and a shadow ray is needed
+     */
+    Double3 transparency(Point point, Vector normal) {
+        double x = point.getX(), y = point.getY(), z = point.getZ();
+        // Distance between texel centers at the point, in world units
+        double world;
+        double depth, u, v;
+        if (perspective) {
+            double wx = x - origin.getX(), wy = y - origin.getY(), wz = z - origin.getZ();
+            double forwardDistance = dot(forward, wx, wy, wz);
+            if (forwardDistance <= 0) return null;
+            world = texel * Math.sqrt(wx * wx + wy * wy + wz * wz);
+        } else {
+            world = texel;
+        }
+
+        // Offset the point along the normal towards the light against self-shadowing
+        double toLight = perspective
+                ? -dot(normal, x - origin.getX(), y - origin.getY(), z - origin.getZ())
+                : -normal.dotProduct(forward);
+        double side = toLight >= 0 ? world : -world;
+        x += normal.getX() * side;
+        y += normal.getY() * side;
+        z += normal.getZ() * side;
+
+        if (perspective) {
+            double wx = x - origin.getX(), wy = y - origin.getY(), wz = z - origin.getZ();
+            double forwardDistance = dot(forward, wx, wy, wz);
+            if (forwardDistance <= 0) return null;
+            u     = dot(right, wx, wy, wz) / forwardDistance;
+            v     = dot(up, wx, wy, wz) / forwardDistance;
+            depth = Math.sqrt(wx * wx + wy * wy + wz * wz);
+        } else {
+            u     = dot(right, x, y, z);
+            v     = dot(up, x, y, z);
+            depth = dot(forward, x, y, z);
+        }
+
+        int ci = (int) Math.floor((u - minU) / texel), cj = (int) Math.floor((v - minV) / texel);
+        if (ci < 1 || cj < 1 || ci >= resolution - 1 || cj >= resolution - 1) return null;
+
+        int lit = 0;
+        double lowest = Double.POSITIVE_INFINITY, highest = Double.NEGATIVE_INFINITY;
+        for (int j = cj - 1; j <= cj + 1; j++) {
+            for (int i = ci - 1; i <= ci + 1; i++) {
+                int index = j * resolution + i;
+                if (clear[index] < depth) return null; // transparent geometry in front
+                if (depth <= opaque[index] + world) lit++;
+                lowest  = Math.min(lowest, opaque[index]);
+                highest = Math.max(highest, opaque[index]);
+            }
+        }
+        if (lit == KERNEL) return Double3.ONE;
+        if (lit == 0) return Double3.ZERO;
+        if (highest - lowest > DISCONTINUITY * world) return null;
+        return new Double3((double) lit / KERNEL);
+    }
+
+    /**
+     * Dot product of a vector with coordinates
+     * @param vector the vector
+     * @param x      the first coordinate
+     * @param y      the second coordinate
+     * @param z      the third coordinate
+     * @return the dot product
+     */
+    private static double dot(Vector vector, double x, double y, double z) {
+        return vector.getX() * x + vector.getY() * y + vector.getZ() * z;
+    }
+
+    /**
+     * Combines three scaled vectors without creating intermediate (possibly zero) vectors
+     * @param a  the first vector
+     * @param sa the scale of the first vector
+     * @param b  the second vector
+     * @param sb the scale of the second vector
+     * @param c  the third vector
+     * @param sc the scale of the third vector
+     * @return the combined vector
+     */
+    private static Vector combine(Vector a, double sa, Vector b, double sb, Vector c, double sc) {
+        return new Vector(a.getX() * sa + b.getX() * sb + c.getX() * sc,
+                a.getY() * sa + b.getY() * sb + c.getY() * sc,
+                a.getZ() * sa + b.getZ() * sb + c.getZ() * sc);
+    }
+}
@@ -1,14 +1,26 @@
 package renderer;
 
+import geometries.Geometry;
 import geometries.Intersectable.Intersection;
 import geometries.Polygon;
 import geometries.Sphere;
+import lighting.AreaLight;
+import lighting.DirectionalLight;
+import lighting.LightGrid;
+import lighting.LightSample;
 import lighting.LightSource;
+import lighting.LightTree;
+import lighting.SpotLight;
 import primitives.*;
 import scene.Scene;
 
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
 
 import static primitives.Util.alignZero;
 import static primitives.Util.isZero;
@@ -27,8 +39,90 @@ public class SimpleRayTracer extends RayTracerBase {
     private static final int BLURRY_RAYS = 16;     // Number of rays for blurry refractions
     private static final double GLOSSY_RADIUS = 0.1;  // Radius for glossy effect
     private static final double BLURRY_RADIUS = 1.5;  // Radius for blurry effect
+    private static final int ADAPTIVE_BATCH = 4;         // Rays per batch of the adaptive sampling
+    private static final double ADAPTIVE_TOLERANCE = 1;  // Error of the adaptive average in the pixel color
+    private static final double ADAPTIVE_MIN_K = 0.05;   // Throughput below which a single ray is traced
+    static final int SHADING_CACHE_SIZE = 1024;          // Shaded cells kept per rendering thread
+    private static final int SHADED_LIGHT = 6;           // Values of a light in a shaded cell
+    private static final double SHADING_NORMAL_STEP = 0.25; // Quantization of the normal components in the shading cache
 
-    private final Random random = new Random();
+    /** The light sample reused by the shading of each thread */
+    private static final ThreadLocal<LightSample> LIGHT_SAMPLE = ThreadLocal.withInitial(LightSample::new);
+
+    /** Sampling strategy of the glossy reflection and blurry refraction rays */
+    private SecondarySampling sampling = SecondarySampling.FIXED;
+
+    /**
+     * Path throughput below which the Russian roulette terminates secondary rays
+     * probabilistically, 0 if the roulette is disabled
+     */
+    private double rouletteThreshold = 0;
+
+    /**
+     * The last opaque occluder found by each rendering thread for each light -
+     * adjacent pixels are usually shadowed by the same geometry, so it is tested
+     * before traversing the whole scene. Replaced when the scene is prepared for
+     * rendering, so occluders of an edited scene are not reused.
+     */
+    private ThreadLocal<Map<LightSource, Geometry>> occluders = ThreadLocal.withInitial(IdentityHashMap::new);
+    /**
+     * Intensity (in color units, weighted by the path throughput) below which a
+     * light does not contribute to a point, 0 to cull only the lights that do not
+     * reach the point at all
+     */
+    private double lightCutoff = 0;
+    /** Grid of the influence spheres of the lights, built when the scene is prepared, or null */
+    private LightGrid lightGrid = null;
+    /** Amount of lights chosen from the light tree per shading point, 0 to shade all the lights */
+    private int lightSamples = 0;
+    /** Tree of the lights, built when the scene is prepared if lights are sampled, or null */
+    private LightTree lightTree = null;
+    /** Resolution of the shadow maps of directional lights and spotlights, 0 to trace every shadow ray */
+    private int shadowMapResolution = 0;
+    /** Shadow maps of the directional lights and spotlights, built when the scene is prepared */
+    private Map<LightSource, ShadowMap> shadowMaps = Map.of();
+    /** Size of the cells of the shading cache, 0 to shade every camera ray hit */
+    private double shadingTolerance = 0;
+    /**
+     * The diffuse lighting of the cells recently shaded by each rendering thread,
+     * in least recently used order, or null if shading is not cached. Replaced
+     * when the scene is prepared for rendering.
+     */
+    private ThreadLocal<Map<ShadingKey, ShadedCell>> shadingCache = null;
+
+    /**
+     * Key of a cell of the shading cache: a geometry, a cube of the space, a
+     * quantized normal and the side of the surface the cell is viewed from
+     *
+     * @param geometry the shaded geometry
+     * @param x        cube index along the x axis
+     * @param y        cube index along the y axis
+     * @param z        cube index along the z axis
+     * @param normal   the quantized normal components, packed
+     * @param front    whether the surface is viewed from the side of its normal
+     */
+    private record ShadingKey(Geometry geometry, long x, long y, long z, long normal, boolean front) {
+    }
+
+    /**
+     * The view-independent local lighting of a cell of the shading cache
+     *
+     * @param diffuse the emission and the diffuse lighting of all the lights
+     * @param lights  for each light reaching the cell, the direction from the light
+     *                to the cell and the (shadowed) intensity of the light at the
+     *                cell, packed in {@link #SHADED_LIGHT} values
+     */
+    private record ShadedCell(Color diffuse, double[] lights) {
+    }
+
+    /** Amount of shadow rays blocked by the cached occluder */
+    private final LongAdder occluderHits = new LongAdder();
+    /** Amount of shadow rays that traversed the scene */
+    private final LongAdder occluderMisses = new LongAdder();
+    /** Amount of camera ray hits shaded from the shading cache */
+    private final LongAdder shadingHits = new LongAdder();
+    /** Amount of camera ray hits that shaded a new shading cache cell */
+    private final LongAdder shadingMisses = new LongAdder();
 
     /**
      * Constructs a new SimpleRayTracer using the provided scene.
@@ -39,6 +133,205 @@ public class SimpleRayTracer extends RayTracerBase {
         super(scene);
     }
 
+    /**
+     * Prepares the scene for tracing: builds the light grid if light culling is
+     * enabled, the light tree if lights are sampled and the shadow maps if
+     * enabled, and clears the occluder cache, the shading cache and their counters.
+     */
+    @Override
+    public void prepare() {
+        super.prepare();
+        lightGrid = lightCutoff > 0 && scene != null ? new LightGrid(scene.lights, lightCutoff) : null;
+        lightTree = lightSamples > 0 && scene != null ? new LightTree(scene.lights) : null;
+        shadowMaps = shadowMapResolution > 0 && scene != null ? buildShadowMaps() : Map.of();
+        shadingCache = shadingTolerance > 0 ? ThreadLocal.withInitial(SimpleRayTracer::newShadingCache) : null;
+        occluders = ThreadLocal.withInitial(IdentityHashMap::new);
+        occluderHits.reset();
+        occluderMisses.reset();
+        shadingHits.reset();
+        shadingMisses.reset();
+    }
+
+    /**
+     * The amount of shadow rays blocked by the cached occluder of their light since the scene was prepared
+     *
+     * @return the amount of cache hits
+     */
+    public long getOccluderCacheHits() {
+        return occluderHits.sum();
+    }
+
+    /**
+     * The amount of shadow rays that traversed the scene since the scene was prepared
+     *
+     * @return the amount of cache misses
+     */
+    public long getOccluderCacheMisses() {
+        return occluderMisses.sum();
+    }
+
+    /**
+     * The amount of camera ray hits shaded from the shading cache since the scene was prepared
+     *
+     * @return the amount of cache hits
+     */
+    public long getShadingCacheHits() {
+        return shadingHits.sum();
+    }
+
+    /**
+     * The amount of camera ray hits that shaded a new shading cache cell since the scene was prepared
+     *
+     * @return the amount of cache misses
+     */
+    public long getShadingCacheMisses() {
+        return shadingMisses.sum();
+    }
+
+    /**
+     * Sets the sampling strategy of the glossy reflection and blurry refraction rays
+     *
+     * @param sampling the sampling strategy
+     * @return this ray tracer
+     */
+    public SimpleRayTracer setSecondarySampling(SecondarySampling sampling) {
+        this.sampling = sampling;
+        return this;
+    }
+
+    /**
+     * Enables light culling: a light is shaded and shadow-tested at a point only
+     * if its intensity there, weighted by the path throughput, is above the
+     * cutoff. Point lights and spotlights are indexed by a grid of their influence
+     * spheres, computed from their attenuation, so a point only visits the lights
+     * that may reach it. A cutoff of about {@code 0.25} (0.1% of full white) is
+     * invisible in most scenes.
+     *
+     * @param cutoff the intensity cutoff in color units, 0 to disable the culling
+     * @return this ray tracer
+     * @throws IllegalArgumentException if the cutoff is negative
+     */
+    public SimpleRayTracer setLightCulling(double cutoff) {
+        if (cutoff < 0) throw new IllegalArgumentException("Light cutoff must not be negative");
+        this.lightCutoff = cutoff;
+        return this;
+    }
+
+    /**
+     * Enables stochastic light selection: the point lights and spotlights are
+     * organized in a {@link LightTree}, and each shading point shades a few of
+     * them, chosen in proportion to their estimated contribution and weighted by
+     * the inverse probability of the choice, so the image converges to the image
+     * of all the lights over the camera rays of a pixel while the cost per point
+     * is logarithmic in the amount of lights. Lights without a position are
+     * always shaded. Takes precedence over the light grid of light culling.
+     *
+     * @param samples the amount of lights chosen per shading point, 0 to shade all the lights
+     * @return this ray tracer
+     * @throws IllegalArgumentException if the amount is negative
+     */
+    public SimpleRayTracer setLightSampling(int samples) {
+        if (samples < 0) throw new IllegalArgumentException("Amount of light samples must not be negative");
+        this.lightSamples = samples;
+        return this;
+    }
+
+    /**
+     * Enables shadow maps: when the scene is prepared, a depth map of the nearest
+     * occluders is built for every directional light (orthographic, over the
+     * bounded geometries) and every spotlight (perspective, 60 degrees around the
+     * beam), and shadow queries of these lights are answered by a filtered lookup
+     * in the map. Points near shadow edges, behind transparent geometries or
+     * outside the map still trace their shadow ray, so the shadows keep their
+     * exact outline while most points skip the traversal. Lights of other types
+     * are not affected.
+     *
+     * @param resolution amount of texels along each side of a map, 0 to trace every shadow ray
+     * @return this ray tracer
+     * @throws IllegalArgumentException if the resolution is negative
+     */
+    public SimpleRayTracer setShadowMaps(int resolution) {
+        if (resolution < 0) throw new IllegalArgumentException("Shadow map resolution must not be negative");
+        this.shadowMapResolution = resolution;
+        return this;
+    }
+
+    /**
+     * Builds the shadow maps of the directional lights and spotlights of the scene
+     *
+     * @return the shadow map of each light
+     */
+    private Map<LightSource, ShadowMap> buildShadowMaps() {
+        Map<LightSource, ShadowMap> maps = new IdentityHashMap<>();
+        for (LightSource light : scene.lights) {
+            ShadowMap map = null;
+            if (light instanceof SpotLight spot)
+                map = ShadowMap.spot(scene.geometries, spot.getPosition(), spot.getDirection(), shadowMapResolution);
+            else if (light instanceof DirectionalLight directional)
+                map = ShadowMap.directional(scene.geometries, directional.getL(Point.ZERO), shadowMapResolution);
+            if (map != null) maps.put(light, map);
+        }
+        return maps;
+    }
+
+    /**
+     * Enables the shading cache: the space is divided into cubes of the given
+     * size, and the emission and diffuse lighting (including the shadow rays) of
+     * a geometry in a cube, with a similar normal, is calculated once and reused
+     * by the following camera rays hitting it - the rays of a pixel beam mostly
+     * hit the same few cells. The specular lighting is still calculated for every
+     * ray from the cached light intensities, as it depends on the view direction.
+     * Each rendering thread keeps its recently used cells, up to a bounded amount.
+     * Secondary rays and shading with light sampling are not cached.
+     *
+     * @param tolerance the size of the cells in scene units - the largest error in
+     *                  the position of the lit point, 0 to disable the cache
+     * @return this ray tracer
+     * @throws IllegalArgumentException if the tolerance is negative
+     */
+    public SimpleRayTracer setShadingCache(double tolerance) {
+        if (tolerance < 0) throw new IllegalArgumentException("Shading cache tolerance must not be negative");
+        this.shadingTolerance = tolerance;
+        return this;
+    }
+
+    /**
+     * Creates a shading cache of a rendering thread, evicting the least recently
+     * used cell when it holds more than {@link #SHADING_CACHE_SIZE} cells
+     *
+     * @param <K> the type of the cell keys
+     * @param <V> the type of the shaded cells
+     * @return the cache
+     */
+    static <K, V> Map<K, V> newShadingCache() {
+        return new LinkedHashMap<>(SHADING_CACHE_SIZE * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > SHADING_CACHE_SIZE;
+            }
+        };
+    }
+
+    /**
+     * Enables the Russian roulette: a secondary ray whose share of the color (its
+     * path throughput divided among the rays of its glossy or blurry cone) falls
+     * below the threshold survives with probability proportional to its
+     * share, and a surviving ray is reweighted by the inverse probability, so the
+     * image stays unbiased. The expected amount of rays per path is then linear in
+     * the depth instead of exponential.
+     *
+     * @param threshold the path throughput below which the roulette is played,
+     *                  0 to disable it
+     * @return this ray tracer
+     * @throws IllegalArgumentException if the threshold is not in the range [0, 1]
+     */
+    public SimpleRayTracer setRussianRoulette(double threshold) {
+        if (threshold < 0 || threshold > 1)
+            throw new IllegalArgumentException("Russian roulette threshold must be between 0 and 1");
+        this.rouletteThreshold = threshold;
+        return this;
+    }
+
     /**
      * Traces a ray and calculates the color at the intersection point,
      * or returns the background color if no intersection is found.
@@ -48,7 +341,19 @@ public class SimpleRayTracer extends RayTracerBase {
      */
     @Override
     public Color traceRay(Ray ray) {
-        Intersection intersection = findClosestIntersection(ray);
+        return traceRay(ray, findClosestIntersection(ray));
+    }
+
+    /**
+     * Calculates the color of a ray at its already found closest intersection point,
+     * or returns the background color if it has no intersection.
+     *
+     * @param ray          the ray to be traced
+     * @param intersection the closest intersection of the ray, or null
+     * @return the color at the intersection point, or the background color
+     */
+    @Override
+    public Color traceRay(Ray ray, Intersection intersection) {
         if (intersection == null) {
             return scene.background;
         }
@@ -74,7 +379,9 @@ public class SimpleRayTracer extends RayTracerBase {
     }
 
     private Color calcColor(Intersection intersection, int level, Double3 k) {
-        Color color = calcLocalEffects(intersection, k);
+        Color color = level == MAX_CALC_COLOR_LEVEL && shadingCache != null && lightTree == null
+                ? calcCachedLocalEffects(intersection)
+                : calcLocalEffects(intersection, k);
         return 1 == level ? color : color.add(calcGlobalEffects(intersection, level, k));
     }
 
@@ -102,8 +409,21 @@ public class SimpleRayTracer extends RayTracerBase {
      * @return true if the light and view directions are not orthogonal to the surface
      */
     public boolean setLightSource(Intersection intersection, LightSource lightSource) {
+        return setLightSource(intersection, lightSource, lightSource.getL(intersection.point));
+    }
+
+    /**
+     * Sets the light source with an already calculated light direction and computes
+     * its dot product with the normal.
+     *
+     * @param intersection the intersection point
+     * @param lightSource  the light source
+     * @param l            the normalized direction from the light source to the point
+     * @return true if the light and view directions are not orthogonal to the surface
+     */
+    private boolean setLightSource(Intersection intersection, LightSource lightSource, Vector l) {
         intersection.light = lightSource;
-        intersection.l = intersection.light.getL(intersection.point);
+        intersection.l = l;
         intersection.lNormal = intersection.l.dotProduct(intersection.normal);
 
         return Util.alignZero(intersection.vNormal * intersection.lNormal) > 0;
@@ -111,28 +431,169 @@ public class SimpleRayTracer extends RayTracerBase {
 
     /**
      * Calculates the local lighting effects (diffuse and specular) at the intersection point.
+     * With light sampling, the lights of the light tree are represented by a few
+     * lights chosen in proportion to their estimated contribution, each weighted
+     * by the inverse probability of choosing it.
      *
      * @param intersection the intersection containing all necessary data
      * @return the resulting color from local effects
      */
     private Color calcLocalEffects(Intersection intersection, Double3 k) {
         Color color = intersection.geometry.getEmission();
-        for (LightSource lightSource : scene.lights) {
-            if (!setLightSource(intersection, lightSource)) {
-                continue;
+        LightSample sample = LIGHT_SAMPLE.get();
+        if (lightTree != null) {
+            for (LightSource lightSource : lightTree.getUnbounded()) {
+                color = color.add(calcLight(intersection, lightSource, k, sample));
             }
-
-            Double3 ktr = transparency(intersection);
-            if (!ktr.product(k).lowerThan(MIN_CALC_COLOR_K) ) { // sign(nl) == sign(nv)
-                Color iL = lightSource.getIntensity(intersection.point).scale(ktr);
-                color = color.add(
-                        iL.scale(calcDiffusive(intersection)
-                                .add(calcSpecular(intersection))));
+            SplittableRandom random = PixelRandom.get();
+            for (int i = 0; i < lightSamples; i++) {
+                LightTree.Selection selection = lightTree.select(intersection.point, random.nextDouble());
+                if (selection != null) {
+                    color = color.add(calcLight(intersection, selection.light(), k, sample)
+                            .scale(1 / (lightSamples * selection.probability())));
+                }
             }
+            return color;
+        }
+
+        List<LightSource> lights = lightGrid == null ? scene.lights : lightGrid.getLights(intersection.point);
+        for (LightSource lightSource : lights) {
+            color = color.add(calcLight(intersection, lightSource, k, sample));
         }
         return color;
     }
 
+    /**
+     * Calculates the local lighting effects of a camera ray hit through the shading
+     * cache: the emission and diffuse lighting of its cell are shaded once, and
+     * the specular lighting is added from the cached light intensities.
+     *
+     * @param intersection the intersection containing all necessary data
+     * @return the resulting color from local effects
+     */
+    private Color calcCachedLocalEffects(Intersection intersection) {
+        Map<ShadingKey, ShadedCell> cache = shadingCache.get();
+        ShadingKey key = shadingKey(intersection);
+        ShadedCell cell = cache.get(key);
+        if (cell == null) {
+            shadingMisses.increment();
+            cell = shadeCell(intersection);
+            cache.put(key, cell);
+        } else {
+            shadingHits.increment();
+        }
+
+        Color color = cell.diffuse();
+        Material material = intersection.material;
+        if (material.kS.equals(Double3.ZERO)) return color;
+        Vector n = intersection.normal, v = intersection.v;
+        double[] lights = cell.lights();
+        double r = 0, g = 0, b = 0;
+        for (int i = 0; i < lights.length; i += SHADED_LIGHT) {
+            double lx = lights[i], ly = lights[i + 1], lz = lights[i + 2];
+            double lNormal = lx * n.getX() + ly * n.getY() + lz * n.getZ();
+            if (alignZero(intersection.vNormal * lNormal) <= 0) continue;
+            // The Phong term of calcSpecular, without building the reflected vector
+            double vr = 2 * lNormal * intersection.vNormal - (lx * v.getX() + ly * v.getY() + lz * v.getZ());
+            if (vr > 0) {
+                double phong = Math.pow(vr, material.nShininess);
+                r += lights[i + 3] * phong;
+                g += lights[i + 4] * phong;
+                b += lights[i + 5] * phong;
+            }
+        }
+        return color.add(new Color(r, g, b).scale(material.kS));
+    }
+
+    /**
+     * Calculates the key of the shading cache cell of an intersection
+     *
+     * @param intersection the intersection, with its normal
+     * @return the cell key
+     */
+    private ShadingKey shadingKey(Intersection intersection) {
+        Point p = intersection.point;
+        Vector n = intersection.normal;
+        long normal = (Math.round(n.getX() / SHADING_NORMAL_STEP) + 64) << 16
+                | (Math.round(n.getY() / SHADING_NORMAL_STEP) + 64) << 8
+                | (Math.round(n.getZ() / SHADING_NORMAL_STEP) + 64);
+        return new ShadingKey(intersection.geometry,
+                (long) Math.floor(p.getX() / shadingTolerance),
+                (long) Math.floor(p.getY() / shadingTolerance),
+                (long) Math.floor(p.getZ() / shadingTolerance),
+                normal, intersection.vNormal < 0);
+    }
+
+    /**
+     * Shades the view-independent local lighting of a shading cache cell at an intersection
+     *
+     * @param intersection the intersection containing all necessary data
+     * @return the shaded cell
+     */
+    private ShadedCell shadeCell(Intersection intersection) {
+        Color diffuse = intersection.geometry.getEmission();
+        LightSample sample = LIGHT_SAMPLE.get();
+        List<LightSource> lights = lightGrid == null ? scene.lights : lightGrid.getLights(intersection.point);
+        double[] reaching = new double[lights.size() * SHADED_LIGHT];
+        int count = 0;
+        for (LightSource lightSource : lights) {
+            Color iL = calcLightIntensity(intersection, lightSource, INITIAL_K, sample);
+            if (iL != null) {
+                diffuse = diffuse.add(iL.scale(calcDiffusive(intersection)));
+                reaching[count++] = intersection.l.getX();
+                reaching[count++] = intersection.l.getY();
+                reaching[count++] = intersection.l.getZ();
+                reaching[count++] = iL.getRed();
+                reaching[count++] = iL.getGreen();
+                reaching[count++] = iL.getBlue();
+            }
+        }
+        return new ShadedCell(diffuse, Arrays.copyOf(reaching, count));
+    }
+
+    /**
+     * Calculates the diffuse and specular lighting of a single light at the intersection point.
+     *
+     * @param intersection the intersection containing all necessary data
+     * @param lightSource  the light source
+     * @param k            the path throughput
+     * @param sample       the reusable light sample of the thread
+     * @return the color from the light
+     */
+    private Color calcLight(Intersection intersection, LightSource lightSource, Double3 k, LightSample sample) {
+        Color iL = calcLightIntensity(intersection, lightSource, k, sample);
+        return iL == null ? Color.BLACK : iL.scale(calcDiffusive(intersection).add(calcSpecular(intersection)));
+    }
+
+    /**
+     * Calculates the intensity of a single light reaching the intersection point,
+     * attenuated by the shadowing geometries, and sets the light in the intersection.
+     *
+     * @param intersection the intersection containing all necessary data
+     * @param lightSource  the light source
+     * @param k            the path throughput
+     * @param sample       the reusable light sample of the thread
+     * @return the intensity, or null if the light does not contribute to the point
+     */
+    private Color calcLightIntensity(Intersection intersection, LightSource lightSource, Double3 k,
+                                     LightSample sample) {
+        lightSource.sample(intersection.point, sample);
+        // Cull the lights too weak to contribute (or facing away) before casting a shadow ray
+        Color intensity = sample.intensity;
+        if (max(intensity, k) <= lightCutoff) {
+            return null;
+        }
+        if (!setLightSource(intersection, lightSource, sample.l)) {
+            return null;
+        }
+
+        Double3 ktr = transparency(intersection, sample.distance);
+        if (ktr.product(k).lowerThan(MIN_CALC_COLOR_K)) { // sign(nl) == sign(nv)
+            return null;
+        }
+        return intensity.scale(ktr);
+    }
+
     /**
      * Calculates the specular reflection component using the Phong model.
      *
@@ -194,6 +655,7 @@ public class SimpleRayTracer extends RayTracerBase {
     }
 
     private Color calcGlobalEffects(Intersection intersection, int level, Double3 k) {
+        if (sampling == SecondarySampling.STOCHASTIC) return calcStochasticBounce(intersection, level, k);
         Color refractedColor = calcBlurryRefraction(intersection, level, k, intersection.material.kT);
         Color reflectedColor = calcGlossyReflection(intersection, level, k, intersection.material.kR);
         return refractedColor.add(reflectedColor);
@@ -207,30 +669,20 @@ public class SimpleRayTracer extends RayTracerBase {
 
         if (!intersection.material.isGlossy()) {
             // Regular reflection
+            double survival = roulette(kkR, 1);
+            if (survival == 0) return Color.BLACK;
             Ray reflectedRay = new Ray(intersection.point, baseReflection, intersection.normal);
             Intersection reflectedIntersection = findClosestIntersection(reflectedRay);
-            if (reflectedIntersection == null) return scene.background.scale(kR);
+            if (reflectedIntersection == null) return scene.background.scale(kR).scale(1 / survival);
             return preprocessIntersection(reflectedIntersection, reflectedRay.getDirection())
-                    ? calcColor(reflectedIntersection, level - 1, kkR).scale(kR) : Color.BLACK;
+                    ? calcColor(reflectedIntersection, level - 1, rouletteK(kkR, survival))
+                            .scale(kR).scale(1 / survival)
+                    : Color.BLACK;
         }
 
         // Glossy reflection
-        Color totalColor = Color.BLACK;
         double glossyRadius = intersection.material.glossiness * GLOSSY_RADIUS;
-
-        for (int i = 0; i < GLOSSY_RAYS; i++) {
-            Vector glossyDirection = generateRandomDirection(baseReflection, intersection.normal, glossyRadius);
-            Ray glossyRay = new Ray(intersection.point, glossyDirection, intersection.normal);
-
-            Intersection glossyIntersection = findClosestIntersection(glossyRay);
-            if (glossyIntersection != null && preprocessIntersection(glossyIntersection, glossyRay.getDirection())) {
-                totalColor = totalColor.add(calcColor(glossyIntersection, level - 1, kkR));
-            } else {
-                totalColor = totalColor.add(scene.background);
-            }
-        }
-
-        return totalColor.scale(kR).reduce(GLOSSY_RAYS);
+        return calcConeColor(intersection, baseReflection, glossyRadius, level, kkR, kR, GLOSSY_RAYS);
     }
 
     private Color calcBlurryRefraction(Intersection intersection, int level, Double3 k, Double3 kT) {
@@ -241,54 +693,305 @@ public class SimpleRayTracer extends RayTracerBase {
 
         if (!intersection.material.isBlurry()) {
             // Regular refraction
+            double survival = roulette(kkT, 1);
+            if (survival == 0) return Color.BLACK;
             Ray refractedRay = new Ray(intersection.point, baseRefraction, intersection.normal);
             Intersection refractedIntersection = findClosestIntersection(refractedRay);
-            if (refractedIntersection == null) return scene.background.scale(kT);
+            if (refractedIntersection == null) return scene.background.scale(kT).scale(1 / survival);
             return preprocessIntersection(refractedIntersection, refractedRay.getDirection())
-                    ? calcColor(refractedIntersection, level - 1, kkT).scale(kT) : Color.BLACK;
+                    ? calcColor(refractedIntersection, level - 1, rouletteK(kkT, survival))
+                            .scale(kT).scale(1 / survival)
+                    : Color.BLACK;
         }
 
         // Blurry refraction
-        Color totalColor = Color.BLACK;
         double blurryRadius = intersection.material.blurriness * BLURRY_RADIUS;
+        return calcConeColor(intersection, baseRefraction, blurryRadius, level, kkT, kT, BLURRY_RAYS);
+    }
 
-        for (int i = 0; i < BLURRY_RAYS; i++) {
-            Vector blurryDirection = generateRandomDirection(baseRefraction, intersection.normal, blurryRadius);
-            Ray blurryRay = new Ray(intersection.point, blurryDirection, intersection.normal);
+    /**
+     * Calculates the reflection and refraction by a single secondary ray: the
+     * reflection or the refraction is chosen with probability proportional to its
+     * path throughput, and the ray is spread in its glossy or blurry cone (or is
+     * the ideal ray for a mirror or clear glass). The ray is reweighted by the
+     * inverse probability of the choice, so the average of the camera rays of a
+     * pixel converges to the image of the fixed sampling.
+     *
+     * @param intersection the intersection
+     * @param level        the recursion level
+     * @param k            the path throughput
+     * @return the reflected and refracted color
+     */
+    private Color calcStochasticBounce(Intersection intersection, int level, Double3 k) {
+        Material material = intersection.material;
+        Double3 kkR = k.product(material.kR);
+        Double3 kkT = k.product(material.kT);
+        double reflection = kkR.lowerThan(MIN_CALC_COLOR_K) ? 0 : max(kkR);
+        double refraction = kkT.lowerThan(MIN_CALC_COLOR_K) ? 0 : max(kkT);
+        if (reflection + refraction == 0) return Color.BLACK;
 
-            Intersection blurryIntersection = findClosestIntersection(blurryRay);
-            if (blurryIntersection != null && preprocessIntersection(blurryIntersection, blurryRay.getDirection())) {
-                totalColor = totalColor.add(calcColor(blurryIntersection, level - 1, kkT));
-            } else {
-                totalColor = totalColor.add(scene.background);
+        double probability = reflection / (reflection + refraction);
+        boolean reflect = PixelRandom.get().nextDouble() < probability;
+        if (!reflect) probability = 1 - probability;
+
+        Color color = reflect
+                ? calcConeSample(intersection,
+                intersection.v.add(intersection.normal.scale(intersection.vNormal * -2)),
+                material.glossiness * GLOSSY_RADIUS, level, kkR, 1).scale(material.kR)
+                : calcConeSample(intersection, intersection.v,
+                material.blurriness * BLURRY_RADIUS, level, kkT, 1).scale(material.kT);
+        return color.scale(1 / probability);
+    }
+
+    /**
+     * Calculates the glossy reflection or blurry refraction by averaging rays
+     * spread in a cone around the ideal direction. With the adaptive sampling the
+     * amount of rays is scaled by the path throughput and the recursion level,
+     * and the rays are traced in batches until the estimated error of their
+     * average is below {@link #ADAPTIVE_TOLERANCE}.
+     *
+     * @param intersection the intersection
+     * @param base         the ideal reflection or refraction direction
+     * @param radius       the radius of the cone
+     * @param level        the recursion level
+     * @param kk           the path throughput of the rays
+     * @param kx           the reflection or transmission coefficient
+     * @param rays         the amount of rays of the fixed sampling
+     * @return the reflected or refracted color
+     */
+    private Color calcConeColor(Intersection intersection, Vector base, double radius, int level,
+                                Double3 kk, Double3 kx, int rays) {
+        int budget = rays;
+        int batch = rays;
+        if (sampling == SecondarySampling.ADAPTIVE) {
+            budget = adaptiveRays(kk, level, rays);
+            batch = Math.min(budget, ADAPTIVE_BATCH);
+        }
+
+        Color totalColor = Color.BLACK;
+        double sum = 0, sumSquares = 0;
+        int count = 0;
+        while (count < budget) {
+            for (int end = Math.min(budget, count + batch); count < end; count++) {
+                Color color = calcConeSample(intersection, base, radius, level, kk, budget);
+                totalColor = totalColor.add(color);
+                double luminance = (color.getRed() + color.getGreen() + color.getBlue()) / 3;
+                sum += luminance;
+                sumSquares += luminance * luminance;
             }
+            // The error of the average, weighted by the share of the rays in the pixel color
+            if (count < budget && count > 1) {
+                double variance = Math.max(0, (sumSquares - sum * sum / count) / (count - 1));
+                if (Math.sqrt(variance / count) * max(kk) < ADAPTIVE_TOLERANCE) break;
+            }
+        }
+
+        return totalColor.scale(kx).reduce(count);
+    }
+
+    /**
+     * Traces a single ray of a glossy reflection or blurry refraction cone.
+     *
+     * @param intersection the intersection
+     * @param base         the ideal reflection or refraction direction
+     * @param radius       the radius of the cone
+     * @param level        the recursion level
+     * @param kk           the path throughput of the rays
+     * @param rays         the amount of rays of the cone
+     * @return the color of the ray, reweighted by the Russian roulette
+     */
+    private Color calcConeSample(Intersection intersection, Vector base, double radius, int level,
+                                 Double3 kk, int rays) {
+        double survival = roulette(kk, rays);
+        if (survival == 0) return Color.BLACK;
+        Vector direction = generateRandomDirection(base, intersection.normal, radius);
+        Ray ray = new Ray(intersection.point, direction, intersection.normal);
+
+        Intersection coneIntersection = findClosestIntersection(ray);
+        if (coneIntersection != null && preprocessIntersection(coneIntersection, ray.getDirection())) {
+            return calcColor(coneIntersection, level - 1, rouletteK(kk, survival)).scale(1 / survival);
         }
+        return scene.background.scale(1 / survival);
+    }
 
-        return totalColor.scale(kT).reduce(BLURRY_RAYS);
+    /**
+     * Calculates the amount of rays of an adaptively sampled cone: proportional
+     * to the path throughput and to the remaining recursion levels, and a single
+     * ray if the throughput is below {@link #ADAPTIVE_MIN_K}.
+     *
+     * @param kk    the path throughput of the rays
+     * @param level the recursion level
+     * @param rays  the amount of rays of the fixed sampling
+     * @return the amount of rays
+     */
+    private int adaptiveRays(Double3 kk, int level, int rays) {
+        double throughput = Math.min(1, max(kk));
+        if (throughput < ADAPTIVE_MIN_K) return 1;
+        int scaled = (int) Math.ceil(rays * throughput * level / MAX_CALC_COLOR_LEVEL);
+        return Math.max(1, Math.min(rays, scaled));
     }
 
-    private Intersection findClosestIntersection(Ray ray) {
-        List<Intersection> intersections = scene.geometries.calculateIntersections(ray);
-        return intersections == null ? null : ray.findClosestIntersection(intersections);
+    /**
+     * The largest component of a coefficient
+     *
+     * @param k the coefficient
+     * @return the largest component
+     */
+    private static double max(Double3 k) {
+        return Math.max(k.d1(), Math.max(k.d2(), k.d3()));
+    }
+
+    /**
+     * The largest component of a color scaled by a coefficient, without creating the scaled color
+     *
+     * @param color the color
+     * @param k     the coefficient
+     * @return the largest component of the scaled color
+     */
+    private static double max(Color color, Double3 k) {
+        return Math.max(color.getRed() * k.d1(), Math.max(color.getGreen() * k.d2(), color.getBlue() * k.d3()));
+    }
+
+    /**
+     * Plays the Russian roulette for a secondary ray.
+     *
+     * @param kk   the path throughput of the ray
+     * @param rays the amount of rays the throughput is divided among
+     * @return the survival probability of the ray, 1 if the roulette is disabled
+     * or the throughput is high enough, or 0 if the ray is terminated
+     */
+    private double roulette(Double3 kk, int rays) {
+        if (rouletteThreshold == 0) return 1;
+        double share = max(kk) / rays;
+        if (share >= rouletteThreshold) return 1;
+        double survival = share / rouletteThreshold;
+        return PixelRandom.get().nextDouble() < survival ? survival : 0;
+    }
+
+    /**
+     * Calculates the throughput passed on to a surviving secondary ray: the path
+     * throughput reweighted by its survival probability, the real weight of the
+     * path - the share of the ray among the rays of its cone is used only by the
+     * roulette test itself, so the throughput cutoffs of the next bounces are the
+     * same as without the roulette.
+     *
+     * @param kk       the path throughput of the ray
+     * @param survival the survival probability of the ray
+     * @return the throughput of the ray
+     */
+    private Double3 rouletteK(Double3 kk, double survival) {
+        return survival == 1 ? kk : kk.reduce(survival);
     }
 
     /**
      * Calculates the transparency factor along the path from the point to the light source.
+     * An area light is sampled on its stratified grid: the probe cells of the
+     * light are tested first, and the rest of the grid only if they disagree (penumbra).
+     * A light with a shadow map is looked up in the map, tracing the shadow ray
+     * only where the map cannot answer.
      *
      * @param intersection the intersection point
+     * @param distance     the distance to the light source
      * @return the transparency coefficient (ktr)
      */
-    private Double3 transparency(Intersection intersection) {
-        Ray lightRay = new Ray(intersection.point, intersection.l.scale(-1), intersection.normal);
-        List<Intersection> intersections =
-                scene.geometries.calculateIntersections(lightRay, intersection.light.getDistance(intersection.point));
+    private Double3 transparency(Intersection intersection, double distance) {
+        if (intersection.light instanceof AreaLight area) {
+            return areaTransparency(intersection, area);
+        }
+        ShadowMap map = shadowMaps.get(intersection.light);
+        if (map != null) {
+            Double3 ktr = map.transparency(intersection.point, intersection.normal);
+            if (ktr != null) return ktr;
+        }
+        return transparency(intersection, intersection.l.scale(-1), distance);
+    }
+
+    /**
+     * Calculates the soft-shadow transparency factor of an area light - the
+     * average over a jittered sample in each cell of its sampling grid.
+     * Fully lit and fully shadowed points, where the samples in the probe cells
+     * of the light (e.g. the four corner cells) agree, cost only these shadow rays.
+     *
+     * @param intersection the intersection point
+     * @param area         the area light
+     * @return the transparency coefficient (ktr)
+     */
+    private Double3 areaTransparency(Intersection intersection, AreaLight area) {
+        int n = area.getSampleGrid();
+        SplittableRandom random = PixelRandom.get();
+        int[][] probes = area.getProbeCells();
+        boolean[] probed = new boolean[n * n];
+        Double3 first = null, sum = Double3.ZERO;
+        boolean agree = true;
+        for (int[] cell : probes) {
+            if (probed[cell[1] * n + cell[0]]) continue; // a small grid repeats cells
+            Double3 ktr = sampleTransparency(intersection, area, cell[0], cell[1], n, random);
+            if (first == null) first = ktr;
+            else agree &= ktr.equals(first);
+            sum = sum.add(ktr);
+            probed[cell[1] * n + cell[0]] = true;
+        }
+        if (agree) return first;
+
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (probed[j * n + i]) continue; // probes are done
+                sum = sum.add(sampleTransparency(intersection, area, i, j, n, random));
+            }
+        }
+        return sum.reduce(n * n);
+    }
+
+    /**
+     * Calculates the transparency factor towards a jittered sample in a cell of
+     * the sampling grid of an area light.
+     *
+     * @param intersection the intersection point
+     * @param area         the area light
+     * @param i            the column of the cell
+     * @param j            the row of the cell
+     * @param n            the amount of cells along each side
+     * @param random       the random generator
+     * @return the transparency coefficient (ktr)
+     */
+    private Double3 sampleTransparency(Intersection intersection, AreaLight area, int i, int j, int n,
+                                       SplittableRandom random) {
+        Point sample = area.getSample((i + random.nextDouble()) / n, (j + random.nextDouble()) / n);
+        double distance = intersection.point.distance(sample);
+        if (isZero(distance)) return Double3.ONE;
+        return transparency(intersection, sample.subtract(intersection.point), distance);
+    }
+
+    /**
+     * Calculates the transparency factor along a shadow ray from the point.
+     *
+     * @param intersection the intersection point
+     * @param toLight      the direction from the point to the light
+     * @param distance     the distance to the light
+     * @return the transparency coefficient (ktr)
+     */
+    private Double3 transparency(Intersection intersection, Vector toLight, double distance) {
+        Ray lightRay = new Ray(intersection.point, toLight, intersection.normal);
+
+        // Any opaque occluder blocks the light - try the last one of the light first
+        Map<LightSource, Geometry> cache = occluders.get();
+        Geometry occluder = cache.get(intersection.light);
+        if (occluder != null && occluder.calculateIntersections(lightRay, distance) != null) {
+            occluderHits.increment();
+            return Double3.ZERO;
+        }
+        occluderMisses.increment();
+
+        List<Intersection> intersections = scene.geometries.calculateIntersections(lightRay, distance);
 
         Double3 ktr = Double3.ONE;
         if (intersections == null) return ktr;
 
         for (Intersection i : intersections) {
-            if (i.material.kT.lowerThan(MIN_CALC_COLOR_K))
+            if (i.material.kT.lowerThan(MIN_CALC_COLOR_K)) {
+                cache.put(intersection.light, i.geometry);
                 return Double3.ZERO;
+            }
             ktr = ktr.product(i.material.kT);
         }
         return ktr;
@@ -312,6 +1015,7 @@ public class SimpleRayTracer extends RayTracerBase {
         v = normal.crossProduct(u);
 
         // Generate random point in unit disk
+        SplittableRandom random = PixelRandom.get();
         double r = Math.sqrt(random.nextDouble()) * radius;
         double theta = random.nextDouble() * 2 * Math.PI;
         double offsetU = r * Math.cos(theta);
@@ -0,0 +1,296 @@
+package renderer;
+
+import primitives.Color;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Streaming image writer class encodes the image into a png file band by band
+ * while it is rendered, instead of holding the whole pixel matrix in memory.
+ * <br/>
+ * The image is divided into horizontal bands of rows. Tiles of pixels are
+ * written into the buffer of their band, and as soon as a band and all the
+ * bands above it are complete, the band is compressed and appended to the file
+ * and its buffer is released. Only the bands that are being rendered are
+ * resident, so the memory does not depend on the image height.<br/>
+ * The file is written under a temporary name and renamed to the image name
+ * when the image is complete, so an incomplete image never leaves a truncated
+ * png file behind.<br/>
+ * Tile writing is thread-safe; tiles must not overlap.
+ */
+final class StreamingImageWriter implements AutoCloseable {
+    /** PNG file signature */
+    private static final byte[] SIGNATURE  = { (byte) 137, 80, 78, 71, 13, 10, 26, 10 };
+    /** Maximum size of an IDAT chunk data */
+    private static final int    CHUNK_SIZE = 1 << 16;
+    /** PNG "Sub" filter type */
+    private static final byte   FILTER_SUB = 1;
+
+    /** Horizontal resolution of the image - number of pixels in row */
+    private final int           nX;
+    /** Vertical resolution of the image - number of pixels in column */
+    private final int           nY;
+    /** Amount of pixel rows in a band */
+    private final int           bandHeight;
+
+    /** Buffers of the bands that are not written yet (packed RGB values) */
+    private final Map<Integer, int[]> bands     = new HashMap<>();
+    /** Amount of pixels still missing in the bands that are not complete yet */
+    private final Map<Integer, Integer> missing = new HashMap<>();
+    /** Next band to be encoded into the file */
+    private int                 nextBand        = 0;
+
+    /** The png file */
+    private final Path          file;
+    /** The temporary file the image is written into until it is complete */
+    private final Path          partialFile;
+    /** The output file */
+    private final FileChannel   channel;
+    /** Compressor of the image data stream */
+    private final Deflater      deflater        = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    /** Filtered scan line (filter type byte followed by RGB bytes) */
+    private final byte[]        line;
+    /** Data of the IDAT chunk being filled */
+    private final byte[]        chunk           = new byte[CHUNK_SIZE];
+    /** Amount of bytes in the IDAT chunk being filled */
+    private int                 chunkLength     = 0;
+    /**
+     * Mutual exclusion object for encoding the complete bands - a single thread
+     * at a time appends to the file
+     */
+    private final Object        mutexEncode     = new Object();
+
+    /**
+     * Opens the png file and writes its header
+     * @param imageName  the name of png file (in the images directory)
+     * @param nX         amount of pixels by width
+     * @param nY         amount of pixels by height
+     * @param bandHeight amount of pixel rows in a band
+     */
+    StreamingImageWriter(String imageName, int nX, int nY, int bandHeight) {
+        this.nX         = nX;
+        this.nY         = nY;
+        this.bandHeight = bandHeight;
+        line            = new byte[1 + 3 * nX];
+        file            = Path.of(ImageWriter.FOLDER_PATH, imageName + ".png");
+        partialFile     = Path.of(ImageWriter.FOLDER_PATH, imageName + ".png.part");
+        try {
+            channel = FileChannel.open(partialFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            write(ByteBuffer.wrap(SIGNATURE));
+            ByteBuffer header = ByteBuffer.allocate(13).putInt(nX).putInt(nY)
+                    // bit depth 8, color type RGB, deflate, adaptive filtering, no interlace
+                    .put((byte) 8).put((byte) 2).put((byte) 0).put((byte) 0).put((byte) 0);
+            writeChunk("IHDR", header.array(), 13);
+        } catch (IOException e) {
+            throw new IllegalStateException("I/O error - may be missing directory " + ImageWriter.FOLDER_PATH, e);
+        }
+    }
+
+    /**
+     * View Plane Y axis resolution
+     * @return the amount of vertical pixels
+     */
+    int nY() { return nY; }
+
+    /**
+     * View Plane X axis resolution
+     * @return the amount of horizontal pixels
+     */
+    int nX() { return nX; }
+
+    /**
+     * The function writeTile writes the colors of a rectangular tile of pixels
+     * into the image. The tile must not cross a band boundary.
+     * @param xIndex X axis index of the upper left pixel of the tile
+     * @param yIndex Y axis index of the upper left pixel of the tile
+     * @param width  amount of pixel columns in the tile
+     * @param height amount of pixel rows in the tile
+     * @param colors final colors of the tile pixels, row by row
+     */
+    void writeTile(int xIndex, int yIndex, int width, int height, Color[] colors) {
+        int band = yIndex / bandHeight;
+        int[] buffer;
+        synchronized (bands) {
+            buffer = bands.get(band);
+            if (buffer == null) {
+                buffer = new int[nX * rowsOf(band)];
+                bands.put(band, buffer);
+                missing.put(band, buffer.length);
+            }
+        }
+        int bandRow = yIndex - band * bandHeight;
+        for (int row = 0, t = 0; row < height; ++row)
+            for (int p = (bandRow + row) * nX + xIndex, end = p + width; p < end; ++p, ++t)
+                buffer[p] = colors[t].getRGB();
+
+        boolean complete;
+        synchronized (bands) {
+            int left = missing.get(band) - width * height;
+            complete = left == 0;
+            if (complete) missing.remove(band);
+            else missing.put(band, left);
+        }
+        if (complete) encodeCompleteBands();
+    }
+
+    /**
+     * Finishes the image - encodes the remaining data, closes the file and
+     * renames it to the image name. All the pixels of the image must have been
+     * written.
+     * @throws IllegalStateException if the image is not complete or on an I/O
+     *                               error (the temporary file is deleted anyway)
+     */
+    @Override
+    public void close() {
+        synchronized (mutexEncode) {
+            boolean complete = nextBand * bandHeight >= nY;
+            try {
+                try (channel) {
+                    if (complete) {
+                        deflater.finish();
+                        while (!deflater.finished()) deflate();
+                        flushChunk();
+                        writeChunk("IEND", chunk, 0);
+                    }
+                } finally {
+                    deflater.end();
+                }
+                if (complete) Files.move(partialFile, file, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                deletePartialFile(e);
+                throw new IllegalStateException("I/O error while closing image file", e);
+            }
+            if (!complete) {
+                IllegalStateException e = new IllegalStateException(
+                        "Image is not complete - missing rows from " + nextBand * bandHeight);
+                deletePartialFile(e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Deletes the temporary file of an image that is not written
+     * @param cause the exception reporting why the image is not written - a
+     *              failure to delete the file is added to it as suppressed
+     */
+    private void deletePartialFile(Exception cause) {
+        try {
+            Files.deleteIfExists(partialFile);
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Amount of pixel rows in a band (the last band may be shorter)
+     * @param band the band index
+     * @return the amount of rows
+     */
+    private int rowsOf(int band) {
+        return Math.min(bandHeight, nY - band * bandHeight);
+    }
+
+    /** Encodes all the complete bands that follow the bands written so far */
+    private void encodeCompleteBands() {
+        synchronized (mutexEncode) {
+            while (true) {
+                int[] buffer;
+                synchronized (bands) {
+                    if (nextBand * bandHeight >= nY || missing.containsKey(nextBand) || !bands.containsKey(nextBand))
+                        return;
+                    buffer = bands.remove(nextBand);
+                }
+                try {
+                    encodeBand(buffer, rowsOf(nextBand));
+                } catch (IOException e) {
+                    throw new IllegalStateException("I/O error while writing image file", e);
+                }
+                ++nextBand;
+            }
+        }
+    }
+
+    /**
+     * Filters and compresses the rows of a band into the image data stream
+     * @param buffer packed RGB values of the band
+     * @param rows   amount of rows in the band
+     * @throws IOException on file write failure
+     */
+    private void encodeBand(int[] buffer, int rows) throws IOException {
+        for (int row = 0; row < rows; ++row) {
+            line[0] = FILTER_SUB;
+            int prevR = 0, prevG = 0, prevB = 0;
+            for (int x = 0, p = row * nX, b = 1; x < nX; ++x, ++p, b += 3) {
+                int rgb = buffer[p];
+                int r = rgb >> 16 & 0xFF, g = rgb >> 8 & 0xFF, bl = rgb & 0xFF;
+                line[b]     = (byte) (r - prevR);
+                line[b + 1] = (byte) (g - prevG);
+                line[b + 2] = (byte) (bl - prevB);
+                prevR = r;
+                prevG = g;
+                prevB = bl;
+            }
+            deflater.setInput(line);
+            while (!deflater.needsInput()) deflate();
+        }
+    }
+
+    /**
+     * Moves the compressed data available from the compressor into IDAT chunks
+     * @throws IOException on file write failure
+     */
+    private void deflate() throws IOException {
+        chunkLength += deflater.deflate(chunk, chunkLength, CHUNK_SIZE - chunkLength);
+        if (chunkLength == CHUNK_SIZE) flushChunk();
+    }
+
+    /**
+     * Writes the filled part of the IDAT chunk buffer as a chunk
+     * @throws IOException on file write failure
+     */
+    private void flushChunk() throws IOException {
+        if (chunkLength == 0) return;
+        writeChunk("IDAT", chunk, chunkLength);
+        chunkLength = 0;
+    }
+
+    /**
+     * Writes a png chunk
+     * @param type   chunk type name
+     * @param data   chunk data buffer
+     * @param length amount of data bytes
+     * @throws IOException on file write failure
+     */
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        ByteBuffer buffer = ByteBuffer.allocate(12 + length);
+        buffer.putInt(length).put(typeBytes).put(data, 0, length).putInt((int) crc.getValue());
+        buffer.flip();
+        write(buffer);
+    }
+
+    /**
+     * Writes a whole buffer into the file
+     * @param buffer the buffer
+     * @throws IOException on file write failure
+     */
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+}
@@ -0,0 +1,53 @@
+package renderer;
+
+/**
+ * Tone mapping operators converting the full range colors of the rendered
+ * image into 8-bit color components when the image is exported.<br/>
+ * Color components are in the range of 0 to 255 for a display white; the
+ * Reinhard and ACES operators compress the values above the white level
+ * instead of clipping them.
+ */
+public enum ToneMapping {
+    /** Components above 255 are clamped to 255 (the default behavior) */
+    CLAMP {
+        @Override
+        double map(double c) { return Math.min(c, WHITE); }
+    },
+    /** Reinhard operator: x / (1 + x) */
+    REINHARD {
+        @Override
+        double map(double c) {
+            double x = c / WHITE;
+            return WHITE * x / (1 + x);
+        }
+    },
+    /** Filmic curve approximating the ACES reference rendering transform */
+    ACES {
+        @Override
+        double map(double c) {
+            double x = c / WHITE;
+            return WHITE * Math.min(1d, x * (2.51 * x + 0.03) / (x * (2.43 * x + 0.59) + 0.14));
+        }
+    };
+
+    /** Color component value of a display white */
+    private static final double WHITE = 255d;
+
+    /**
+     * Maps a single full range color component
+     * @param c the component value (non-negative)
+     * @return the mapped value in the range of 0 to 255
+     */
+    abstract double map(double c);
+
+    /**
+     * Maps full range color components into a packed 24-bit RGB value
+     * @param r red component
+     * @param g green component
+     * @param b blue component
+     * @return the packed RGB value (0xRRGGBB)
+     */
+    int toRGB(double r, double g, double b) {
+        return (int) map(r) << 16 | (int) map(g) << 8 | (int) map(b);
+    }
+}
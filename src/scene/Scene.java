@@ -75,6 +75,16 @@ public class Scene {
         return this;
     }
 
+    /**
+     * Removes a geometry object from the scene.
+     * @param geometry The geometry to remove.
+     * @return The current scene (for chaining).
+     */
+    public Scene removeGeometry(Geometry geometry) {
+        geometries.remove(geometry);
+        return this;
+    }
+
     /**
      * Loads and parses geometries and lighting from an XML file and adds them to the scene.
      * Expected tags: background-color, ambient-light, geometries, triangle, plane, sphere.
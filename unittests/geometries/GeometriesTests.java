@@ -76,4 +76,98 @@ class GeometriesTest {
                 "all geometries are intersected"
         );
     }
+
+    /**
+     * Test method for {@link Geometries#freeze()}.
+     * <p>
+     * This method includes:
+     * <ul>
+     *     <li><b>TC11:</b> A frozen collection finds the same intersections.</li>
+     *     <li><b>TC12:</b> A geometry added after freezing is intersected without unfreezing.</li>
+     *     <li><b>TC13:</b> Freezing again keeps the added geometry.</li>
+     * </ul>
+     */
+    @Test
+    void testFreeze() {
+        Ray ray = new Ray(new Point(0.6, 0.6, -2), new Vector(0, 0, 1));
+        geometries.freeze();
+        assertTrue(geometries.isFrozen(), "collection must be frozen");
+
+        // TC11: frozen collection
+        assertEquals(4, geometries.findIntersections(ray).size(), "frozen collection intersections");
+
+        // TC12: geometry added after freezing
+        geometries.add(new Sphere(new Point(0.6, 0.6, 5), 0.5));
+        assertTrue(geometries.isFrozen(), "collection must stay frozen");
+        assertEquals(6, geometries.findIntersections(ray).size(), "added geometry intersections");
+
+        // TC13: freezing again
+        geometries.freeze();
+        assertEquals(6, geometries.findIntersections(ray).size(), "refrozen collection intersections");
+    }
+
+    /**
+     * Test method for {@link Geometries#add(geometries.Intersectable...)} and
+     * {@link Geometries#remove(geometries.Intersectable...)} of a frozen collection.
+     * <p>
+     * This method includes:
+     * <ul>
+     *     <li><b>TC21:</b> A geometry of the main BVH is removed.</li>
+     *     <li><b>TC22:</b> Geometries are added one by one up to the merge threshold.</li>
+     *     <li><b>TC23:</b> The delta is merged in the background once it reaches the threshold.</li>
+     *     <li><b>TC24:</b> Added and merged geometries are removed after the merge.</li>
+     *     <li><b>TC25:</b> The delta is merged by a rebuild.</li>
+     * </ul>
+     */
+    @Test
+    void testEditFrozen() throws InterruptedException {
+        Ray ray = new Ray(new Point(0.6, 0.6, -2), new Vector(0, 0, 1));
+        Triangle triangle = new Triangle(new Point(1, 0, 0), new Point(1, 1, 0), new Point(0, 1, 0));
+        Geometries edited = new Geometries(new Sphere(new Point(0, 0, 1), 1), triangle,
+                new Plane(new Point(0, 0, 3), new Vector(0, 0, 1)));
+        edited.freeze();
+
+        // TC21: removing a geometry of the main BVH
+        assertTrue(edited.remove(triangle), "triangle must be removed");
+        assertFalse(edited.remove(triangle), "triangle must not be removed twice");
+        assertEquals(3, edited.findIntersections(ray).size(), "intersections after removal");
+
+        // TC22: adding geometries up to the merge threshold
+        int count = Geometries.MERGE_THRESHOLD + 8;
+        Sphere[] spheres = new Sphere[count];
+        for (int i = 0; i < Geometries.MERGE_THRESHOLD - 2; i++) {
+            spheres[i] = new Sphere(new Point(0.6, 0.6, 5 + 2 * i), 0.5);
+            edited.add(spheres[i]);
+            assertEquals(5 + 2 * i, edited.findIntersections(ray).size(), "intersections after adding " + i);
+        }
+        assertEquals(Geometries.MERGE_THRESHOLD - 1, edited.pendingChanges(), "changes before the merge");
+
+        // TC23: the merged delta
+        edited.awaitMerge();
+        assertEquals(Geometries.MERGE_THRESHOLD - 1, edited.pendingChanges(), "no merge below the threshold");
+        int i = Geometries.MERGE_THRESHOLD - 2;
+        spheres[i] = new Sphere(new Point(0.6, 0.6, 5 + 2 * i), 0.5);
+        edited.add(spheres[i]);
+        edited.awaitMerge();
+        assertEquals(0, edited.pendingChanges(), "delta must be empty after the merge");
+        assertEquals(5 + 2 * i, edited.findIntersections(ray).size(), "intersections after the merge");
+
+        // TC24: adding and removing geometries after the merge
+        for (i = Geometries.MERGE_THRESHOLD - 1; i < count; i++) {
+            spheres[i] = new Sphere(new Point(0.6, 0.6, 5 + 2 * i), 0.5);
+            edited.add(spheres[i]);
+            assertEquals(5 + 2 * i, edited.findIntersections(ray).size(), "intersections after adding " + i);
+        }
+        assertTrue(edited.remove(spheres[count - 1]), "sphere must be removed");
+        assertTrue(edited.remove(spheres[0]), "merged sphere must be removed");
+        int expected = 3 + 2 * (count - 2);
+        assertEquals(expected, edited.findIntersections(ray).size(), "intersections after removing spheres");
+        assertEquals(count - Geometries.MERGE_THRESHOLD + 1, edited.pendingChanges(), "changes after the merge");
+
+        // TC25: the rebuilt BVH
+        edited.rebuildBVH();
+        assertEquals(0, edited.pendingChanges(), "delta must be empty after the rebuild");
+        assertEquals(expected, edited.findIntersections(ray).size(), "intersections after the rebuild");
+        assertTrue(edited.isFrozen(), "collection must stay frozen");
+    }
 }
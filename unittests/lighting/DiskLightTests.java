@@ -0,0 +1,78 @@
+package unittests.lighting;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import lighting.DiskLight;
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+
+/**
+ * Unit tests for {@link DiskLight#getSample(double, double)} method.
+ * <p>
+ * The samples of a tilted disk must be within the radius from its center and
+ * lie in the plane of the disk; the border of the unit square maps onto the rim.
+ */
+class DiskLightTests {
+
+    /** Delta for the comparison of distances */
+    private static final double DELTA = 1e-9;
+    /** Amount of steps of the unit square coordinates */
+    private static final int STEPS = 20;
+
+    /** The center of the disk */
+    private final Point center = new Point(1, 2, 3);
+    /** The normal of the disk */
+    private final Vector normal = new Vector(1, 1, 1).normalize();
+    /** The radius of the disk */
+    private final double radius = 2;
+    /** The light */
+    private final DiskLight light = new DiskLight(new Color(100, 100, 100), center, normal, radius);
+
+    /**
+     * Test method for {@link DiskLight#getSample(double, double)}.
+     * <p>
+     * This method includes:
+     * <ul>
+     *     <li><b>TC01:</b> Samples over the unit square - inside the disk, in its plane.</li>
+     *     <li><b>TC02:</b> Samples of the four quadrants of the unit square - in four different quadrants of the disk.</li>
+     *     <li><b>TC11:</b> The center of the unit square - the center of the disk.</li>
+     *     <li><b>TC12:</b> The border of the unit square - on the rim of the disk.</li>
+     * </ul>
+     */
+    @Test
+    void testGetSample() {
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Samples over the unit square
+        for (int i = 0; i <= STEPS; i++)
+            for (int j = 0; j <= STEPS; j++) {
+                Point sample = light.getSample((double) i / STEPS, (double) j / STEPS);
+                assertTrue(sample.distance(center) <= radius + DELTA, "Sample " + sample + " is outside the disk");
+                double height = (sample.getX() - center.getX()) * normal.getX()
+                        + (sample.getY() - center.getY()) * normal.getY()
+                        + (sample.getZ() - center.getZ()) * normal.getZ();
+                assertEquals(0, height, DELTA, "Sample " + sample + " is off the disk plane");
+            }
+
+        // TC02: The quadrants of the unit square - opposite quadrants map to opposite directions
+        Vector first = light.getSample(0.25, 0.25).subtract(center);
+        Vector second = light.getSample(0.75, 0.25).subtract(center);
+        assertEquals(-1, first.normalize().dotProduct(light.getSample(0.75, 0.75).subtract(center).normalize()),
+                DELTA, "Opposite quadrants must map to opposite directions");
+        assertEquals(0, first.dotProduct(second), DELTA, "Adjacent quadrants must map to orthogonal directions");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: The center
+        assertEquals(center, light.getSample(0.5, 0.5), "Wrong sample of the center");
+
+        // TC12: The border
+        for (int i = 0; i <= STEPS; i++) {
+            double s = (double) i / STEPS;
+            for (Point sample : new Point[] { light.getSample(s, 0), light.getSample(s, 1),
+                    light.getSample(0, s), light.getSample(1, s) })
+                assertEquals(radius, sample.distance(center), DELTA, "Sample " + sample + " is not on the rim");
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package unittests.lighting;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import lighting.DirectionalLight;
+import lighting.LightGrid;
+import lighting.LightSource;
+import lighting.PointLight;
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+
+/**
+ * Unit tests for {@link LightGrid#getLights(Point)} method.
+ * <p>
+ * Two point lights of influence radius 10 at (0,0,0) and (40,0,0) make a grid
+ * from (-10,-10,-10) to (50,10,10) of 6x2x2 cells of size 10; a directional light
+ * reaches every point, and a light weaker than the cutoff reaches none.
+ */
+class LightGridTests {
+
+    /** Light of influence radius 10 around the origin */
+    private final LightSource near = new PointLight(new Color(11, 11, 11), Point.ZERO).setKl(1);
+    /** Light of influence radius 10 around (40,0,0) */
+    private final LightSource far = new PointLight(new Color(11, 11, 11), new Point(40, 0, 0)).setKl(1);
+    /** Light weaker than the cutoff */
+    private final LightSource weak = new PointLight(new Color(0.5, 0.5, 0.5), new Point(20, 0, 0)).setKl(1);
+    /** Light that does not fade */
+    private final LightSource sun = new DirectionalLight(new Color(50, 50, 50), new Vector(0, 0, -1));
+
+    /** The grid of the lights with cutoff 1 */
+    private final LightGrid grid = new LightGrid(List.of(near, weak, far, sun), 1);
+
+    /**
+     * Test method for {@link LightGrid#getLights(Point)}.
+     * <p>
+     * This method includes:
+     * <ul>
+     *     <li><b>TC01:</b> A point inside a cell of one light.</li>
+     *     <li><b>TC02:</b> A point inside a cell of no light.</li>
+     *     <li><b>TC03:</b> A point outside the grid.</li>
+     *     <li><b>TC11:</b> Points on the cell borders - the lights of the upper cell.</li>
+     *     <li><b>TC12:</b> Points on the grid borders - inside the grid.</li>
+     *     <li><b>TC13:</b> Points just beyond the grid borders - outside the grid.</li>
+     *     <li><b>TC14:</b> A grid without lights that fade.</li>
+     * </ul>
+     */
+    @Test
+    void testGetLights() {
+        List<LightSource> nearLights = List.of(near, sun);
+        List<LightSource> farLights = List.of(far, sun);
+        List<LightSource> unbounded = List.of(sun);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: A cell of one light
+        assertEquals(nearLights, grid.getLights(new Point(3, 4, 5)), "Wrong lights near the first light");
+        assertEquals(farLights, grid.getLights(new Point(42, -4, -5)), "Wrong lights near the second light");
+
+        // TC02: A cell between the lights - the weak light is dropped
+        assertEquals(unbounded, grid.getLights(new Point(25, 0, 0)), "Wrong lights between the lights");
+
+        // TC03: Outside the grid
+        assertEquals(unbounded, grid.getLights(new Point(0, 30, 0)), "Wrong lights outside the grid");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Cell borders
+        assertEquals(nearLights, grid.getLights(new Point(19.99, 0, 0)), "Wrong lights below the cell border");
+        assertEquals(unbounded, grid.getLights(new Point(20, 0, 0)), "Wrong lights on the cell border");
+        assertEquals(farLights, grid.getLights(new Point(30, 0, 0)), "Wrong lights on the cell border");
+        assertEquals(nearLights, grid.getLights(new Point(10, 0, 0)),
+                "Wrong lights on the cell border of the influence sphere");
+
+        // TC12: Grid borders
+        assertEquals(nearLights, grid.getLights(new Point(-10, -10, -10)), "Wrong lights on the lower grid corner");
+        assertEquals(farLights, grid.getLights(new Point(50, 10, 10)), "Wrong lights on the upper grid corner");
+
+        // TC13: Beyond the grid borders
+        assertEquals(unbounded, grid.getLights(new Point(-10.01, 0, 0)), "Wrong lights below the grid");
+        assertEquals(unbounded, grid.getLights(new Point(50.01, 0, 0)), "Wrong lights above the grid");
+        assertEquals(unbounded, grid.getLights(new Point(0, 0, 10.01)), "Wrong lights above the grid");
+
+        // TC14: No lights that fade
+        assertEquals(unbounded, new LightGrid(List.of(weak, sun), 1).getLights(Point.ZERO),
+                "Wrong lights of a grid without lights that fade");
+    }
+}
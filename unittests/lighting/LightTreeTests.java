@@ -0,0 +1,89 @@
+package unittests.lighting;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import lighting.LightSource;
+import lighting.LightTree;
+import lighting.PointLight;
+import lighting.SpotLight;
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+
+/**
+ * Unit tests for {@link LightTree#select(Point, double)} method.
+ * <p>
+ * The probabilities of choosing the lights that may reach a point must sum to 1.
+ */
+class LightTreeTests {
+
+    /** Amount of random numbers swept by the tests */
+    private static final int RANDOMS = 10000;
+    /** Delta for the comparison of probabilities */
+    private static final double DELTA = 1e-9;
+
+    /**
+     * Sums the probabilities of the lights chosen for a point over a sweep of
+     * the random numbers, checking that every light is always chosen with the
+     * same finite probability
+     *
+     * @param tree  the light tree
+     * @param point the point
+     * @return the sum of the probabilities of the chosen lights, 0 if no light is chosen
+     */
+    private static double probabilitySum(LightTree tree, Point point) {
+        Map<LightSource, Double> probabilities = new IdentityHashMap<>();
+        for (int i = 0; i < RANDOMS; i++) {
+            LightTree.Selection selection = tree.select(point, (i + 0.5) / RANDOMS);
+            if (selection == null) continue;
+            assertTrue(selection.probability() > 0 && selection.probability() <= 1,
+                    "Wrong probability " + selection.probability() + " at " + point);
+            Double previous = probabilities.put(selection.light(), selection.probability());
+            if (previous != null)
+                assertEquals(previous, selection.probability(), DELTA, "Probability of a light must not change");
+        }
+        return probabilities.values().stream().mapToDouble(Double::doubleValue).sum();
+    }
+
+    /**
+     * Test method for {@link LightTree#select(Point, double)}.
+     * <p>
+     * This method includes:
+     * <ul>
+     *     <li><b>TC01:</b> Point lights and spotlights - the probabilities sum to 1.</li>
+     *     <li><b>TC11:</b> Spotlights with opposed directions in one node - the probabilities sum to 1.</li>
+     * </ul>
+     */
+    @Test
+    void testSelect() {
+        Color intensity = new Color(100, 100, 100);
+        List<Point> points = List.of(new Point(-20, 5, 0), new Point(30, 5, 0), new Point(50, -20, 10),
+                new Point(-30, -5, 10));
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Point lights and spotlights
+        LightTree tree = new LightTree(List.of(
+                new SpotLight(intensity, new Point(0, 0, 0), new Vector(-1, 0, 0)),
+                new SpotLight(intensity, new Point(1, 0, 0), new Vector(0, 1, 0)),
+                new PointLight(intensity, new Point(100, 0, 0)),
+                new PointLight(intensity, new Point(101, 0, 0))));
+        for (Point point : points)
+            assertEquals(1, probabilitySum(tree, point), DELTA, "Wrong probability sum at " + point);
+
+        // =============== Boundary Values Tests ==================
+        // TC11: Opposed spotlights
+        LightTree opposed = new LightTree(List.of(
+                new SpotLight(intensity, new Point(0, 0, 0), new Vector(-1, 0, 0)),
+                new SpotLight(intensity, new Point(1, 0, 0), new Vector(1, 0, 0)),
+                new PointLight(intensity, new Point(100, 0, 0)),
+                new PointLight(intensity, new Point(101, 0, 0))));
+        for (Point point : points)
+            assertEquals(1, probabilitySum(opposed, point), DELTA, "Wrong probability sum at " + point);
+    }
+}
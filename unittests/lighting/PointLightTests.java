@@ -0,0 +1,87 @@
+package unittests.lighting;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import lighting.PointLight;
+import primitives.Color;
+import primitives.Point;
+
+/**
+ * Unit tests for {@link PointLight#getInfluenceRadius(double)} method.
+ * <p>
+ * The intensity of the light at the influence radius must be exactly the cutoff.
+ */
+class PointLightTests {
+
+    /** Delta for the comparison of distances */
+    private static final double DELTA = 1e-9;
+
+    /**
+     * Calculates the intensity of a point light at a distance
+     *
+     * @param intensity the intensity of the light
+     * @param kC        the constant attenuation
+     * @param kL        the linear attenuation
+     * @param kQ        the quadratic attenuation
+     * @param distance  the distance
+     * @return the attenuated intensity
+     */
+    private static double attenuated(double intensity, double kC, double kL, double kQ, double distance) {
+        return intensity / (kC + kL * distance + kQ * distance * distance);
+    }
+
+    /**
+     * Test method for {@link PointLight#getInfluenceRadius(double)}.
+     * <p>
+     * This method includes:
+     * <ul>
+     *     <li><b>TC01:</b> Quadratic attenuation - the intensity at the radius is the cutoff.</li>
+     *     <li><b>TC02:</b> Linear attenuation only - the intensity at the radius is the cutoff.</li>
+     *     <li><b>TC03:</b> The strongest color component decides the radius.</li>
+     *     <li><b>TC11:</b> No attenuation by distance - infinite radius.</li>
+     *     <li><b>TC12:</b> A light weaker than the cutoff - zero radius.</li>
+     *     <li><b>TC13:</b> A light exactly as strong as the cutoff - zero radius.</li>
+     *     <li><b>TC14:</b> Zero cutoff - infinite radius.</li>
+     * </ul>
+     */
+    @Test
+    void testGetInfluenceRadius() {
+        Point position = new Point(1, 2, 3);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Quadratic and linear attenuation
+        double radius = new PointLight(new Color(100, 100, 100), position).setKc(2).setKl(0.1).setKq(0.01)
+                .getInfluenceRadius(1);
+        assertEquals(1, attenuated(100, 2, 0.1, 0.01, radius), DELTA, "Wrong intensity at the quadratic radius");
+
+        // TC02: Linear attenuation only
+        assertEquals(990, new PointLight(new Color(100, 100, 100), position).setKl(0.1).getInfluenceRadius(1),
+                DELTA, "Wrong linear radius");
+
+        // TC03: The strongest color component
+        assertEquals(new PointLight(new Color(100, 100, 100), position).setKq(0.01).getInfluenceRadius(1),
+                new PointLight(new Color(10, 100, 30), position).setKq(0.01).getInfluenceRadius(1),
+                DELTA, "Radius must be decided by the strongest color component");
+
+        // =============== Boundary Values Tests ==================
+        // TC11: No attenuation by distance
+        assertEquals(Double.POSITIVE_INFINITY,
+                new PointLight(new Color(100, 100, 100), position).getInfluenceRadius(1),
+                "Light without attenuation must reach everywhere");
+
+        // TC12: A light weaker than the cutoff
+        assertEquals(0, new PointLight(new Color(0.5, 0.5, 0.5), position).setKl(0.1).getInfluenceRadius(1),
+                "Light weaker than the cutoff must reach nowhere");
+
+        // TC13: A light exactly as strong as the cutoff
+        assertEquals(0, new PointLight(new Color(1, 1, 1), position).setKq(0.1).getInfluenceRadius(1),
+                "Light as strong as the cutoff must reach nowhere");
+
+        // TC14: Zero cutoff
+        assertEquals(Double.POSITIVE_INFINITY,
+                new PointLight(new Color(100, 100, 100), position).setKq(0.1).getInfluenceRadius(0),
+                "Zero cutoff must not limit the light");
+    }
+}
@@ -0,0 +1,84 @@
+package unittests.lighting;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import lighting.RectangleLight;
+import primitives.Color;
+import primitives.Point;
+import primitives.Vector;
+
+/**
+ * Unit tests for {@link RectangleLight#getSample(double, double)} method.
+ * <p>
+ * The samples of a tilted rectangle are expressed in the coordinates of its
+ * edges: each coordinate must be within half an edge from the center, and the
+ * samples must lie in the plane of the rectangle.
+ */
+class RectangleLightTests {
+
+    /** Delta for the comparison of coordinates */
+    private static final double DELTA = 1e-9;
+    /** Amount of steps of the unit square coordinates */
+    private static final int STEPS = 20;
+
+    /** The center of the rectangle */
+    private final Point center = new Point(1, 2, 3);
+    /** The first edge of the rectangle */
+    private final Vector width = new Vector(3, 0, 4);
+    /** The second edge of the rectangle */
+    private final Vector height = new Vector(0, 2, 0);
+    /** The light */
+    private final RectangleLight light = new RectangleLight(new Color(100, 100, 100), center, width, height);
+
+    /**
+     * Calculates the coordinate of a point along a vector from the center, in
+     * units of the vector length
+     *
+     * @param point  the point
+     * @param vector the vector
+     * @return the coordinate
+     */
+    private double coordinate(Point point, Vector vector) {
+        return ((point.getX() - center.getX()) * vector.getX()
+                + (point.getY() - center.getY()) * vector.getY()
+                + (point.getZ() - center.getZ()) * vector.getZ()) / vector.lengthSquared();
+    }
+
+    /**
+     * Test method for {@link RectangleLight#getSample(double, double)}.
+     * <p>
+     * This method includes:
+     * <ul>
+     *     <li><b>TC01:</b> Samples over the unit square - inside the rectangle, in its plane.</li>
+     *     <li><b>TC11:</b> The center of the unit square - the center of the rectangle.</li>
+     *     <li><b>TC12:</b> The corners of the unit square - the corners of the rectangle.</li>
+     * </ul>
+     */
+    @Test
+    void testGetSample() {
+        Vector normal = width.crossProduct(height);
+
+        // ============ Equivalence Partitions Tests ==============
+        // TC01: Samples over the unit square
+        for (int i = 0; i <= STEPS; i++)
+            for (int j = 0; j <= STEPS; j++) {
+                Point sample = light.getSample((double) i / STEPS, (double) j / STEPS);
+                double s = coordinate(sample, width), t = coordinate(sample, height);
+                assertTrue(Math.abs(s) <= 0.5 + DELTA && Math.abs(t) <= 0.5 + DELTA,
+                        "Sample " + sample + " is outside the rectangle");
+                assertEquals((double) i / STEPS - 0.5, s, DELTA, "Wrong sample coordinate along the width");
+                assertEquals((double) j / STEPS - 0.5, t, DELTA, "Wrong sample coordinate along the height");
+                assertEquals(0, coordinate(sample, normal), DELTA, "Sample " + sample + " is off the rectangle plane");
+            }
+
+        // =============== Boundary Values Tests ==================
+        // TC11: The center
+        assertEquals(center, light.getSample(0.5, 0.5), "Wrong sample of the center");
+
+        // TC12: The corners
+        assertEquals(new Point(-0.5, 1, 1), light.getSample(0, 0), "Wrong sample of the first corner");
+        assertEquals(new Point(2.5, 3, 5), light.getSample(1, 1), "Wrong sample of the opposite corner");
+    }
+}
@@ -0,0 +1,74 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.Polygon;
+import lighting.AmbientLight;
+import lighting.PointLight;
+import primitives.*;
+import scene.Scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for the coherent tracing of pixel beams by {@link Camera}.
+ * The coarse rays of the beams are checked on square and non-square grids,
+ * and a scene of a single polygon is rendered with and without coherence.
+ */
+class BeamCoherenceTest {
+    /** Default constructor to satisfy JavaDoc generator */
+    BeamCoherenceTest() { /* to satisfy JavaDoc generator */ }
+
+    /**
+     * Test method for {@link RayGrid#coarsePoints()}.
+     */
+    @Test
+    void testCoarsePoints() {
+        // The corners of a 17x17 grid and its center
+        assertArrayEquals(new int[] { 0, 16, 144, 272, 288 }, new RayGrid(289).coarsePoints(),
+                "coarse points of a square grid");
+        // A 4x4 grid filled up to its third row: the ends of the first and the last rows and the middle point
+        assertArrayEquals(new int[] { 0, 3, 5, 8, 9 }, new RayGrid(10).coarsePoints(),
+                "coarse points of a non-square grid");
+        // A single row
+        assertArrayEquals(new int[] { 0, 1 }, new RayGrid(2).coarsePoints(), "coarse points of a single row");
+        // A single ray is the whole beam
+        assertArrayEquals(new int[] { 0 }, new RayGrid(1).coarsePoints(), "coarse points of a single ray");
+    }
+
+    /**
+     * Test method for {@link Camera.Builder#setBeamCoherence(boolean)}: a single
+     * large polygon, partly outside the view, is rendered identically with and
+     * without coherence - the beams inside the polygon are coherent, and the
+     * beams crossing its edge are not.
+     */
+    @Test
+    void testSinglePolygon() {
+        Scene scene = new Scene("Polygon").setBackground(new Color(20, 40, 60))
+                .setAmbientLight(new AmbientLight(new Color(30, 30, 30)));
+        scene.geometries.add(new Polygon(new Point(-200, -200, -50), new Point(200, -200, -50),
+                new Point(200, 20, 0), new Point(-200, 20, 0))
+                .setEmission(new Color(60, 30, 20))
+                .setMaterial(new Material().setKD(0.6).setKS(0.4).setShininess(30)));
+        scene.lights.add(new PointLight(new Color(400, 400, 300), new Point(0, 0, 100)).setKl(1E-3));
+        Camera.Builder builder = Camera.getBuilder() //
+                .setLocation(new Point(0, 0, 500)).setDirection(Point.ZERO, Vector.AXIS_Y) //
+                .setVpDistance(500).setVpSize(150, 200) //
+                .setResolution(40, 30) //
+                .setRayTracer(scene, RayTracerType.SIMPLE);
+
+        ImageWriter expected = builder.build().renderImage().getImageWriter();
+        ImageWriter coherent = builder.setBeamCoherence(true).build().renderImage().getImageWriter();
+        boolean background = false;
+        for (int y = 0; y < expected.nY(); y++)
+            for (int x = 0; x < expected.nX(); x++) {
+                Color color = expected.readPixel(x, y), actual = coherent.readPixel(x, y);
+                String message = "pixel (" + x + "," + y + ") must not change with coherence";
+                assertEquals(color.getRed(), actual.getRed(), message);
+                assertEquals(color.getGreen(), actual.getGreen(), message);
+                assertEquals(color.getBlue(), actual.getBlue(), message);
+                background |= color.getRGB() == scene.background.getRGB();
+            }
+        assertTrue(background, "the polygon must not cover the whole view");
+    }
+}
@@ -0,0 +1,86 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.Sphere;
+import lighting.AmbientLight;
+import lighting.PointLight;
+import primitives.*;
+import scene.Scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for {@link BudgetedRenderer} class.
+ * A scene that takes longer than the time budget to render with the full beams
+ * is rendered within the budget, and the image is checked to be complete.
+ */
+class BudgetedRendererTest {
+    /** Default constructor to satisfy JavaDoc generator */
+    BudgetedRendererTest() { /* to satisfy JavaDoc generator */ }
+
+    /** Color of the pixels that are not rendered */
+    private static final int UNRENDERED = 0;
+    /** Amount of rays in the beam of a pixel */
+    private static final int BEAM_SIZE = 289;
+
+    /** The test scene */
+    private final Scene scene = new Scene("Budgeted").setBackground(new Color(20, 40, 60))
+            .setAmbientLight(new AmbientLight(new Color(30, 30, 30)));
+
+    /** Camera builder of the test scene */
+    private final Camera.Builder builder = Camera.getBuilder() //
+            .setLocation(new Point(0, 0, 200)).setDirection(Point.ZERO, Vector.AXIS_Y) //
+            .setVpDistance(100).setVpSize(120, 160) //
+            .setResolution(160, 120);
+
+    /**
+     * Test method for {@link Camera.Builder#setTimeBudget(double, double)}.
+     */
+    @Test
+    void testBudgetStops() {
+        for (int k = 0; k < 20; k++)
+            scene.geometries.add(new Sphere(new Point(k * 6 - 60, k % 5 * 10 - 20, -k * 3), 12d)
+                    .setEmission(new Color(60 + k * 5, 20, 20))
+                    .setMaterial(new Material().setKD(0.5).setKS(0.5).setShininess(20)));
+        scene.lights.add(new PointLight(new Color(300, 300, 300), new Point(-100, 100, 100)));
+        builder.setRayTracer(scene, RayTracerType.SIMPLE);
+
+        Camera camera = builder.setTimeBudget(0.5, 0).build();
+        camera.renderImage();
+
+        // the full beams are 289 rays for each of the 19200 pixels - far longer than the budget
+        BudgetedRenderer renderer = camera.getBudgetedRenderer();
+        assertEquals(BudgetedRenderer.Stop.DEADLINE, renderer.stop(), "rendering must stop at the budget");
+        assertTrue(renderer.rounds() >= 1, "the initial batch must be rendered");
+        ImageWriter image = camera.getImageWriter();
+        long samples = 0;
+        for (int i = 0; i < 120; i++)
+            for (int j = 0; j < 160; j++) {
+                assertNotEquals(UNRENDERED, image.readPixel(j, i).getRGB(), "pixel " + j + "," + i + " not rendered");
+                int count = renderer.samples(j, i);
+                assertTrue(count >= BudgetedRenderer.INITIAL_SAMPLES && count <= BEAM_SIZE,
+                        "pixel " + j + "," + i + " traced " + count + " samples");
+                samples += count;
+            }
+        assertTrue(samples < (long) BEAM_SIZE * 120 * 160, "rendering must stop before tracing the whole beams");
+    }
+
+    /**
+     * Test method for {@link Camera.Builder#setTimeBudget(double, double)} with a
+     * convergence tolerance: a flat image converges after the initial samples.
+     */
+    @Test
+    void testConvergedStops() {
+        scene.setAmbientLight(new AmbientLight(Color.BLACK));
+        Camera camera = builder.setRayTracer(scene, RayTracerType.SIMPLE).setTimeBudget(60, 1).build();
+        camera.renderImage();
+        BudgetedRenderer renderer = camera.getBudgetedRenderer();
+        assertEquals(BudgetedRenderer.Stop.CONVERGED, renderer.stop(), "converged image must not use the whole budget");
+        assertEquals(1, renderer.rounds(), "a flat image must converge after the initial batch");
+        assertEquals(BudgetedRenderer.INITIAL_SAMPLES, renderer.samples(80, 60),
+                "a converged pixel must get no more samples");
+        assertEquals(new Color(20, 40, 60).getRGB(), camera.getImageWriter().readPixel(80, 60).getRGB(),
+                "wrong background pixel");
+    }
+}
@@ -0,0 +1,119 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+import primitives.Color;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for {@link CheckpointWriter} class.
+ * A part of the tiles of an image is checkpointed, and the state read back from
+ * the checkpoint file is compared with the written tiles.
+ */
+class CheckpointWriterTest {
+    /** Default constructor to satisfy JavaDoc generator */
+    CheckpointWriterTest() { /* to satisfy JavaDoc generator */ }
+
+    /** Image width */
+    private static final int NX        = 37;
+    /** Image height */
+    private static final int NY        = 21;
+    /** Tile size */
+    private static final int TILE_SIZE = 8;
+
+    /**
+     * The color of a pixel of a saved tile
+     * @param x    column
+     * @param y    row
+     * @param tile tile number
+     * @return the color
+     */
+    private static Color color(int x, int y, int tile) {
+        return new Color(x + 0.25, y, tile);
+    }
+
+    /**
+     * Test method for {@link CheckpointWriter#close()} and
+     * {@link CheckpointWriter#read(String, int, int, int, int, boolean, ImageWriter)} of tiled rendering.
+     */
+    @Test
+    void testWriteAndRead() {
+        PixelManager manager = new PixelManager(NY, NX, TILE_SIZE, 0d);
+
+        try (CheckpointWriter writer = new CheckpointWriter("checkpointTest", NX, NY, TILE_SIZE, 9, false, 60, null)) {
+            for (int t = 0; t < 10; t += 3) {
+                PixelManager.Tile tile = manager.tile(t);
+                Color[] colors = new Color[tile.width() * tile.height()];
+                for (int y = 0, p = 0; y < tile.height(); y++)
+                    for (int x = 0; x < tile.width(); x++, p++)
+                        colors[p] = color(tile.col() + x, tile.row() + y, t);
+                writer.tileDone(tile, colors);
+            }
+        }
+        // header and tile marks, and a slot of float colors per tile (the last tile is partial)
+        long tiles = manager.tileCount();
+        assertTrue(new File(ImageWriter.FOLDER_PATH, "checkpointTest.ckpt").length()
+                <= 7 * Integer.BYTES + tiles + tiles * TILE_SIZE * TILE_SIZE * 3 * Float.BYTES,
+                "checkpoint must keep only the final colors");
+
+        ImageWriter image = new ImageWriter(NX, NY, true);
+        CheckpointWriter.State state = CheckpointWriter.read("checkpointTest", NX, NY, TILE_SIZE, 9, false, image);
+        assertNotNull(state, "checkpoint must be written when the writer is closed");
+        assertEquals("{0, 3, 6, 9}", state.tiles().toString(), "wrong saved tiles");
+        assertNull(state.buffer(), "tiled rendering must not restore samples");
+        PixelManager.Tile tile = manager.tile(9);
+        for (int y = 0; y < tile.height(); y++)
+            for (int x = 0; x < tile.width(); x++) {
+                Color expected = color(tile.col() + x, tile.row() + y, 9);
+                Color restored = image.readPixel(tile.col() + x, tile.row() + y);
+                assertEquals(expected.getRed(), restored.getRed(), 1e-6, "wrong pixel color");
+                assertEquals(expected.getBlue(), restored.getBlue(), 1e-6, "wrong pixel color");
+            }
+        assertEquals(0, image.readPixel(8, 0).getRGB(), "unsaved tile must not be restored");
+
+        assertThrows(IllegalStateException.class,
+                () -> CheckpointWriter.read("checkpointTest", NX, NY, TILE_SIZE, 9, true, image),
+                "checkpoint of other settings must not be restored");
+        new CheckpointWriter("checkpointTest", NX, NY, TILE_SIZE, 9, false, 60, state).complete();
+        assertNull(CheckpointWriter.read("checkpointTest", NX, NY, TILE_SIZE, 9, false, image),
+                "completed render must remove its checkpoint");
+    }
+
+    /**
+     * Test method for {@link CheckpointWriter#tileDone(PixelManager.Tile, AccumulationBuffer)}
+     * and resuming a checkpoint: tiles written again keep their latest samples.
+     */
+    @Test
+    void testProgressiveResume() {
+        PixelManager manager = new PixelManager(NY, NX, TILE_SIZE, 0d);
+        AccumulationBuffer buffer = new AccumulationBuffer(NX, NY);
+        PixelManager.Tile first = manager.tile(1), last = manager.tile(manager.tileCount() - 1);
+
+        try (CheckpointWriter writer = new CheckpointWriter("checkpointProgressive", NX, NY, TILE_SIZE, 9, true, 60,
+                null)) {
+            buffer.addSample(first.col(), first.row(), new Color(10, 20, 30));
+            writer.tileDone(first, buffer);
+            buffer.addSample(first.col(), first.row(), new Color(30, 40, 50));
+            writer.tileDone(first, buffer);
+        }
+        CheckpointWriter.State state = CheckpointWriter.read("checkpointProgressive", NX, NY, TILE_SIZE, 9, true, null);
+        assertEquals("{1}", state.tiles().toString(), "wrong saved tiles");
+        assertEquals(2, state.buffer().count(first.col(), first.row()), "wrong sample count");
+        assertEquals(new Color(20, 30, 40).getRGB(), state.buffer().mean(first.col(), first.row()).getRGB(),
+                "wrong pixel mean");
+
+        // the resumed render continues the file
+        try (CheckpointWriter writer = new CheckpointWriter("checkpointProgressive", NX, NY, TILE_SIZE, 9, true, 60,
+                state)) {
+            buffer.addSample(last.col(), last.row(), new Color(5, 5, 5));
+            writer.tileDone(last, buffer);
+        }
+        state = CheckpointWriter.read("checkpointProgressive", NX, NY, TILE_SIZE, 9, true, null);
+        assertEquals("{1, " + (manager.tileCount() - 1) + "}", state.tiles().toString(), "wrong saved tiles");
+        assertEquals(2, state.buffer().count(first.col(), first.row()), "resumed file lost a tile");
+        assertEquals(1, state.buffer().count(last.col(), last.row()), "wrong sample count");
+        new CheckpointWriter("checkpointProgressive", NX, NY, TILE_SIZE, 9, true, 60, state).complete();
+    }
+}
@@ -4,7 +4,18 @@ import org.junit.jupiter.api.Test;
 import primitives.Color;
 import renderer.ImageWriter;
 
+import javax.imageio.ImageIO;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
 import static java.awt.Color.*;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * Unit test for {@link ImageWriter} class.
@@ -53,4 +64,112 @@ public class ImageWriterTest {
         }
         imageWriter.writeToImage("yellowGrid");
     }
+
+    /**
+     * Test method for {@link ImageWriter#writeToImage(String, ToneMapping)},
+     * {@link ImageWriter#writeToPfm(String)} and {@link ImageWriter#writeToExr(String)}.
+     * <p>
+     * A horizontal gradient from black up to four times the display white is
+     * written once and exported in all formats: the clamped png saturates, the
+     * tone mapped png keeps the gradient below white, and the floating point
+     * files keep the full range. A writer without the full range colors cannot
+     * export them.
+     * </p>
+     */
+    @Test
+    public void testWriteHdrImage() throws IOException {
+        final int nX = 64;
+        final int nY = 16;
+        ImageWriter ldr = new ImageWriter(nX, nY);
+        assertThrows(IllegalStateException.class, () -> ldr.writeToPfm("hdrGradient"),
+                "8-bit writer must not write pfm");
+        assertThrows(IllegalStateException.class, () -> ldr.writeToImage("hdrGradient", ToneMapping.ACES),
+                "8-bit writer must not tone map");
+
+        ImageWriter imageWriter = new ImageWriter(nX, nY, true);
+        for (int j = 0; j < nX; j++)
+            for (int i = 0; i < nY; i++)
+                imageWriter.writePixel(j, i, new Color(j * 16, j * 8, j * 4));
+
+        imageWriter.writeToImage("hdrGradientClamp");
+        imageWriter.writeToImage("hdrGradientReinhard", ToneMapping.REINHARD);
+        imageWriter.writeToImage("hdrGradientAces", ToneMapping.ACES);
+        imageWriter.writeToPfm("hdrGradient");
+        imageWriter.writeToExr("hdrGradient");
+
+        final String folder = System.getProperty("user.dir") + "/images/";
+        int clamped = ImageIO.read(new File(folder + "hdrGradientClamp.png")).getRGB(nX - 1, 0);
+        int mapped  = ImageIO.read(new File(folder + "hdrGradientReinhard.png")).getRGB(nX - 1, 0);
+        assertEquals(255, clamped >> 16 & 0xFF, "clamped red must saturate");
+        assertTrue((mapped >> 16 & 0xFF) < 255, "tone mapped red must stay below white");
+        assertTrue((mapped >> 16 & 0xFF) > (mapped >> 8 & 0xFF), "tone mapping must keep the channel order");
+
+        String pfmHeader = "PF\n" + nX + " " + nY + "\n-1.0\n";
+        assertEquals(pfmHeader.length() + 12L * nX * nY, new File(folder + "hdrGradient.pfm").length(),
+                "wrong pfm file size");
+        assertExr(Files.readAllBytes(new File(folder + "hdrGradient.exr").toPath()), nX, nY);
+    }
+
+    /**
+     * Reads back the OpenEXR file of the gradient written by {@link #testWriteHdrImage()}:
+     * the header attributes, the line offset table and the float pixels of the
+     * first and the last lines
+     * @param bytes the file contents
+     * @param nX    the image width
+     * @param nY    the image height
+     */
+    private static void assertExr(byte[] bytes, int nX, int nY) {
+        ByteBuffer exr = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(20000630, exr.getInt(), "wrong exr magic number");
+        assertEquals(2, exr.getInt(), "wrong exr version");
+
+        List<String> attributes = new ArrayList<>();
+        for (String name = readString(exr); !name.isEmpty(); name = readString(exr)) {
+            attributes.add(name);
+            String type = readString(exr);
+            int size = exr.getInt();
+            if (name.equals("dataWindow")) {
+                assertEquals("box2i", type, "wrong data window type");
+                assertArrayEquals(new int[] { 0, 0, nX - 1, nY - 1 },
+                        new int[] { exr.getInt(), exr.getInt(), exr.getInt(), exr.getInt() }, "wrong data window");
+            } else if (name.equals("compression")) {
+                assertEquals(0, exr.get(), "exr must not be compressed");
+            } else {
+                exr.position(exr.position() + size);
+            }
+        }
+        assertTrue(attributes.containsAll(List.of("channels", "compression", "dataWindow", "displayWindow",
+                "lineOrder", "pixelAspectRatio", "screenWindowCenter", "screenWindowWidth")),
+                "missing required exr attributes: " + attributes);
+
+        int rowSize = 12 * nX;
+        long first = exr.position() + 8L * nY;
+        assertEquals(first, exr.getLong(), "wrong offset of the first line");
+        assertEquals(bytes.length, first + (long) nY * (8 + rowSize), "wrong exr file size");
+        for (int y : new int[] { 0, nY - 1 }) {
+            exr.position((int) (first + (long) y * (8 + rowSize)));
+            assertEquals(y, exr.getInt(), "wrong line number");
+            assertEquals(rowSize, exr.getInt(), "wrong line size");
+            // B, G and R channels of the line, one after the other
+            float[][] channels = new float[3][nX];
+            for (float[] channel : channels)
+                for (int x = 0; x < nX; x++) channel[x] = exr.getFloat();
+            for (int x : new int[] { 0, 1, 16, nX - 1 }) {
+                assertEquals(x * 4 / 255f, channels[0][x], 1e-6, "wrong blue of pixel " + x);
+                assertEquals(x * 8 / 255f, channels[1][x], 1e-6, "wrong green of pixel " + x);
+                assertEquals(x * 16 / 255f, channels[2][x], 1e-6, "wrong red of pixel " + x);
+            }
+        }
+    }
+
+    /**
+     * Reads a null terminated string from a buffer
+     * @param buffer the buffer
+     * @return the string
+     */
+    private static String readString(ByteBuffer buffer) {
+        int start = buffer.position();
+        while (buffer.get() != 0) { /* find the terminating null */ }
+        return new String(buffer.array(), start, buffer.position() - start - 1, StandardCharsets.US_ASCII);
+    }
 }
@@ -0,0 +1,98 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.Sphere;
+import geometries.Triangle;
+import lighting.AmbientLight;
+import lighting.PointLight;
+import primitives.*;
+import scene.Scene;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for {@link ProgressiveRenderer} class.
+ * A scene is rendered progressively and the image after the last pass is
+ * compared with the image rendered with the full beams at once.
+ */
+class ProgressiveRendererTest {
+    /** Default constructor to satisfy JavaDoc generator */
+    ProgressiveRendererTest() { /* to satisfy JavaDoc generator */ }
+
+    /** The test scene */
+    private final Scene scene = new Scene("Progressive").setBackground(new Color(20, 40, 60))
+            .setAmbientLight(new AmbientLight(new Color(30, 30, 30)));
+
+    /** Camera builder of the test scene */
+    private final Camera.Builder builder = Camera.getBuilder() //
+            .setLocation(new Point(0, 0, 200)).setDirection(Point.ZERO, Vector.AXIS_Y) //
+            .setVpDistance(100).setVpSize(120, 160) //
+            .setResolution(32, 24);
+
+    /**
+     * Test method for {@link Camera.Builder#setProgressive(double, double)}.
+     */
+    @Test
+    void testPassesConverge() {
+        scene.geometries.add(new Sphere(Point.ZERO, 30d).setEmission(new Color(100, 20, 20))
+                        .setMaterial(new Material().setKD(0.5).setKS(0.5).setShininess(20)),
+                new Triangle(new Point(-60, -40, -20), new Point(60, -40, -20), new Point(0, -40, 60))
+                        .setEmission(new Color(20, 80, 20)).setMaterial(new Material().setKD(0.6)));
+        scene.lights.add(new PointLight(new Color(300, 300, 300), new Point(-100, 100, 100)));
+        builder.setRayTracer(scene, RayTracerType.SIMPLE);
+
+        ImageWriter direct = builder.build().renderImage().getImageWriter();
+
+        List<Integer> passes = new ArrayList<>();
+        List<Double> errors = new ArrayList<>();
+        Camera progressive = builder.setProgressive(0, 0).setMultithreading(2)
+                .setProgressiveListener((camera, samples) -> {
+                    passes.add(samples);
+                    errors.add(meanError(camera.getImageWriter(), direct));
+                }).build();
+        progressive.renderImage();
+
+        assertFalse(passes.isEmpty(), "listener must be notified after each pass");
+        for (int k = 1; k < passes.size(); k++)
+            assertTrue(passes.get(k) > passes.get(k - 1), "sample count must increase from pass to pass");
+        assertEquals(289, passes.getLast(), "all the passes must trace the whole beam");
+        assertTrue(errors.getLast() < errors.getFirst(), "passes must converge to the full render");
+        assertTrue(errors.getLast() < 1, "last pass must match the full render, error " + errors.getLast());
+    }
+
+    /**
+     * Test method for {@link Camera.Builder#setProgressive(double, double)} with
+     * a convergence threshold.
+     */
+    @Test
+    void testThresholdStops() {
+        scene.geometries.add(new Sphere(Point.ZERO, 30d).setEmission(new Color(100, 20, 20)));
+        builder.setRayTracer(scene, RayTracerType.SIMPLE);
+
+        List<Integer> passes = new ArrayList<>();
+        builder.setProgressive(0, 1000).setProgressiveListener((camera, samples) -> passes.add(samples))
+                .build().renderImage();
+        assertTrue(passes.getLast() < 289, "a converged image must stop before tracing the whole beam");
+    }
+
+    /**
+     * The mean absolute difference of the color components of two images
+     * @param image     the image
+     * @param reference the reference image
+     * @return the mean difference (0-255 scale)
+     */
+    static double meanError(ImageWriter image, ImageWriter reference) {
+        double sum = 0;
+        for (int i = 0; i < reference.nY(); i++)
+            for (int j = 0; j < reference.nX(); j++) {
+                int a = image.readPixel(j, i).getRGB(), b = reference.readPixel(j, i).getRGB();
+                for (int shift = 0; shift <= 16; shift += 8)
+                    sum += Math.abs((a >> shift & 0xFF) - (b >> shift & 0xFF));
+            }
+        return sum / (3.0 * reference.nX() * reference.nY());
+    }
+}
@@ -0,0 +1,193 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.Sphere;
+import lighting.AmbientLight;
+import lighting.PointLight;
+import primitives.*;
+import scene.Scene;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for {@link RenderCoordinator} and {@link RenderWorker} classes.
+ * An image is rendered by several workers in the same JVM, one of the worker
+ * connections failing in the middle of a tile, and by worker processes, and is
+ * compared with the image rendered by a single camera.
+ */
+class RenderCoordinatorTest {
+    /** Default constructor to satisfy JavaDoc generator */
+    RenderCoordinatorTest() { /* to satisfy JavaDoc generator */ }
+
+    /**
+     * Supplier of the test camera for the worker processes
+     */
+    public static class CameraSupplier implements Supplier<Camera> {
+        /** Default constructor, called by {@link RenderWorker#main(String[])} */
+        public CameraSupplier() { /* to satisfy JavaDoc generator */ }
+
+        @Override
+        public Camera get() { return camera(); }
+    }
+
+    /**
+     * Builds the test camera - a lit sphere in front of a background
+     * @return the camera
+     */
+    private static Camera camera() {
+        return camera(40);
+    }
+
+    /**
+     * Builds the test camera - a lit sphere in front of a background
+     * @param nX the amount of pixels by width
+     * @return the camera
+     */
+    private static Camera camera(int nX) {
+        Scene scene = new Scene("Distributed").setBackground(new Color(20, 40, 60))
+                .setAmbientLight(new AmbientLight(new Color(30, 30, 30)));
+        scene.geometries.add(new Sphere(new Point(0, 0, -100), 50d).setEmission(new Color(100, 20, 20))
+                .setMaterial(new Material().setKD(0.5).setKS(0.5).setShininess(20)));
+        scene.lights.add(new PointLight(new Color(300, 300, 300), new Point(-100, 100, 100)));
+        return Camera.getBuilder() //
+                .setLocation(Point.ZERO).setDirection(new Point(0, 0, -1), Vector.AXIS_Y) //
+                .setVpDistance(100).setVpSize(200, 150) //
+                .setRayTracer(scene, RayTracerType.SIMPLE) //
+                .setResolution(nX, 30) //
+                .build();
+    }
+
+    /**
+     * Checks the image rendered by the coordinator against the image rendered by a single camera
+     * @param distributed the image rendered by the coordinator
+     */
+    private static void assertImage(ImageWriter distributed) {
+        ImageWriter local = camera().renderImage().getImageWriter();
+        for (int i = 0; i < 30; i++)
+            for (int j = 0; j < 40; j++)
+                assertEquals(local.readPixel(j, i).getRGB(), distributed.readPixel(j, i).getRGB(),
+                        "wrong pixel " + j + "," + i);
+    }
+
+    /**
+     * The class path of a class
+     * @param type the class
+     * @return the directory or the jar the class is loaded from
+     * @throws URISyntaxException if the location is not a valid path
+     */
+    private static String classPath(Class<?> type) throws URISyntaxException {
+        return Path.of(type.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+    }
+
+    /**
+     * Test method for {@link RenderCoordinator#render()} with a failing worker connection.
+     */
+    @Test
+    void testRenderWithFailingWorker() throws Exception {
+        RenderCoordinator coordinator = new RenderCoordinator(camera(), 0, 0);
+        Camera[] result = new Camera[1];
+        Thread rendering = new Thread(() -> result[0] = coordinator.render());
+        rendering.start();
+
+        // a worker connection that takes a tile and dies
+        try (Socket socket = new Socket("localhost", coordinator.getPort())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(RenderCoordinator.MAGIC);
+            out.writeInt(40);
+            out.writeInt(30);
+            out.flush();
+            assertNotEquals(RenderCoordinator.DONE, new DataInputStream(socket.getInputStream()).readInt(),
+                    "failing connection must get a tile");
+        }
+
+        Thread workers = new Thread(() -> new RenderWorker(camera(), "localhost", coordinator.getPort(), 2).run());
+        workers.start();
+        new RenderWorker(camera(), "localhost", coordinator.getPort(), 1).run();
+        workers.join();
+        rendering.join();
+
+        assertImage(result[0].getImageWriter());
+    }
+
+    /**
+     * Test method for {@link RenderWorker#main(String[])}: the image is rendered by
+     * two worker processes.
+     */
+    @Test
+    void testRenderWithWorkerProcesses() throws Exception {
+        RenderCoordinator coordinator = new RenderCoordinator(camera(), 0, 0);
+        Camera[] result = new Camera[1];
+        Thread rendering = new Thread(() -> result[0] = coordinator.render());
+        rendering.start();
+
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        String classPath = String.join(File.pathSeparator, classPath(RenderWorker.class),
+                classPath(RenderCoordinatorTest.class), classPath(Test.class));
+        List<Process> processes = new ArrayList<>();
+        for (int p = 0; p < 2; p++)
+            processes.add(new ProcessBuilder(java, "-cp", classPath, RenderWorker.class.getName(), "localhost",
+                    String.valueOf(coordinator.getPort()), CameraSupplier.class.getName(), "1")
+                    .inheritIO().start());
+        try {
+            for (Process process : processes) {
+                assertTrue(process.waitFor(2, TimeUnit.MINUTES), "worker process must end with the image");
+                assertEquals(0, process.exitValue(), "worker process failed");
+            }
+        } finally {
+            for (Process process : processes) process.destroyForcibly();
+        }
+        rendering.join();
+
+        assertImage(result[0].getImageWriter());
+    }
+
+    /**
+     * Test method for {@link RenderWorker#run()} refused by the coordinator: the
+     * worker gives up after the retries instead of reconnecting forever.
+     */
+    @Test
+    void testWorkerGivesUp() {
+        RenderCoordinator coordinator = new RenderCoordinator(camera(), 0, 0);
+        Thread rendering = new Thread(coordinator::render);
+        rendering.setDaemon(true);
+        rendering.start();
+
+        // the coordinator accepts the connections and closes them at the handshake
+        RenderWorker worker = new RenderWorker(camera(41), "localhost", coordinator.getPort(), 1);
+        assertTimeoutPreemptively(Duration.ofMinutes(1), worker::run, "refused worker must give up");
+        assertTrue(rendering.isAlive(), "the image must not be complete");
+    }
+
+    /**
+     * Test method for a worker connection with another image resolution.
+     */
+    @Test
+    void testRejectMismatchedWorker() throws IOException {
+        RenderCoordinator coordinator = new RenderCoordinator(camera(), 0, 0);
+        Thread rendering = new Thread(coordinator::render);
+        rendering.setDaemon(true);
+        rendering.start();
+        try (Socket socket = new Socket("localhost", coordinator.getPort())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(RenderCoordinator.MAGIC);
+            out.writeInt(41);
+            out.writeInt(30);
+            out.flush();
+            assertEquals(-1, socket.getInputStream().read(), "mismatched worker must be disconnected");
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.Sphere;
+import geometries.Triangle;
+import lighting.AmbientLight;
+import lighting.PointLight;
+import primitives.*;
+import scene.Scene;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for {@link RenderQueue} class.
+ * Several camera angles of the same scene are rendered by the queue and
+ * compared with the images rendered by the cameras themselves.
+ */
+class RenderQueueTest {
+    /** Default constructor to satisfy JavaDoc generator */
+    RenderQueueTest() { /* to satisfy JavaDoc generator */ }
+
+    /** The shared scene of the jobs */
+    private final Scene scene = new Scene("Queue").setBackground(new Color(20, 40, 60))
+            .setAmbientLight(new AmbientLight(new Color(30, 30, 30)));
+
+    /**
+     * Builds a camera looking at the origin from a given location
+     * @param location the camera location
+     * @return the camera
+     */
+    private Camera camera(Point location) {
+        return Camera.getBuilder() //
+                .setLocation(location).setDirection(Point.ZERO, Vector.AXIS_Y) //
+                .setVpDistance(100).setVpSize(120, 160) //
+                .setRayTracer(scene, RayTracerType.SIMPLE) //
+                .setResolution(32, 24) //
+                .build();
+    }
+
+    /**
+     * Test method for {@link RenderQueue#submit(Camera, int, String)}.
+     */
+    @Test
+    void testRenderJobs() {
+        scene.geometries.add(new Sphere(Point.ZERO, 30d).setEmission(new Color(100, 20, 20))
+                        .setMaterial(new Material().setKD(0.5).setKS(0.5).setShininess(20)),
+                new Triangle(new Point(-60, -40, -20), new Point(60, -40, -20), new Point(0, -40, 60))
+                        .setEmission(new Color(20, 80, 20)).setMaterial(new Material().setKD(0.6)));
+        scene.lights.add(new PointLight(new Color(300, 300, 300), new Point(-100, 100, 100)));
+
+        Point[] locations = { new Point(0, 0, 200), new Point(200, 0, 0), new Point(0, 50, -200) };
+        RenderQueue.Job[] jobs = new RenderQueue.Job[locations.length];
+        try (RenderQueue queue = new RenderQueue(3)) {
+            for (int k = 0; k < locations.length; k++)
+                jobs[k] = queue.submit(camera(locations[k]), k, null);
+        }
+
+        for (int k = 0; k < locations.length; k++) {
+            assertTrue(jobs[k].isDone(), "job must be complete when the queue is closed");
+            assertTrue(jobs[k].getPixelsPerSecond() > 0, "job must report its throughput");
+            ImageWriter queued = jobs[k].await().getImageWriter();
+            ImageWriter direct = camera(locations[k]).renderImage().getImageWriter();
+            for (int i = 0; i < 24; i++)
+                for (int j = 0; j < 32; j++)
+                    assertEquals(direct.readPixel(j, i).getRGB(), queued.readPixel(j, i).getRGB(),
+                            "wrong pixel " + j + "," + i + " of job " + k);
+        }
+    }
+
+    /**
+     * Test method for {@link RenderQueue#submit(Camera, int, String)} of cameras
+     * built for rendering modes the queue does not support.
+     */
+    @Test
+    void testRejectModes() {
+        Camera.Builder builder = Camera.getBuilder() //
+                .setLocation(new Point(0, 0, 200)).setDirection(Point.ZERO, Vector.AXIS_Y) //
+                .setVpDistance(100).setVpSize(120, 160) //
+                .setRayTracer(scene, RayTracerType.SIMPLE) //
+                .setResolution(32, 24);
+        try (RenderQueue queue = new RenderQueue(1)) {
+            for (Camera camera : new Camera[] {
+                    builder.setProgressive(0, 0).build(),
+                    Camera.getBuilder().setLocation(new Point(0, 0, 200)).setDirection(Point.ZERO, Vector.AXIS_Y)
+                            .setVpDistance(100).setVpSize(120, 160).setResolution(32, 24)
+                            .setStreamingOutput("queueStreaming").build(),
+                    Camera.getBuilder().setLocation(new Point(0, 0, 200)).setDirection(Point.ZERO, Vector.AXIS_Y)
+                            .setVpDistance(100).setVpSize(120, 160).setResolution(32, 24)
+                            .setTimeBudget(1, 0).build() })
+                assertThrows(IllegalArgumentException.class, () -> queue.submit(camera, 0, null),
+                        "unsupported rendering mode must be rejected");
+        }
+    }
+
+    /**
+     * Test method for {@link RenderQueue#submit(Camera, int, String)} of a camera
+     * whose scene takes long to prepare: the queue keeps rendering and accepting
+     * the other jobs meanwhile.
+     */
+    @Test
+    void testSubmitWhilePreparing() throws InterruptedException {
+        scene.geometries.add(new Sphere(Point.ZERO, 30d).setEmission(new Color(100, 20, 20)));
+        CountDownLatch preparing = new CountDownLatch(1), release = new CountDownLatch(1);
+        Camera slow = Camera.getBuilder() //
+                .setLocation(new Point(0, 0, 200)).setDirection(Point.ZERO, Vector.AXIS_Y) //
+                .setVpDistance(100).setVpSize(120, 160) //
+                .setRayTracer(new SimpleRayTracer(scene) {
+                    @Override
+                    public void prepare() {
+                        preparing.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        super.prepare();
+                    }
+                }) //
+                .setResolution(32, 24) //
+                .build();
+
+        try (RenderQueue queue = new RenderQueue(1)) {
+            RenderQueue.Job[] slowJob = new RenderQueue.Job[1];
+            Thread submitting = new Thread(() -> slowJob[0] = queue.submit(slow, 1, null));
+            submitting.start();
+            preparing.await();
+            try {
+                assertTimeoutPreemptively(Duration.ofMinutes(1),
+                        () -> queue.submit(camera(new Point(200, 0, 0)), 0, null).await(),
+                        "a job must be queued and rendered while another scene is prepared");
+            } finally {
+                release.countDown();
+            }
+            submitting.join();
+            assertNotNull(slowJob[0].await(), "the prepared job must be rendered");
+        }
+    }
+}
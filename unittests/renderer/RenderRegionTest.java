@@ -0,0 +1,128 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.Sphere;
+import lighting.AmbientLight;
+import primitives.*;
+import scene.Scene;
+
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for rendering a region or a mask of the image ({@link
+ * Camera.Builder#setRenderRegion(int, int, int, int)}, {@link
+ * Camera.Builder#setRenderMask(geometries.Intersectable)} and the tile
+ * allocation of {@link PixelManager}).
+ * The rendered pixels are compared with a full render, and the other pixels
+ * with the background image.
+ */
+class RenderRegionTest {
+    /** Default constructor to satisfy JavaDoc generator */
+    RenderRegionTest() { /* to satisfy JavaDoc generator */ }
+
+    /** Image width */
+    private static final int NX = 40;
+    /** Image height */
+    private static final int NY = 30;
+
+    /** The sphere of the test scene */
+    private final Sphere sphere = (Sphere) new Sphere(new Point(-30, 0, 0), 15d).setEmission(new Color(100, 20, 20));
+    /** The test scene */
+    private final Scene scene = new Scene("Region").setBackground(new Color(20, 40, 60))
+            .setAmbientLight(new AmbientLight(new Color(30, 30, 30)));
+
+    /**
+     * Creates a camera builder of the test scene
+     * @return the camera builder
+     */
+    private Camera.Builder builder() {
+        return Camera.getBuilder() //
+                .setLocation(new Point(0, 0, 200)).setDirection(Point.ZERO, Vector.AXIS_Y) //
+                .setVpDistance(100).setVpSize(60, 80) //
+                .setResolution(NX, NY).setRayTracer(scene, RayTracerType.SIMPLE);
+    }
+
+    /**
+     * Renders a background image of a flat color
+     * @param name  the name of the png file
+     * @param color the color of the image
+     */
+    private static void background(String name, Color color) {
+        ImageWriter image = new ImageWriter(NX, NY);
+        for (int i = 0; i < NY; i++)
+            for (int j = 0; j < NX; j++)
+                image.writePixel(j, i, color);
+        image.writeToImage(name);
+    }
+
+    /**
+     * Test method for {@link PixelManager#setRegion(PixelManager.Tile)} and
+     * {@link PixelManager#skipTiles(BitSet)}.
+     */
+    @Test
+    void testTileAllocation() {
+        PixelManager manager = new PixelManager(NY, NX, 8, 0d);
+        manager.setRegion(new PixelManager.Tile(5, 3, 20, 10));
+        // TC01: tiles of a region are clipped to the region
+        assertEquals(6, manager.tileCount(), "wrong amount of region tiles");
+        assertEquals(new PixelManager.Tile(5, 3, 8, 8), manager.tile(0), "wrong first tile");
+        assertEquals(new PixelManager.Tile(21, 11, 4, 2), manager.tile(5), "wrong last tile");
+
+        // TC02: skipped tiles are not allocated
+        BitSet skipped = new BitSet();
+        skipped.set(0);
+        skipped.set(2, 5);
+        manager.skipTiles(skipped);
+        assertEquals(manager.tile(1), manager.nextTile(), "first tile not skipped");
+        assertEquals(manager.tile(5), manager.nextTile(), "skipped tiles allocated");
+        assertNull(manager.nextTile(), "tiles allocated after the last one");
+    }
+
+    /**
+     * Test method for {@link Camera.Builder#setRenderRegion(int, int, int, int)}.
+     */
+    @Test
+    void testRenderRegion() {
+        scene.geometries.add(sphere);
+        ImageWriter full = builder().build().renderImage().getImageWriter();
+        Color backgroundColor = new Color(200, 100, 0);
+        background("regionBackground", backgroundColor);
+
+        Camera camera = builder().setRenderRegion(10, 5, 17, 12).setRenderBackground("regionBackground").build();
+        ImageWriter image = camera.renderImage().getImageWriter();
+        for (int i = 0; i < NY; i++)
+            for (int j = 0; j < NX; j++) {
+                boolean inside = j >= 10 && j < 27 && i >= 5 && i < 17;
+                assertEquals((inside ? full.readPixel(j, i) : backgroundColor).getRGB(),
+                        image.readPixel(j, i).getRGB(), "wrong pixel " + j + "," + i);
+            }
+    }
+
+    /**
+     * Test method for {@link Camera.Builder#setRenderMask(geometries.Intersectable)}.
+     */
+    @Test
+    void testRenderMask() {
+        Sphere other = (Sphere) new Sphere(new Point(35, 0, 0), 10d).setEmission(new Color(20, 100, 20));
+        scene.geometries.add(sphere, other);
+        ImageWriter full = builder().build().renderImage().getImageWriter();
+
+        ImageWriter image = builder().setRenderMask(sphere).build().renderImage().getImageWriter();
+        int rendered = 0;
+        for (int i = 0; i < NY; i++)
+            for (int j = 0; j < NX; j++) {
+                int rgb = image.readPixel(j, i).getRGB();
+                if (rgb == 0) continue;
+                assertEquals(full.readPixel(j, i).getRGB(), rgb, "wrong rendered pixel " + j + "," + i);
+                ++rendered;
+            }
+        // the center of the masked sphere is rendered, the other sphere and the far background are not
+        assertNotEquals(0, image.readPixel(10, 15).getRGB(), "masked geometry not rendered");
+        assertEquals(0, image.readPixel(29, 15).getRGB(), "unmasked geometry rendered");
+        assertEquals(0, image.readPixel(39, 0).getRGB(), "background rendered");
+        assertTrue(rendered < NX * NY / 2, "too many pixels rendered");
+    }
+}
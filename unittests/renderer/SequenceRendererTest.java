@@ -0,0 +1,60 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.Sphere;
+import lighting.AmbientLight;
+import primitives.*;
+import scene.Scene;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for {@link SequenceRenderer} class.
+ * A short fly-through around a sphere is rendered and the cameras of the path
+ * are compared with cameras built directly at the same positions.
+ */
+class SequenceRendererTest {
+    /** Default constructor to satisfy JavaDoc generator */
+    SequenceRendererTest() { /* to satisfy JavaDoc generator */ }
+
+    /** Camera builder of the test frames */
+    private final Camera.Builder builder = Camera.getBuilder() //
+            .setLocation(new Point(0, 0, 100)).setDirection(Point.ZERO, Vector.AXIS_Y) //
+            .setVpDistance(100).setVpSize(100, 100) //
+            .setResolution(12, 12);
+
+    /**
+     * Test method for {@link SequenceRenderer#render(String, int)}.
+     */
+    @Test
+    void testRenderSequence() {
+        Scene scene = new Scene("Sequence").setBackground(new Color(20, 40, 60))
+                .setAmbientLight(new AmbientLight(new Color(200, 200, 200)));
+        scene.geometries.add(new Sphere(Point.ZERO, 30d).setEmission(new Color(100, 20, 20)));
+        builder.setRayTracer(scene, RayTracerType.SIMPLE);
+
+        SequenceRenderer sequence = new SequenceRenderer(builder, Vector.AXIS_Y) //
+                .addKeyframe(0, new Point(0, 0, 100), Point.ZERO, 0) //
+                .addKeyframe(1, new Point(100, 0, 0), Point.ZERO, 0) //
+                .addKeyframe(3, new Point(100, 0, 0), new Point(0, 20, 0), 90);
+
+        Ray before = builder.build().constructRay(12, 12, 3, 7);
+        Point target = builder.getTargetPoint();
+        sequence.render("sequence test", 4);
+        for (int frame = 0; frame < 4; frame++)
+            assertTrue(new File(ImageWriter.FOLDER_PATH, String.format("sequence test%04d.png", frame)).exists(),
+                    "missing frame " + frame);
+        assertEquals(before, builder.build().constructRay(12, 12, 3, 7), "rendering must not move the builder camera");
+        assertEquals(target, builder.getTargetPoint(), "rendering must not change the builder target point");
+
+        // time 1.5 - a quarter of the way from the second keyframe to the third one, rolled by 22.5 degrees
+        Camera middle = sequence.frameCamera(0.5);
+        Camera expected = builder.setLocation(new Point(100, 0, 0)).setDirection(new Point(0, 5, 0), Vector.AXIS_Y)
+                .rotateCamera(22.5).build();
+        assertEquals(expected.constructRay(12, 12, 3, 7), middle.constructRay(12, 12, 3, 7),
+                "wrong interpolated camera");
+    }
+}
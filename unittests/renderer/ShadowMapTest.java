@@ -0,0 +1,152 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.Polygon;
+import geometries.Sphere;
+import lighting.AmbientLight;
+import lighting.DirectionalLight;
+import lighting.LightSource;
+import lighting.SpotLight;
+import primitives.*;
+import scene.Scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for {@link ShadowMap} class.
+ * A square floor with an opaque sphere and a transparent sphere above it is lit
+ * by a directional light and by a spotlight straight from above. The map must
+ * answer the fully lit and fully shadowed floor points, and leave the points at
+ * the shadow edge, under the transparent sphere and outside the map to a shadow
+ * ray; the images rendered with the maps must match the ray-traced shadows.
+ */
+class ShadowMapTest {
+    /** Default constructor to satisfy JavaDoc generator */
+    ShadowMapTest() { /* to satisfy JavaDoc generator */ }
+
+    /** Resolution of the shadow maps */
+    private static final int    RESOLUTION = 256;
+    /** Normal of the floor */
+    private static final Vector UP         = Vector.AXIS_Z;
+
+    /** The test scene */
+    private final Scene scene = new Scene("Shadow map").setAmbientLight(new AmbientLight(new Color(20, 20, 20)));
+
+    /**
+     * Adds the floor, the opaque sphere of radius 10 above the origin and the
+     * transparent sphere above (30,30) to the scene
+     */
+    private void addGeometries() {
+        scene.geometries.add(
+                new Polygon(new Point(-50, -50, 0), new Point(50, -50, 0), new Point(50, 50, 0), new Point(-50, 50, 0))
+                        .setEmission(new Color(20, 20, 20)).setMaterial(new Material().setKD(0.6)),
+                new Sphere(new Point(0, 0, 20), 10d).setEmission(new Color(60, 20, 20))
+                        .setMaterial(new Material().setKD(0.5).setKS(0.3).setShininess(20)),
+                new Sphere(new Point(30, 30, 10), 5d).setEmission(new Color(20, 20, 60))
+                        .setMaterial(new Material().setKD(0.2).setKT(0.6)));
+    }
+
+    /**
+     * Checks the answers of a map at the floor points of the test scene
+     *
+     * @param map   the shadow map
+     * @param name  the name of the map for the messages
+     * @param shade the radius of the shadow of the opaque sphere on the floor
+     */
+    private static void assertFloorQueries(ShadowMap map, String name, double shade) {
+        assertEquals(Double3.ONE, map.transparency(new Point(-40, -40, 0), UP), name + ": lit point");
+        assertEquals(Double3.ONE, map.transparency(new Point(20, -10, 0), UP), name + ": lit point");
+        assertEquals(Double3.ZERO, map.transparency(Point.ZERO, UP), name + ": shadowed point");
+        assertEquals(Double3.ZERO, map.transparency(new Point(-5, 6, 0), UP), name + ": shadowed point");
+        assertNull(map.transparency(new Point(shade, 0, 0), UP), name + ": point at the shadow edge");
+        assertNull(map.transparency(new Point(0, -shade, 0), UP), name + ": point at the shadow edge");
+        assertNull(map.transparency(new Point(30, 30, 0), UP), name + ": point under the transparent sphere");
+    }
+
+    /**
+     * Test method for {@link ShadowMap#directional(geometries.Geometries, Vector, int)}
+     * and {@link ShadowMap#transparency(Point, Vector)}.
+     */
+    @Test
+    void testDirectional() {
+        addGeometries();
+        ShadowMap map = ShadowMap.directional(scene.geometries, new Vector(0, 0, -1), RESOLUTION);
+        assertNotNull(map, "map of bounded geometries");
+        assertFloorQueries(map, "directional", 10);
+        assertNull(map.transparency(new Point(80, 0, 0), UP), "directional: point outside the map");
+
+        assertImagesMatch(new DirectionalLight(new Color(200, 200, 200), new Vector(0, 0, -1)));
+    }
+
+    /**
+     * Test method for {@link ShadowMap#spot(geometries.Geometries, Point, Vector, int)}
+     * and {@link ShadowMap#transparency(Point, Vector)}.
+     */
+    @Test
+    void testSpot() {
+        addGeometries();
+        Point position = new Point(0, 0, 60);
+        ShadowMap map = ShadowMap.spot(scene.geometries, position, new Vector(0, 0, -1), RESOLUTION);
+        // The tangent rays from the light to the sphere at distance 40 reach the floor at distance 60
+        assertFloorQueries(map, "spot", 60 / Math.sqrt(15));
+        assertNull(map.transparency(new Point(0, 0, 80), UP), "spot: point behind the light");
+        assertNull(map.transparency(new Point(200, 0, 0), UP), "spot: point outside the map");
+
+        assertImagesMatch(new SpotLight(new Color(400, 400, 400), position, new Vector(0, 0, -1)).setKl(0.005));
+    }
+
+    /**
+     * Renders the test scene lit by a light with and without shadow maps, and
+     * checks that the images are identical except at the shadow edges - the
+     * pixels next to both a shadowed and a lit pixel of the ray-traced image
+     *
+     * @param light the light
+     */
+    private void assertImagesMatch(LightSource light) {
+        scene.lights.add(light);
+        ImageWriter traced = render(new SimpleRayTracer(scene));
+        ImageWriter mapped = render(new SimpleRayTracer(scene).setShadowMaps(RESOLUTION));
+
+        // The shadowed pixels are darker than the pixels of the scene without the spheres
+        Scene unshadowed = new Scene("Unshadowed").setAmbientLight(scene.ambientLight);
+        unshadowed.geometries.add(new Polygon(new Point(-50, -50, 0), new Point(50, -50, 0),
+                new Point(50, 50, 0), new Point(-50, 50, 0))
+                .setEmission(new Color(20, 20, 20)).setMaterial(new Material().setKD(0.6)));
+        unshadowed.lights.add(light);
+        ImageWriter lit = render(new SimpleRayTracer(unshadowed));
+
+        int nX = traced.nX(), nY = traced.nY(), compared = 0;
+        boolean[] shadowed = new boolean[nX * nY];
+        for (int y = 0; y < nY; y++)
+            for (int x = 0; x < nX; x++)
+                shadowed[y * nX + x] = traced.readPixel(x, y).getRGB() != lit.readPixel(x, y).getRGB();
+        for (int y = 1; y < nY - 1; y++)
+            for (int x = 1; x < nX - 1; x++) {
+                boolean edge = false;
+                for (int j = y - 1; j <= y + 1; j++)
+                    for (int i = x - 1; i <= x + 1; i++)
+                        edge |= shadowed[j * nX + i] != shadowed[y * nX + x];
+                if (edge) continue;
+                compared++;
+                assertEquals(traced.readPixel(x, y).getRGB(), mapped.readPixel(x, y).getRGB(),
+                        "pixel (" + x + "," + y + ") must match the ray-traced shadows");
+            }
+        assertTrue(compared > nX * nY / 2, "most pixels must be away from the shadow edges");
+    }
+
+    /**
+     * Renders the test scene from above
+     *
+     * @param rayTracer the ray tracer of the scene
+     * @return the image
+     */
+    private static ImageWriter render(RayTracerBase rayTracer) {
+        return Camera.getBuilder() //
+                .setLocation(new Point(0, -100, 200)).setDirection(Point.ZERO, Vector.AXIS_Z) //
+                .setVpDistance(200).setVpSize(100, 100) //
+                .setResolution(40, 40) //
+                .setRayTracer(rayTracer) //
+                .build().renderImage().getImageWriter();
+    }
+}
@@ -0,0 +1,353 @@
+package renderer;
+
+import org.junit.jupiter.api.Test;
+
+import geometries.Plane;
+import geometries.Polygon;
+import geometries.Sphere;
+import geometries.Triangle;
+import lighting.AmbientLight;
+import lighting.AreaLight;
+import lighting.DiskLight;
+import lighting.PointLight;
+import lighting.RectangleLight;
+import lighting.SpotLight;
+import primitives.*;
+import scene.Scene;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for {@link SimpleRayTracer} class.
+ * A scene of two parallel mirrors and a glossy sphere between them is rendered
+ * with the different secondary ray options, and the images are compared with
+ * the image of the default options.
+ */
+class SimpleRayTracerTest {
+    /** Default constructor to satisfy JavaDoc generator */
+    SimpleRayTracerTest() { /* to satisfy JavaDoc generator */ }
+
+    /**
+     * Hash of the pixels of the test scene rendered with the fixed glossy sampling
+     * by the glossy reflection loop that preceded the adaptive sampling
+     */
+    private static final int FIXED_SAMPLING_HASH = -1479899359;
+
+    /**
+     * Hash of the pixels of the shadows scene of {@link #createShadowsScene()}
+     * rendered before the occluder cache was added
+     */
+    private static final int SHADOWS_HASH = 193397626;
+
+    /** The test scene */
+    private final Scene scene = createScene();
+
+    /**
+     * Creates the test scene: two parallel mirrors and a glossy sphere between them
+     *
+     * @return the scene
+     */
+    private static Scene createScene() {
+        Scene scene = new Scene("Mirrors").setBackground(new Color(30, 30, 60))
+                .setAmbientLight(new AmbientLight(new Color(20, 20, 20)));
+        Material mirror = new Material().setKD(0.1).setKR(0.8);
+        scene.geometries.add(
+                new Polygon(new Point(-150, -100, -500), new Point(-150, 100, -500),
+                        new Point(-150, 100, 100), new Point(-150, -100, 100))
+                        .setEmission(new Color(10, 10, 10)).setMaterial(mirror),
+                new Polygon(new Point(150, -100, -500), new Point(150, 100, -500),
+                        new Point(150, 100, 100), new Point(150, -100, 100))
+                        .setEmission(new Color(10, 10, 10)).setMaterial(mirror),
+                new Sphere(new Point(0, 0, -200), 50d).setEmission(new Color(120, 30, 30))
+                        .setMaterial(new Material().setKD(0.5).setKS(0.4).setShininess(40)
+                                .setKR(0.3).setGlossiness(0.3)));
+        scene.lights.add(new PointLight(new Color(500, 500, 400), new Point(0, 150, 0)).setKl(1E-4));
+        return scene;
+    }
+
+    /**
+     * Renders the test scene, keeping the full range colors
+     *
+     * @param rayTracer the ray tracer of the scene
+     * @return the image
+     */
+    private static ImageWriter render(RayTracerBase rayTracer) {
+        return Camera.getBuilder() //
+                .setLocation(new Point(0, 0, 1000)).setDirection(Point.ZERO, Vector.AXIS_Y) //
+                .setVpDistance(1000).setVpSize(200, 300) //
+                .setResolution(30, 20) //
+                .setRayTracer(rayTracer).setHighDynamicRange(true) //
+                .build().renderImage().getImageWriter();
+    }
+
+    /**
+     * Packs the pixels of an image
+     *
+     * @param image the image
+     * @return the RGB values of the pixels, row by row
+     */
+    private static int[] pixels(ImageWriter image) {
+        int[] pixels = new int[image.nX() * image.nY()];
+        for (int y = 0; y < image.nY(); y++)
+            for (int x = 0; x < image.nX(); x++)
+                pixels[y * image.nX() + x] = image.readPixel(x, y).getRGB();
+        return pixels;
+    }
+
+    /**
+     * Calculates the mean brightness of an image
+     *
+     * @param image the image
+     * @return the mean of the color components of the pixels
+     */
+    private static double mean(ImageWriter image) {
+        double sum = 0;
+        for (int y = 0; y < image.nY(); y++)
+            for (int x = 0; x < image.nX(); x++) {
+                Color color = image.readPixel(x, y);
+                sum += color.getRed() + color.getGreen() + color.getBlue();
+            }
+        return sum / (3 * image.nX() * image.nY());
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#setRussianRoulette(double)}.
+     */
+    @Test
+    void testRussianRoulette() {
+        double expected = mean(render(new SimpleRayTracer(scene)));
+        for (double threshold : new double[] { 0.05, 0.2 }) {
+            double actual = mean(render(new SimpleRayTracer(scene).setRussianRoulette(threshold)));
+            assertEquals(expected, actual, expected * 0.01,
+                    "Russian roulette " + threshold + " must keep the mean brightness");
+        }
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#setSecondarySampling(SecondarySampling)}
+     * with the fixed and the adaptive sampling.
+     */
+    @Test
+    void testFixedAndAdaptiveSampling() {
+        ImageWriter expected = render(new SimpleRayTracer(scene));
+        int[] expectedPixels = pixels(expected);
+        assertEquals(FIXED_SAMPLING_HASH, Arrays.hashCode(expectedPixels),
+                "fixed sampling must render the same image as before the adaptive sampling");
+        assertArrayEquals(expectedPixels,
+                pixels(render(new SimpleRayTracer(scene).setSecondarySampling(SecondarySampling.FIXED))),
+                "fixed sampling must be the default");
+
+        double mean = mean(expected);
+        assertEquals(mean,
+                mean(render(new SimpleRayTracer(scene).setSecondarySampling(SecondarySampling.ADAPTIVE))),
+                mean * 0.01, "adaptive sampling must keep the mean brightness");
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#setSecondarySampling(SecondarySampling)}
+     * with the stochastic sampling, on glossy reflection and on reflection and refraction together.
+     */
+    @Test
+    void testStochasticSampling() {
+        scene.geometries.add(new Sphere(new Point(60, -40, -50), 40d).setEmission(new Color(20, 40, 20))
+                .setMaterial(new Material().setKD(0.2).setKS(0.2).setShininess(20)
+                        .setKT(0.6).setKR(0.2)));
+        double expected = mean(render(new SimpleRayTracer(scene)));
+        double actual = mean(render(new SimpleRayTracer(scene).setSecondarySampling(SecondarySampling.STOCHASTIC)));
+        assertEquals(expected, actual, expected * 0.01, "stochastic sampling must converge to the same mean");
+    }
+
+    /**
+     * Creates the shadows scene: a sphere and a small triangle over a floor of two
+     * shiny triangles, lit by a spotlight and a point light
+     *
+     * @return the scene
+     */
+    private static Scene createShadowsScene() {
+        Scene shadows = new Scene("Shadows").setAmbientLight(new AmbientLight(new Color(38, 38, 38)));
+        Material floor = new Material().setKS(0.8).setShininess(60);
+        Material material = new Material().setKD(0.5).setKS(0.5).setShininess(30);
+        shadows.geometries.add(
+                new Triangle(new Point(-150, -150, -115), new Point(150, -150, -135), new Point(75, 75, -150))
+                        .setMaterial(floor),
+                new Triangle(new Point(-150, -150, -115), new Point(-70, 70, -140), new Point(75, 75, -150))
+                        .setMaterial(floor),
+                new Sphere(new Point(0, 0, -11), 30d).setEmission(new Color(0, 0, 255)).setMaterial(material),
+                new Triangle(new Point(-70, -40, 0), new Point(-40, -70, 0), new Point(-68, -68, -4))
+                        .setEmission(new Color(0, 0, 255)).setMaterial(material));
+        shadows.lights.add(new SpotLight(new Color(700, 400, 400), new Point(40, 40, 115), new Vector(-1, -1, -4))
+                .setKl(4E-4).setKq(2E-5));
+        shadows.lights.add(new PointLight(new Color(300, 300, 300), new Point(-100, -100, 200))
+                .setKl(1E-5).setKq(1.5E-7));
+        return shadows;
+    }
+
+    /**
+     * Renders the shadows scene, keeping the full range colors
+     *
+     * @param rayTracer the ray tracer of the scene
+     * @return the image
+     */
+    private static ImageWriter renderShadows(RayTracerBase rayTracer) {
+        return Camera.getBuilder() //
+                .setLocation(new Point(0, 0, 1000)).setDirection(Point.ZERO, Vector.AXIS_Y) //
+                .setVpDistance(1000).setVpSize(200, 200) //
+                .setResolution(40, 40) //
+                .setRayTracer(rayTracer).setHighDynamicRange(true) //
+                .build().renderImage().getImageWriter();
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#getOccluderCacheHits()} and
+     * {@link SimpleRayTracer#getOccluderCacheMisses()}: the occluder cache is used
+     * for the shadows of a sphere and a triangle over a floor, and the image stays
+     * the same as before the cache.
+     */
+    @Test
+    void testOccluderCache() {
+        SimpleRayTracer rayTracer = new SimpleRayTracer(createShadowsScene());
+        ImageWriter image = renderShadows(rayTracer);
+        assertEquals(SHADOWS_HASH, Arrays.hashCode(pixels(image)), "occluder cache must not change the image");
+        assertTrue(rayTracer.getOccluderCacheHits() > 0, "shadow rays must hit the cached occluder");
+        assertTrue(rayTracer.getOccluderCacheMisses() > 0, "shadow rays must traverse the scene");
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#setShadingCache(double)}.
+     * <ul>
+     *     <li>A zero tolerance disables the cache - the image is identical.</li>
+     *     <li>Cells much smaller than the camera rays spacing shade every hit
+     *     separately - the specular lighting rebuilt from the cached light
+     *     intensities equals the specular lighting of every light.</li>
+     *     <li>Cells of a few scene units are reused by the rays of a pixel beam,
+     *     keeping the mean brightness.</li>
+     * </ul>
+     */
+    @Test
+    void testShadingCache() {
+        Scene shadows = createShadowsScene();
+        ImageWriter expected = renderShadows(new SimpleRayTracer(shadows));
+
+        SimpleRayTracer disabled = new SimpleRayTracer(shadows).setShadingCache(0);
+        assertArrayEquals(pixels(expected), pixels(renderShadows(disabled)), "zero tolerance must not change the image");
+        assertEquals(0, disabled.getShadingCacheHits() + disabled.getShadingCacheMisses(),
+                "zero tolerance must not use the cache");
+
+        SimpleRayTracer fine = new SimpleRayTracer(shadows).setShadingCache(1e-9);
+        ImageWriter image = renderShadows(fine);
+        assertEquals(0, fine.getShadingCacheHits(), "every hit must have its own cell");
+        for (int y = 0; y < image.nY(); y++)
+            for (int x = 0; x < image.nX(); x++) {
+                Color color = expected.readPixel(x, y), cached = image.readPixel(x, y);
+                double delta = 1e-9 * (1 + max(color));
+                assertEquals(color.getRed(), cached.getRed(), delta, "red of pixel (" + x + "," + y + ")");
+                assertEquals(color.getGreen(), cached.getGreen(), delta, "green of pixel (" + x + "," + y + ")");
+                assertEquals(color.getBlue(), cached.getBlue(), delta, "blue of pixel (" + x + "," + y + ")");
+            }
+
+        SimpleRayTracer coarse = new SimpleRayTracer(shadows).setShadingCache(2);
+        double mean = mean(expected);
+        assertEquals(mean, mean(renderShadows(coarse)), mean * 0.01, "shading cache must keep the mean brightness");
+        assertTrue(coarse.getShadingCacheHits() > coarse.getShadingCacheMisses(),
+                "rays of a pixel beam must reuse the cells");
+    }
+
+    /**
+     * Test method for {@link SimpleRayTracer#newShadingCache()}: the cache keeps
+     * {@link SimpleRayTracer#SHADING_CACHE_SIZE} cells, evicting the least
+     * recently used one.
+     */
+    @Test
+    void testShadingCacheBound() {
+        Map<Integer, Integer> cache = SimpleRayTracer.newShadingCache();
+        int size = SimpleRayTracer.SHADING_CACHE_SIZE;
+        for (int i = 0; i < size; i++) cache.put(i, i);
+        assertEquals(size, cache.size(), "cache must keep the cells up to its size");
+
+        // Use the oldest cell, and add more cells than the cache size
+        assertEquals(0, cache.get(0), "cell in the cache");
+        for (int i = size; i < 2 * size; i++) {
+            cache.put(i, i);
+            cache.get(0);
+            assertEquals(size, cache.size(), "cache must not grow beyond its size");
+        }
+        assertTrue(cache.containsKey(0), "recently used cell must be kept");
+        assertFalse(cache.containsKey(1), "least recently used cell must be evicted");
+        assertTrue(cache.containsKey(2 * size - 1), "last cell must be kept");
+    }
+
+    /**
+     * The largest component of a color
+     *
+     * @param color the color
+     * @return the largest component
+     */
+    private static double max(Color color) {
+        return Math.max(color.getRed(), Math.max(color.getGreen(), color.getBlue()));
+    }
+
+    /**
+     * Calculates the shadow of an area light over the floor of a scene: the
+     * color of a floor point divided by its color without the occluder
+     *
+     * @param light the area light
+     * @param x     the coordinate of the floor point across the shadow edge
+     * @return the fraction of the light reaching the point
+     */
+    private static double shadow(AreaLight light, double x) {
+        Material floor = new Material().setKD(1);
+        Scene lit = new Scene("Lit");
+        lit.geometries.add(new Plane(Point.ZERO, Vector.AXIS_Z).setMaterial(floor));
+        lit.lights.add(light);
+        Scene shadowed = new Scene("Shadowed");
+        shadowed.geometries.add(new Plane(Point.ZERO, Vector.AXIS_Z).setMaterial(floor),
+                new Polygon(new Point(-100, -100, 10), new Point(0, -100, 10),
+                        new Point(0, 100, 10), new Point(-100, 100, 10)));
+        shadowed.lights.add(light);
+
+        // The camera ray passes below the occluder
+        Ray ray = new Ray(new Point(x, -50, 5), new Vector(0, 50, -5));
+        SimpleRayTracer free = new SimpleRayTracer(lit), blocked = new SimpleRayTracer(shadowed);
+        free.prepare();
+        blocked.prepare();
+        return blocked.traceRay(ray).getRed() / free.traceRay(ray).getRed();
+    }
+
+    /**
+     * Test method for the soft shadows of {@link RectangleLight} and {@link DiskLight}:
+     * an occluder edge at half the height of the light casts a penumbra as wide
+     * as the light, and the fully lit and fully shadowed points are decided by
+     * the probe cells of the sampling grid alone.
+     */
+    @Test
+    void testAreaLightPenumbra() {
+        Color intensity = new Color(100, 100, 100);
+        Point center = new Point(0, 0, 20);
+        // Points of the penumbra where the probe samples cannot agree
+        assertPenumbra(new RectangleLight(intensity, center, new Vector(4, 0, 0), new Vector(0, 4, 0)),
+                -1, 0, 1);
+        assertPenumbra(new DiskLight(intensity, center, new Vector(0, 0, -1), 2), -0.5, 0, 0.5);
+    }
+
+    /**
+     * Checks the shadow of an area light of size 4 centered above the occluder edge
+     *
+     * @param light     the area light
+     * @param penumbra  coordinates of floor points in the penumbra, in ascending order
+     */
+    private static void assertPenumbra(AreaLight light, double... penumbra) {
+        String name = light.getClass().getSimpleName();
+        assertEquals(0, shadow(light, -3), name + " must not light the umbra");
+        assertEquals(1, shadow(light, 3), name + " must fully light the point outside the shadow");
+        double previous = 0;
+        for (double x : penumbra) {
+            double fraction = shadow(light, x);
+            assertTrue(fraction > previous && fraction < 1,
+                    name + " penumbra at " + x + " must be strictly between 0 and 1 and grow, was " + fraction);
+            previous = fraction;
+        }
+    }
+}
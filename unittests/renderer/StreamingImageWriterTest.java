@@ -0,0 +1,141 @@
+package renderer;
+
+import geometries.Intersectable.Intersection;
+import org.junit.jupiter.api.Test;
+import primitives.*;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test for {@link StreamingImageWriter} class.
+ * The tiles of an image are written in a shuffled order by several threads,
+ * and the resulting png file is decoded and compared pixel by pixel.
+ */
+class StreamingImageWriterTest {
+    /** Default constructor to satisfy JavaDoc generator */
+    StreamingImageWriterTest() { /* to satisfy JavaDoc generator */ }
+
+    /**
+     * The color of a pixel in the test pattern
+     * @param x column
+     * @param y row
+     * @return the color
+     */
+    private static Color pattern(int x, int y) {
+        return new Color(x % 256, y % 256, (x * y) % 300);
+    }
+
+    /**
+     * Deletes an image file and its temporary file left by a former run
+     * @param imageName the name of the png file
+     * @throws IOException if a file cannot be deleted
+     */
+    private static void deleteImage(String imageName) throws IOException {
+        Files.deleteIfExists(Path.of(ImageWriter.FOLDER_PATH, imageName + ".png"));
+        Files.deleteIfExists(Path.of(ImageWriter.FOLDER_PATH, imageName + ".png.part"));
+    }
+
+    /**
+     * Checks that neither an image file nor its temporary file is left behind
+     * @param imageName the name of the png file
+     */
+    private static void assertNoImage(String imageName) {
+        assertFalse(Files.exists(Path.of(ImageWriter.FOLDER_PATH, imageName + ".png")),
+                "an incomplete image must not be written");
+        assertFalse(Files.exists(Path.of(ImageWriter.FOLDER_PATH, imageName + ".png.part")),
+                "the temporary file of an incomplete image must be deleted");
+    }
+
+    /**
+     * Test method for {@link StreamingImageWriter#writeTile(int, int, int, int, Color[])}
+     * and {@link StreamingImageWriter#close()}.
+     */
+    @Test
+    void testWriteTilesOutOfOrder() throws IOException {
+        final int nX = 203;
+        final int nY = 97;
+        final int tileSize = 16;
+
+        List<PixelManager.Tile> tiles = new ArrayList<>();
+        for (int row = 0; row < nY; row += tileSize)
+            for (int col = 0; col < nX; col += tileSize)
+                tiles.add(new PixelManager.Tile(col, row, Math.min(tileSize, nX - col), Math.min(tileSize, nY - row)));
+        Collections.shuffle(tiles, new Random(7));
+
+        try (StreamingImageWriter writer = new StreamingImageWriter("streamingPattern", nX, nY, tileSize)) {
+            IntStream.range(0, tiles.size()).parallel().forEach(t -> {
+                PixelManager.Tile tile = tiles.get(t);
+                Color[] colors = new Color[tile.width() * tile.height()];
+                for (int y = 0, p = 0; y < tile.height(); y++)
+                    for (int x = 0; x < tile.width(); x++, p++)
+                        colors[p] = pattern(tile.col() + x, tile.row() + y);
+                writer.writeTile(tile.col(), tile.row(), tile.width(), tile.height(), colors);
+            });
+        }
+
+        BufferedImage image = ImageIO.read(new File(System.getProperty("user.dir") + "/images/streamingPattern.png"));
+        assertEquals(nX, image.getWidth(), "wrong image width");
+        assertEquals(nY, image.getHeight(), "wrong image height");
+        for (int y = 0; y < nY; y++)
+            for (int x = 0; x < nX; x++)
+                assertEquals(pattern(x, y).getRGB(), image.getRGB(x, y) & 0xFFFFFF, "wrong pixel " + x + "," + y);
+        assertFalse(Files.exists(Path.of(ImageWriter.FOLDER_PATH, "streamingPattern.png.part")),
+                "the temporary file must be renamed");
+    }
+
+    /**
+     * Test method for {@link StreamingImageWriter#close()} of an incomplete image:
+     * the image is rejected and no file is left behind.
+     */
+    @Test
+    void testCloseIncomplete() throws IOException {
+        deleteImage("streamingIncomplete");
+        StreamingImageWriter writer = new StreamingImageWriter("streamingIncomplete", 4, 4, 2);
+        writer.writeTile(0, 0, 4, 2, new Color[] {
+                Color.BLACK, Color.BLACK, Color.BLACK, Color.BLACK,
+                Color.BLACK, Color.BLACK, Color.BLACK, Color.BLACK });
+        assertThrows(IllegalStateException.class, writer::close, "incomplete image must not be closed");
+        assertNoImage("streamingIncomplete");
+    }
+
+    /**
+     * Test method for {@link Camera#renderImage()} into a streamed image when a
+     * rendering thread fails: the failure is reported, not the incomplete image,
+     * and no file is left behind.
+     */
+    @Test
+    void testRenderFailure() throws IOException {
+        deleteImage("streamingFailure");
+        RayTracerBase failing = new RayTracerBase(null) {
+            @Override
+            public Color traceRay(Ray ray) { throw new ArithmeticException("tracing failed"); }
+
+            @Override
+            public Color traceRay(Ray ray, Intersection intersection) { return traceRay(ray); }
+        };
+        Camera camera = Camera.getBuilder() //
+                .setLocation(Point.ZERO).setDirection(new Point(0, 0, -1), Vector.AXIS_Y) //
+                .setVpDistance(100).setVpSize(100, 100).setResolution(40, 40) //
+                .setRayTracer(failing).setMultithreading(2).setStreamingOutput("streamingFailure") //
+                .build();
+
+        ArithmeticException e = assertThrows(ArithmeticException.class, camera::renderImage,
+                "the failure of the rendering thread must be reported");
+        assertTrue(Arrays.stream(e.getSuppressed()).anyMatch(IllegalStateException.class::isInstance),
+                "the incomplete image must be reported as suppressed");
+        assertNoImage("streamingFailure");
+    }
+}